@@ -0,0 +1,77 @@
+package benchmark;
+
+import common.StorageConfig;
+import org.openjdk.jmh.annotations.*;
+import storage.buffer.BufferPoolManager;
+import storage.buffer.DiskManager;
+import storage.buffer.IoMode;
+import storage.page.Page;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓冲池取页开销：命中路径（工作集全部驻留）与缺页路径（循环访问比缓冲池多 256 页的工作集，每次都缺页），
+ * 对比不同缓冲池大小下的单次操作耗时；配合 GCProfiler 查看每次取页的分配字节数 (gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BufferPoolBenchmark {
+    private static final String FILE_NAME = "bench" + File.separator + "buffer_pool_bench.db";
+    private static final int EXTRA_PAGES = 256;
+
+    @Param({"256", "16384"})
+    public int poolSize;
+
+    private DiskManager diskManager;
+    private BufferPoolManager bufferPoolManager;
+    private int pageCount;
+    private int nextMissPage;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        new File(StorageConfig.prePathDB + FILE_NAME).delete();
+        pageCount = poolSize + EXTRA_PAGES;
+        diskManager = new DiskManager(FILE_NAME, IoMode.CHANNEL);
+        byte[] data = new byte[Page.PAGE_SIZE];
+        for (int i = 0; i < pageCount; i++) {
+            data[0] = (byte) i;
+            diskManager.writePage(diskManager.allocatePage(), data);
+        }
+        bufferPoolManager = new BufferPoolManager(poolSize, diskManager).start();
+        // 先装入命中路径使用的前半个缓冲池
+        for (int i = 0; i < poolSize / 2; i++) {
+            bufferPoolManager.fetchPage(i);
+            bufferPoolManager.unpinPage(i, false);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bufferPoolManager.close();
+        diskManager.close();
+        new File(StorageConfig.prePathDB + FILE_NAME).delete();
+    }
+
+    @Benchmark
+    public byte fetchHit() throws IOException {
+        int pageId = ThreadLocalRandom.current().nextInt(poolSize / 2);
+        Page page = bufferPoolManager.fetchPage(pageId);
+        byte value = page.getBuffer().get(0);
+        bufferPoolManager.unpinPage(pageId, false);
+        return value;
+    }
+
+    @Benchmark
+    public byte fetchMiss() throws IOException {
+        int pageId = nextMissPage;
+        nextMissPage = (pageId + 1) % pageCount;
+        Page page = bufferPoolManager.fetchPage(pageId);
+        byte value = page.getBuffer().get(0);
+        bufferPoolManager.unpinPage(pageId, false);
+        return value;
+    }
+}
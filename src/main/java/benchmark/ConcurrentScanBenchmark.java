@@ -0,0 +1,78 @@
+package benchmark;
+
+import executor.common.CloseableIterator;
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
+import executor.common.Table;
+import executor.common.TableSchema;
+import executor.common.impl.TableFactory;
+import executor.common.impl.TableLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一张 100 万行的行式表上，一个线程不断全表扫描求和（分析查询），另一个线程不断按主键修改单行（OLTP 写入）。
+ * 扫描读取开始时刻的快照，不持有表的锁，两者互不阻塞；分别报告扫描一遍和修改一行的平均耗时
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentScanBenchmark {
+    private static final int ROWS = 1_000_000;
+
+    private Table table;
+    private RowLayout rowLayout;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TableSchema schema = new TableSchema("accounts", List.of(
+                new ColumnDefinition("id", ColumnType.INT, 4, true),
+                new ColumnDefinition("balance", ColumnType.INT, 4, false)));
+        table = TableFactory.create(schema, TableLayout.ROW);
+        rowLayout = table.getRowLayout();
+        table.bulkInsert(new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ROWS;
+            }
+
+            @Override
+            public Record next() {
+                return new Record(RowMap.of(rowLayout, new Object[]{next++, 100}));
+            }
+        });
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public long scan() throws Exception {
+        long sum = 0;
+        try (CloseableIterator<Record> iterator = table.scan()) {
+            while (iterator.hasNext()) {
+                sum += (Integer) iterator.next().getValue("balance");
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void update() {
+        int id = ThreadLocalRandom.current().nextInt(ROWS);
+        Record old = table.getRecord(String.valueOf(id));
+        RowMap fields = RowMap.copyOf(rowLayout, old.fields());
+        fields.set(1, (Integer) old.getValue("balance") + 1);
+        table.update(old, new Record(fields));
+    }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import common.StorageConfig;
+import org.openjdk.jmh.annotations.*;
+import storage.buffer.DiskManager;
+import storage.buffer.IoMode;
+import storage.page.Page;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 随机读页：对比 MMAP 模式、FileChannel 定位读与原先的 RandomAccessFile seek + read
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DiskManagerBenchmark {
+    private static final String FILE_NAME = "bench" + File.separator + "disk_manager_bench.db";
+    private static final int PAGE_COUNT = 16384; // 64MB
+
+    @Param({"CHANNEL", "MMAP"})
+    public IoMode ioMode;
+
+    private DiskManager diskManager;
+    private RandomAccessFile randomAccessFile;
+
+    @State(Scope.Thread)
+    public static class PageBuffer {
+        final byte[] data = new byte[Page.PAGE_SIZE];
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File file = new File(StorageConfig.prePathDB + FILE_NAME);
+        file.delete();
+        DiskManager writer = new DiskManager(FILE_NAME, IoMode.CHANNEL);
+        byte[] data = new byte[Page.PAGE_SIZE];
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            data[0] = (byte) i;
+            writer.writePage(writer.allocatePage(), data);
+        }
+        writer.sync();
+        writer.close();
+
+        diskManager = new DiskManager(FILE_NAME, ioMode);
+        randomAccessFile = new RandomAccessFile(file, "r");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        diskManager.close();
+        randomAccessFile.close();
+        new File(StorageConfig.prePathDB + FILE_NAME).delete();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte diskManagerRead(PageBuffer buffer) throws IOException {
+        int pageId = ThreadLocalRandom.current().nextInt(PAGE_COUNT);
+        diskManager.readPage(pageId, buffer.data);
+        return buffer.data[0];
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte randomAccessFileRead(PageBuffer buffer) throws IOException {
+        int pageId = ThreadLocalRandom.current().nextInt(PAGE_COUNT);
+        // 原 DiskManager 的实现：共享文件指针，读页必须串行
+        synchronized (randomAccessFile) {
+            randomAccessFile.seek((long) pageId * Page.PAGE_SIZE);
+            randomAccessFile.readFully(buffer.data);
+        }
+        return buffer.data[0];
+    }
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
+import executor.common.Table;
+import executor.common.TableSchema;
+import executor.common.impl.TableFactory;
+import executor.common.impl.TableLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 100 万行的表上按主键查找一条记录（Table.getRecord，CatalogManager 查找表结构的方式）的耗时，
+ * 行式和列式表都通过主键哈希索引查找
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrimaryKeyLookupBenchmark {
+    private static final int ROWS = 1_000_000;
+
+    @Param({"ROW", "COLUMNAR"})
+    public TableLayout layout;
+
+    private Table table;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TableSchema schema = new TableSchema("sys_catalog", List.of(
+                new ColumnDefinition("id", ColumnType.VARCHAR, 256, true),
+                new ColumnDefinition("schema_json", ColumnType.VARCHAR, 256, false),
+                new ColumnDefinition("created_at", ColumnType.INT, 4, false)));
+        table = TableFactory.create(schema, layout);
+        RowLayout rowLayout = table.getRowLayout();
+        table.bulkInsert(new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ROWS;
+            }
+
+            @Override
+            public Record next() {
+                int i = next++;
+                return new Record(RowMap.of(rowLayout, new Object[]{"table_" + i, "{}", i}));
+            }
+        });
+    }
+
+    @Benchmark
+    public Record getRecord() {
+        return table.getRecord("table_" + ThreadLocalRandom.current().nextInt(ROWS));
+    }
+}
@@ -0,0 +1,119 @@
+package benchmark;
+
+import common.StorageConfig;
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Table;
+import executor.common.TableSchema;
+import executor.common.impl.InMemoryTable;
+import org.openjdk.jmh.annotations.*;
+import store.wal.Durability;
+import store.wal.LogEntry;
+import store.wal.LogRecord;
+import store.wal.ParallelRedo;
+import store.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 崩溃恢复吞吐量：预先生成一份包含多张表插入事务的 WAL，每次操作读出整个日志、按表拆分并重做到空表中。
+ * 对比单线程与多线程重做；logMegabytes 计数器换算为每秒处理的日志 MB 数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecoveryBenchmark {
+    private static final Path WAL_DIR = Path.of(StorageConfig.prePathDB, "bench", "recovery_wal");
+    private static final int TABLES = 8;
+    private static final int ROWS_PER_TABLE = 20_000;
+    private static final int ROWS_PER_TRANSACTION = 10;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private TableSchema schema;
+    private double logMegabytes;
+
+    /**
+     * 每次操作处理的日志量，JMH 按操作速率换算为 MB/s
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class LogThroughput {
+        public double logMegabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        deleteWal();
+        schema = new TableSchema("bench", List.of(
+                new ColumnDefinition("id", ColumnType.INT, 4, true),
+                new ColumnDefinition("name", ColumnType.VARCHAR, 32, false),
+                new ColumnDefinition("score", ColumnType.FLOAT, 8, false)));
+        try (WriteAheadLog wal = WriteAheadLog.open(WAL_DIR, Durability.ASYNC)) {
+            long txnId = 1;
+            for (int row = 0; row < ROWS_PER_TABLE; row += ROWS_PER_TRANSACTION) {
+                // 各表的事务在日志中交错出现
+                for (int table = 0; table < TABLES; table++) {
+                    List<LogRecord> records = new ArrayList<>(ROWS_PER_TRANSACTION + 1);
+                    for (int i = row; i < row + ROWS_PER_TRANSACTION; i++) {
+                        Map<String, Object> fields = new HashMap<>();
+                        fields.put("id", i);
+                        fields.put("name", "user-" + i);
+                        fields.put("score", i * 0.5);
+                        records.add(LogRecord.insert("bench_" + table, fields));
+                    }
+                    records.add(LogRecord.commit(txnId++));
+                    wal.append(records);
+                }
+            }
+            wal.sync();
+            logMegabytes = (wal.getAppendedLsn() - wal.getStartLsn()) / 1048576.0;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteWal();
+    }
+
+    @Benchmark
+    public int recover(LogThroughput throughput) throws IOException {
+        List<LogEntry> entries;
+        try (WriteAheadLog wal = WriteAheadLog.open(WAL_DIR, Durability.ASYNC)) {
+            entries = wal.readAll();
+        }
+        ParallelRedo.Plan plan = ParallelRedo.plan(entries);
+        Map<String, Table> tables = new ConcurrentHashMap<>();
+        ParallelRedo.apply(plan, (tableName, redos) -> {
+            Table table = new InMemoryTable(schema);
+            for (ParallelRedo.Redo redo : redos) {
+                ParallelRedo.applyRow(table, redo.record());
+            }
+            tables.put(tableName, table);
+        }, threads);
+        throughput.logMegabytes += logMegabytes;
+        return tables.size();
+    }
+
+    private static void deleteWal() throws IOException {
+        if (!Files.exists(WAL_DIR)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(WAL_DIR)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
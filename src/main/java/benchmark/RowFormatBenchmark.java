@@ -0,0 +1,86 @@
+package benchmark;
+
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
+import executor.common.TableSchema;
+import executor.expression.ColumnReference;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 100 万条记录按字段名存放在 HashMap 中与按表结构布局存放在 RowMap 中的对比：
+ * 构造记录（executeInsert 的做法）、按绑定的列引用读取一个字段（WHERE 求值的做法）。
+ * 记录占用的堆内存在准备阶段打印
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RowFormatBenchmark {
+    private static final int ROWS = 1_000_000;
+    private static final TableSchema SCHEMA = new TableSchema("student", List.of(
+            new ColumnDefinition("id", ColumnType.INT, 4, true),
+            new ColumnDefinition("name", ColumnType.VARCHAR, 50, false),
+            new ColumnDefinition("age", ColumnType.INT, 4, false),
+            new ColumnDefinition("score", ColumnType.FLOAT, 8, false)));
+
+    @Param({"HASH_MAP", "ROW_MAP"})
+    public String format;
+
+    private List<Record> records;
+    private ColumnReference score;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        long before = usedHeap();
+        records = buildRecords();
+        System.out.printf("%n%s records: %d MB of heap%n", format, (usedHeap() - before) >> 20);
+        score = new ColumnReference("score").bind(RowLayout.of(SCHEMA));
+    }
+
+    @Benchmark
+    public List<Record> build() {
+        return buildRecords();
+    }
+
+    @Benchmark
+    public double readField() {
+        double sum = 0;
+        for (Record record : records) {
+            sum += (Double) score.evaluate(record);
+        }
+        return sum;
+    }
+
+    private List<Record> buildRecords() {
+        RowLayout layout = RowLayout.of(SCHEMA);
+        boolean compact = format.equals("ROW_MAP");
+        List<Record> built = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Object[] values = {i, "student-" + i, 18 + i % 10, i % 1000 * 0.1};
+            if (compact) {
+                built.add(new Record(RowMap.of(layout, values)));
+            } else {
+                Map<String, Object> fields = new HashMap<>();
+                for (int c = 0; c < values.length; c++) {
+                    fields.put(layout.name(c), values[c]);
+                }
+                built.add(new Record(fields));
+            }
+        }
+        return built;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        System.gc();
+        Thread.sleep(200);
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+}
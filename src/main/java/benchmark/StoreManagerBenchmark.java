@@ -1,64 +1,85 @@
-//package benchmark;
-//
-//import common.plan.CreateTablePlan;
-//import common.plan.InsertPlan;
-//import executor.common.Table;
-//import executor.common.TableSchema;
-//import executor.executionEngine.ExecutionEngine;
-//import executor.storageEngine.StorageEngine;
-//import executor.storageEngine.StorageEngineImpl;
-//import executor.systemCatalog.CatalogManager;
-//import org.openjdk.jmh.annotations.*;
-//import parser.semantic.CatalogAdapter;
-//import parser.semantic.SQLCompiler;
-//import parser.semantic.SQLCompilerException;
-//import store.StoreManager;
-//
-//import java.util.concurrent.ConcurrentHashMap;
-//
-//@State(Scope.Benchmark)
-//public class StoreManagerBenchmark {
-//    private StoreManager storeManager;
-//
-//    @Setup
-//    public void setup() throws SQLCompilerException {
-//        // 初始化测试数据
-//
-//        ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
-//        ConcurrentHashMap<String, TableSchema> schemas = new ConcurrentHashMap<>();
-//
-//        this.storeManager = new StoreManager(tables, schemas);
-//        StorageEngine storageEngine = new StorageEngineImpl(storeManager);
-//
-//        ExecutionEngine executionEngine = new ExecutionEngine(storageEngine);
-//
-//        // 创建数据库目录和适配器
-//        CatalogManager catalogManager = new CatalogManager(storageEngine);
-//        CatalogAdapter catalogAdapter = new CatalogAdapter(catalogManager);
-//        // 创建SQL编译器
-//        SQLCompiler compiler = new SQLCompiler(catalogAdapter);
-//
-//
-//        for (int i = 0; i < 1000; i++) {
-//            // 创建表
-//            String createSQL = "CREATE TABLE student_" + i + " (id INT, name VARCHAR(50), age INT);";
-//            System.out.println("1. 正在创建表: " + createSQL);
-//
-//            CreateTablePlan createPlan = compiler.compileCreateTable(createSQL);
-//            executionEngine.execute(createPlan);
-//        }
-//    }
-//
-//    @Benchmark
-//    public void testClosePerformance() {
-//        storeManager.close();
-//    }
-//
-////    @Benchmark
-////    public void testLoadAllTables() {
-////        storeManager.loadAllTables();
-////    }
-//
-//
-//}
-//
+package benchmark;
+
+import common.StorageConfig;
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.Table;
+import executor.common.TableSchema;
+import executor.common.impl.InMemoryTable;
+import org.openjdk.jmh.annotations.*;
+import store.Persist;
+import store.TableSnapshot;
+import store.TableSnapshotReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表数据文件的保存和加载耗时：同一张 10 万行的表分别写成旧的 JSON 格式和二进制行格式（RowCodec），
+ * 每次操作写出整个文件，或把整个文件逐行读入一张新表。文件大小在准备阶段打印
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StoreManagerBenchmark {
+    private static final Path DATA_DIR = Path.of(StorageConfig.prePathDB, "bench", "table_files");
+    private static final int ROWS = 100_000;
+
+    @Param({"JSON", "BINARY"})
+    public String format;
+
+    private final Persist persist = new Persist();
+    private TableSchema schema;
+    private TableSnapshot snapshot;
+    private String filePath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        schema = new TableSchema("student", List.of(
+                new ColumnDefinition("id", ColumnType.INT, 4, true),
+                new ColumnDefinition("name", ColumnType.VARCHAR, 50, false),
+                new ColumnDefinition("age", ColumnType.INT, 4, false),
+                new ColumnDefinition("score", ColumnType.FLOAT, 8, false)));
+        List<Record> records = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("id", i);
+            fields.put("name", "student-" + i);
+            fields.put("age", 18 + i % 10);
+            fields.put("score", i % 1000 * 0.1);
+            records.add(new Record(fields));
+        }
+        snapshot = new TableSnapshot(1, records);
+        filePath = DATA_DIR.resolve("student_" + format.toLowerCase() + StorageConfig.DB_SUFFIX).toString();
+        save();
+        System.out.printf("%n%s file: %d KB%n", format, Files.size(Path.of(filePath)) / 1024);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        if ("JSON".equals(format)) {
+            persist.writeObjectToJsonStream(filePath, snapshot);
+        } else {
+            persist.writeTableSnapshot(filePath, schema, snapshot);
+        }
+    }
+
+    /**
+     * 与 StoreManager 加载表相同：逐行读入新的 InMemoryTable
+     */
+    @Benchmark
+    public Table load() throws IOException {
+        InMemoryTable table = new InMemoryTable(schema);
+        try (TableSnapshotReader reader = persist.openTableSnapshot(filePath)) {
+            table.bulkInsert(reader);
+        }
+        return table;
+    }
+}
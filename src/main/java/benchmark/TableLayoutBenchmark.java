@@ -0,0 +1,92 @@
+package benchmark;
+
+import executor.common.CloseableIterator;
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.Table;
+import executor.common.TableSchema;
+import executor.common.impl.TableFactory;
+import executor.common.impl.TableLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一张 100 万行的表按行（InMemoryTable）和按列（ColumnarTable）存放时的全表扫描耗时：
+ * 读取完整记录，以及只读取一列（SELECT score ... 的扫描）。表占用的堆内存在准备阶段打印
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TableLayoutBenchmark {
+    private static final int ROWS = 1_000_000;
+
+    @Param({"ROW", "COLUMNAR"})
+    public TableLayout layout;
+
+    private Table table;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        TableSchema schema = new TableSchema("student", List.of(
+                new ColumnDefinition("id", ColumnType.INT, 4, true),
+                new ColumnDefinition("name", ColumnType.VARCHAR, 50, false),
+                new ColumnDefinition("age", ColumnType.INT, 4, false),
+                new ColumnDefinition("score", ColumnType.FLOAT, 8, false)));
+        long before = usedHeap();
+        table = TableFactory.create(schema, layout);
+        table.bulkInsert(new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ROWS;
+            }
+
+            @Override
+            public Record next() {
+                int i = next++;
+                Map<String, Object> fields = new HashMap<>();
+                fields.put("id", i);
+                fields.put("name", "student-" + i);
+                fields.put("age", 18 + i % 10);
+                fields.put("score", i % 1000 * 0.1);
+                return new Record(fields);
+            }
+        });
+        System.out.printf("%n%s table: %d MB of heap%n", layout, (usedHeap() - before) >> 20);
+    }
+
+    @Benchmark
+    public double scanRecords() {
+        double sum = 0;
+        try (CloseableIterator<Record> iterator = table.scan()) {
+            while (iterator.hasNext()) {
+                sum += (Double) iterator.next().getValue("score");
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double scanOneColumn() {
+        double sum = 0;
+        try (CloseableIterator<Record> iterator = table.scan(List.of("score"))) {
+            while (iterator.hasNext()) {
+                sum += (Double) iterator.next().getValue("score");
+            }
+        }
+        return sum;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        System.gc();
+        Thread.sleep(200);
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+}
@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 import parser.semantic.CatalogAdapter;
 import parser.semantic.EnhancedMockCatalogAdapter;
 import parser.semantic.SQLCompiler;
+import storage.buffer.BufferPoolMetrics;
 import storage.service.StorageService;
 import store.StoreManager;
 
@@ -47,7 +48,7 @@ public class Main {
 //        ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
 //        ConcurrentHashMap<String, TableSchema> schemas = new ConcurrentHashMap<>();
 
-        StoreManager storeManager = new StoreManager();
+        StoreManager storeManager = StoreManager.open();
         StorageEngine storageEngine = new StorageEngineImpl(storeManager);
 
         ExecutionEngine executionEngine = new ExecutionEngine(storageEngine);
@@ -111,6 +112,10 @@ public class Main {
                 if (line.equalsIgnoreCase(".exit")) {
                     break;
                 }
+                if (line.equalsIgnoreCase(".bufferstats")) {
+                    printBufferStats();
+                    continue;
+                }
                 if (line.equalsIgnoreCase("clear")) {
                     terminal.puts(InfoCmp.Capability.clear_screen);
                     terminal.flush();
@@ -154,6 +159,20 @@ public class Main {
         logger.info("Shutdown complete.");
     }
 
+    /**
+     * 打印所有缓冲池的运行指标
+     */
+    private static void printBufferStats() {
+        List<BufferPoolMetrics> all = BufferPoolMetrics.all();
+        if (all.isEmpty()) {
+            System.out.println("No buffer pool has been opened yet.");
+            return;
+        }
+        for (BufferPoolMetrics metrics : all) {
+            System.out.println(metrics.format());
+        }
+    }
+
     /**
      * 格式化并打印查询结果
      * @param result QueryResult object
@@ -1,33 +1,111 @@
 package common;
 
+import executor.common.impl.TableLayout;
 import executor.systemCatalog.SystemCatalog;
+import org.slf4j.LoggerFactory;
+import storage.buffer.IoMode;
+import storage.buffer.ReplacerPolicy;
+import store.wal.Durability;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 public final class StorageConfig { // final 类不可继承
     public static final int PAGE_SIZE = 4096; // 4KB
     public static final int BUFFER_POOL_SIZE = 1 << 8; // 2 ^ 8
+    public static final int BUFFER_POOL_PARTITIONS = Runtime.getRuntime().availableProcessors(); // 缓冲池分区数
+    public static final ReplacerPolicy REPLACER_POLICY = ReplacerPolicy.TWO_Q; // 缓冲池页面替换策略
+    public static final int LRU_K = 2; // LRU-K 策略中的 K
+    public static final long FLUSH_INTERVAL_MS = 100; // 后台刷盘线程的轮询间隔
+    public static final double CLEAN_FRAME_RATIO = 0.2; // 后台刷盘为每个分区保持的干净（可直接淘汰）帧比例
+    public static final long CHECKPOINT_INTERVAL_MS = 30_000; // 缓冲池检查点间隔
+    public static final int FLUSH_BATCH_PAGES = 256; // 检查点和后台刷盘每批最多拷贝并写回的页数，限制写回快照占用的直接内存
+    public static final long BUFFER_POOL_CLOSE_TIMEOUT_MS = 10_000; // 关闭缓冲池时等待被固定的页解除固定的最长时间，超时后关闭失败
+    public static final int READ_AHEAD_PAGES = 32; // 顺序预读窗口（页数），0 表示关闭预读
+    public static final int PREFETCH_THREADS = 2; // 每个缓冲池执行预读 I/O 的线程数
     public static final String prePathDB = System.getProperty("user.home") + File.separator + ".oursql" + File.separator; // ~/.oursql/
     public static final String prePathIdx = prePathDB + "idx" + File.separator; // ~/.oursql/idx/
     public static final String prePathSchema = prePathDB + "schema" + File.separator; // ~/.oursql/schema/
     public static final String prePathData = prePathDB + "data" + File.separator; // ~/.oursql/data/
+    public static final String prePathWal = prePathDB + "wal" + File.separator; // ~/.oursql/wal/
     public static final String sysCatalog = SystemCatalog.CATALOG_TABLE_NAME + ".db";
 
     public static final String DB_SUFFIX = ".db";
     public static final String IDX_SUFFIX = ".idx";
     public static final String SCHEMA_SUFFIX = ".schema";
+    public static final String DELTA_SUFFIX = ".delta"; // 表的增量段：上次重写基础文件以来追加的行修改
+
+    public static final Durability WAL_DURABILITY = Durability.SYNC; // 提交的持久化级别
+    public static final long WAL_SYNC_INTERVAL_MS = 10; // BATCHED/ASYNC 级别下后台 fsync 的间隔
+    public static final long WAL_SEGMENT_SIZE = 64L << 20; // WAL 段文件大小 64MB，写满后切换到新段
+    public static final long STORE_CHECKPOINT_INTERVAL_MS = 60_000; // 表快照（模糊检查点）间隔
+    public static final TableLayout TABLE_LAYOUT = parseTableLayout(
+            System.getProperty("oursql.table.layout")); // 内存表的存放方式（-Doursql.table.layout=columnar 改为按列存放）
+    public static final int ROW_LAYOUT_CACHE_SIZE = 1024; // 按字段名共用的行布局最多保留的个数，超过后淘汰最久未用的
+    public static final long TABLE_CACHE_MAX_BYTES = Runtime.getRuntime().maxMemory() / 4; // 表缓存容量（估算的堆字节数）
+    public static final long WRITE_BEHIND_MAX_BYTES = 64L << 20; // 等待写回的被淘汰表的内存上限，超过后淘汰方等待
+    public static final long WRITE_BEHIND_CLOSE_TIMEOUT_MS = 30_000; // 关闭时等待后写队列写回的最长时间，超时未写回的表由日志恢复
+    public static final int RECOVERY_THREADS = Runtime.getRuntime().availableProcessors(); // 崩溃恢复时并行重做的线程数
+    public static final int IO_CONCURRENCY = Integer.getInteger("oursql.io.concurrency",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2)); // 并行读写表文件的最大并发数，与 CPU 核数分开调整（NVMe 可调大）
+    public static final boolean IO_VIRTUAL_THREADS = Boolean.parseBoolean(
+            System.getProperty("oursql.io.virtual", "true")); // true: 每个任务一个虚拟线程、信号量限流；false: 固定大小的平台线程池
+    public static final List<String> PREWARM_TABLES = Arrays.stream(System.getProperty("oursql.prewarm", "").split(","))
+            .map(String::trim).filter(name -> !name.isEmpty()).toList(); // 启动后在后台预先加载的表（-Doursql.prewarm=t1,t2），默认不预热
+    public static final double DELTA_MAX_CHANGE_RATIO = 0.5; // 一次写出的修改数超过表行数的这个比例时直接重写基础文件
+    public static final double DELTA_COMPACTION_RATIO = 0.5; // 增量段超过基础文件大小的这个比例时在后台合并
+    public static final long DELTA_COMPACTION_MIN_BYTES = 256L << 10; // 增量段小于 256KB 时不合并
+    public static final int DELTA_MAX_PENDING_CHANGES = 100_000; // 一张表等待写出的行修改超过这个数时不再逐条保留，下次写出重写基础文件
+
+    public static final long MMAP_SEGMENT_SIZE = 64L << 20; // 内存映射分段大小 64MB，必须是页大小的整数倍
+    public static final List<String> MMAP_FILE_SUFFIXES = List.of(IDX_SUFFIX, SCHEMA_SUFFIX, sysCatalog); // 以内存映射方式读取的文件
+
+    /**
+     * 解析 -Doursql.table.layout。在静态初始化时调用，无法识别的值不能让整个配置类初始化失败：
+     * 回退为 ROW 并记录警告
+     */
+    static TableLayout parseTableLayout(String value) {
+        if (value == null || value.isBlank()) {
+            return TableLayout.ROW;
+        }
+        try {
+            return TableLayout.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LoggerFactory.getLogger(StorageConfig.class).warn(
+                    "Unknown value '{}' for -Doursql.table.layout, expected one of {}; using ROW.",
+                    value, Arrays.toString(TableLayout.values()));
+            return TableLayout.ROW;
+        }
+    }
+
+    /**
+     * 按文件名选择 DiskManager 的读取方式：读多写少的目录、索引和表结构文件使用内存映射
+     * @param dbFilePath 相对 ~/.oursql/ 的文件路径
+     */
+    public static IoMode ioModeFor(String dbFilePath) {
+        for (String suffix : MMAP_FILE_SUFFIXES) {
+            if (dbFilePath.endsWith(suffix)) {
+                return IoMode.MMAP;
+            }
+        }
+        return IoMode.CHANNEL;
+    }
 
     static { // 静态初始化块，在类被加载时执行一次，确保文件路径存
         File dbDir = new File(prePathDB);
         File idxDir = new File(prePathIdx);
         File schemaDir = new File(prePathSchema);
         File dataDir = new File(prePathData);
+        File walDir = new File(prePathWal);
 
         if (!dbDir.exists()) dbDir.mkdir();
         if (!idxDir.exists()) idxDir.mkdir();
         if (!schemaDir.exists()) schemaDir.mkdir();
         if (!dataDir.exists()) dataDir.mkdir();
+        if (!walDir.exists()) walDir.mkdir();
 
         File sysCatalogFile = new File(prePathData + sysCatalog);
         if (!sysCatalogFile.exists()) {
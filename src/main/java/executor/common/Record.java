@@ -20,6 +20,9 @@ public record Record(Map<String, Object> fields) {
         return fields.containsKey(fieldName);
     }
 
+    /**
+     * 按字段名读取；紧凑行（RowMap）按布局查找序号，已知序号时应使用 RowMap.get(int)
+     */
     public Object getValue(String fieldName) {
         return fields.get(fieldName);
     }
@@ -47,8 +50,10 @@ public record Record(Map<String, Object> fields) {
     public Record updateFrom(Record newRecord) {
         Objects.requireNonNull(newRecord, "New record cannot be null");
 
-        // 创建字段的深拷贝（避免修改原始Map）
-        Map<String, Object> mergedFields = new HashMap<>(this.fields);
+        // 创建字段的深拷贝（避免修改原始Map），紧凑行复制后仍是同一布局
+        Map<String, Object> mergedFields = this.fields instanceof RowMap row
+                ? RowMap.copyOf(row.layout(), row)
+                : new HashMap<>(this.fields);
 
         // 用新值覆盖旧值
         mergedFields.putAll(newRecord.fields());
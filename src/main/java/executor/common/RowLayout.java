@@ -0,0 +1,108 @@
+package executor.common;
+
+import common.StorageConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑行（RowMap）的字段布局：有序的字段名和字段名到序号的映射。比较布局时只比较引用。
+ * <p>
+ * 同一张表的所有行共用表创建时的布局（Table.getRowLayout）。of 从一个有上限的缓存中返回按字段名共用的实例，
+ * 使读表文件、解码增量段得到的行通常与表的布局是同一个对象，不需要逐行转换；被淘汰后只会多一次转换，不影响结果。
+ * 只在一次查询中使用的布局（如投影）用 create 新建，不进入缓存
+ */
+public final class RowLayout {
+    private static final Map<List<String>, RowLayout> LAYOUTS = lruCache();
+    private static final Map<TableSchema, RowLayout> SCHEMA_LAYOUTS = lruCache();
+
+    private final String[] names;
+    private final Map<String, Integer> ordinals;
+
+    private RowLayout(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        Map<String, Integer> ordinals = new HashMap<>((int) (names.size() / 0.75f) + 1);
+        for (int i = 0; i < this.names.length; i++) {
+            if (ordinals.putIfAbsent(this.names[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate field name in row layout: " + this.names[i]);
+            }
+        }
+        this.ordinals = ordinals;
+    }
+
+    /**
+     * @return 按字段名顺序的布局，字段名相同时尽量返回同一个实例
+     * @throws IllegalArgumentException 字段名重复
+     */
+    public static RowLayout of(List<String> names) {
+        RowLayout layout = LAYOUTS.get(names);
+        return layout != null ? layout : LAYOUTS.computeIfAbsent(List.copyOf(names), RowLayout::new);
+    }
+
+    /**
+     * @return 新的布局，不与其它布局共用
+     * @throws IllegalArgumentException 字段名重复
+     */
+    public static RowLayout create(List<String> names) {
+        return new RowLayout(names);
+    }
+
+    public static RowLayout of(String... names) {
+        return of(Arrays.asList(names));
+    }
+
+    /**
+     * @return 按表结构列顺序的布局
+     */
+    public static RowLayout of(TableSchema schema) {
+        return SCHEMA_LAYOUTS.computeIfAbsent(schema, key -> {
+            List<String> names = new ArrayList<>(key.columns().size());
+            for (ColumnDefinition column : key.columns()) {
+                names.add(column.name());
+            }
+            return of(names);
+        });
+    }
+
+    /**
+     * @return 字段的序号，不在布局中时返回 -1
+     */
+    public int ordinal(String name) {
+        Integer ordinal = ordinals.get(name);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public String name(int ordinal) {
+        return names[ordinal];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public List<String> names() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(names);
+    }
+
+    /**
+     * 按访问顺序淘汰的缓存，条目数不超过 StorageConfig.ROW_LAYOUT_CACHE_SIZE；整体加锁，of 不在逐行的路径上调用
+     */
+    private static <K> Map<K, RowLayout> lruCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<K, RowLayout>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, RowLayout> eldest) {
+                return size() > StorageConfig.ROW_LAYOUT_CACHE_SIZE;
+            }
+        });
+    }
+}
@@ -0,0 +1,222 @@
+package executor.common;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 紧凑行：字段值按布局（RowLayout）的序号存放在数组中，字段名到序号的映射由同一布局的所有行共用。
+ * 取代每行一个 HashMap 的存储方式，每行只有一个对象头和一个数组；已知序号时（ColumnReference 绑定布局后）
+ * 按下标读取，不再对字段名求哈希。
+ * 实现完整的 Map 接口，equals 和 hashCode 与内容相同的 HashMap 一致，Record.fields() 的调用方不需要修改。
+ * 与 HashMap 一样区分“字段值为 null”和“没有这个字段”；布局之外的字段放在附加的 HashMap 中
+ */
+public final class RowMap extends AbstractMap<String, Object> {
+    private static final Object ABSENT = new Object();
+
+    private final RowLayout layout;
+    private final Object[] values;
+    private Map<String, Object> extra;
+    private int present;
+
+    private RowMap(RowLayout layout, Object[] values, int present) {
+        this.layout = layout;
+        this.values = values;
+        this.present = present;
+    }
+
+    /**
+     * @param values 按布局顺序的全部字段值，直接作为行的存储，调用方之后不应再修改
+     */
+    public static RowMap of(RowLayout layout, Object[] values) {
+        if (values.length != layout.size()) {
+            throw new IllegalArgumentException("Expected " + layout.size() + " values but got " + values.length);
+        }
+        return new RowMap(layout, values, values.length);
+    }
+
+    /**
+     * @return 没有任何字段的行，之后用 set 或 put 填入
+     */
+    public static RowMap empty(RowLayout layout) {
+        Object[] values = new Object[layout.size()];
+        Arrays.fill(values, ABSENT);
+        return new RowMap(layout, values, 0);
+    }
+
+    /**
+     * 按布局复制字段；fields 已经是同一布局的 RowMap 时直接复制数组
+     */
+    public static RowMap copyOf(RowLayout layout, Map<String, Object> fields) {
+        if (fields instanceof RowMap row && row.layout == layout) {
+            RowMap copy = new RowMap(layout, row.values.clone(), row.present);
+            if (row.extra != null) {
+                copy.extra = new HashMap<>(row.extra);
+            }
+            return copy;
+        }
+        RowMap copy = empty(layout);
+        copy.putAll(fields);
+        return copy;
+    }
+
+    public RowLayout layout() {
+        return layout;
+    }
+
+    /**
+     * @return 序号处的字段值；没有这个字段时返回 null
+     */
+    public Object get(int ordinal) {
+        Object value = values[ordinal];
+        return value == ABSENT ? null : value;
+    }
+
+    public boolean has(int ordinal) {
+        return values[ordinal] != ABSENT;
+    }
+
+    public void set(int ordinal, Object value) {
+        if (values[ordinal] == ABSENT) {
+            present++;
+        }
+        values[ordinal] = value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int ordinal = key instanceof String name ? layout.ordinal(name) : -1;
+        if (ordinal >= 0) {
+            return get(ordinal);
+        }
+        return extra == null ? null : extra.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int ordinal = key instanceof String name ? layout.ordinal(name) : -1;
+        if (ordinal >= 0) {
+            return has(ordinal);
+        }
+        return extra != null && extra.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int ordinal = layout.ordinal(key);
+        if (ordinal >= 0) {
+            Object previous = get(ordinal);
+            set(ordinal, value);
+            return previous;
+        }
+        if (extra == null) {
+            extra = new HashMap<>(4);
+        }
+        return extra.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int ordinal = key instanceof String name ? layout.ordinal(name) : -1;
+        if (ordinal >= 0) {
+            Object previous = get(ordinal);
+            if (values[ordinal] != ABSENT) {
+                values[ordinal] = ABSENT;
+                present--;
+            }
+            return previous;
+        }
+        return extra == null ? null : extra.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return present + (extra == null ? 0 : extra.size());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof RowMap other && other.layout == layout && extra == null && other.extra == null) {
+            // 同一布局：逐个比较数组元素，ABSENT 是同一个对象，缺失的字段只与缺失的字段相等
+            for (int i = 0; i < values.length; i++) {
+                if (!Objects.equals(values[i], other.values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return RowMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * 先按布局顺序遍历存在的字段，再遍历布局之外的字段
+     */
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+        private final Iterator<Entry<String, Object>> extras = extra == null ? null : extra.entrySet().iterator();
+        private int next = advance(0);
+        private int last = -1;
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == ABSENT) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length || (extras != null && extras.hasNext());
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next < values.length) {
+                last = next;
+                next = advance(next + 1);
+                return new SimpleImmutableEntry<>(layout.name(last), values[last]);
+            }
+            if (extras == null) {
+                throw new NoSuchElementException();
+            }
+            last = -1;
+            return extras.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                if (values[last] == ABSENT) {
+                    throw new IllegalStateException();
+                }
+                values[last] = ABSENT;
+                present--;
+                last = -1;
+            } else if (extras != null) {
+                extras.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
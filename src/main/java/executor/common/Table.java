@@ -2,6 +2,7 @@ package executor.common;
 
 import executor.common.Record;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Predicate;
@@ -12,17 +13,38 @@ import java.util.function.Predicate;
 public interface Table {
     // 数据操作
     CloseableIterator<executor.common.Record> scan();
+    /**
+     * 只需要部分字段时的扫描：返回的记录至少包含 columns 中的字段（表中没有的字段除外），列式表只构造这些字段。
+     * 默认返回完整的记录
+     */
+    default CloseableIterator<Record> scan(Collection<String> columns) {
+        return scan();
+    }
     void insert(executor.common.Record record);
+    void bulkInsert(Iterator<Record> records);   //批量插入（加载表文件时使用），索引在全部插入后统一更新
     void delete(Predicate<Record> condition);
+    /**
+     * 删除一条字段与 record 完全相等的记录（撤销插入、重做删除时使用），有多条相等的记录时只删除一条。
+     * 按字段而不是按对象比较：列式表每次返回的 Record 都是新构造的
+     */
+    default void deleteRecord(Record record) {
+        boolean[] deleted = new boolean[1];
+        delete(candidate -> !deleted[0] && (deleted[0] = candidate.equals(record)));
+    }
     void update(executor.common.Record record,Record newRecord);
-    List<Index> getIndexes();   //获得表上所有索引
+    List<Index> getIndexes();   //获得表上用 addIndex 添加的索引，不包括主键索引
+    Index getPrimaryKeyIndex();   //表自动维护的主键索引，没有主键时为 null；只用于查找，不接受 onInsert/onDelete
     Index getIndex(String indexName);   //获得特定名称的索引
     public void addIndex(Index index);  //添加索引
 
     // 元数据
     TableSchema getSchema();
+    RowLayout getRowLayout();   //表中紧凑行的布局，创建表时确定，同一张表始终返回同一个实例
 
     Record getRecord(String key);   //通过主键获取记录
     List<Record> getAllRecords();   //查询所有记录
+
+    int size();   //记录数
+    long getVersion();   //修改版本号，每次插入、更新、删除记录后递增，用于判断表是否需要写回磁盘
 }
 
@@ -0,0 +1,408 @@
+package executor.common.impl;
+
+import executor.common.ColumnType;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * ColumnarTable 的一列：按行号存放值的基本类型数组，另有两个位图分别标记值为 null 和记录中没有这个字段。
+ * 不加锁，由 ColumnarTable 在自己的锁内访问
+ */
+abstract class ColumnVector {
+    private long[] nulls;
+    private long[] absent;
+
+    ColumnVector(int capacity) {
+        this.nulls = new long[words(capacity)];
+        this.absent = new long[words(capacity)];
+    }
+
+    static ColumnVector of(ColumnType type, int capacity) {
+        return switch (type) {
+            case INT -> new IntVector(capacity);
+            case FLOAT -> new DoubleVector(capacity);
+            case BOOLEAN -> new BooleanVector(capacity);
+            case VARCHAR -> new StringVector(capacity);
+            case TIMESTAMP -> new TimestampVector(capacity);
+        };
+    }
+
+    /**
+     * 写入一行的值（空行，或已经 release 的行）；记录中没有这个字段时标记为缺失
+     * @return 记录中有这个字段时返回 true
+     */
+    final boolean put(int row, boolean present, Object value) {
+        setBit(absent, row, !present);
+        setBit(nulls, row, present && value == null);
+        if (present && value != null) {
+            set(row, value);
+        }
+        return present;
+    }
+
+    final boolean isAbsent(int row) {
+        return getBit(absent, row);
+    }
+
+    /**
+     * @return 行的值；缺失或为 null 时返回 null
+     */
+    final Object get(int row) {
+        return getBit(absent, row) || getBit(nulls, row) ? null : read(row);
+    }
+
+    /**
+     * @return 行的值与 value 相等（都为 null 也算相等），不区分缺失和 null
+     */
+    final boolean matches(int row, Object value) {
+        if (getBit(absent, row) || getBit(nulls, row)) {
+            return value == null;
+        }
+        return value != null && equalsValue(row, value);
+    }
+
+    /**
+     * 把 from 行移动到 to 行（删除后压缩时使用，to 行的旧值已经释放）
+     */
+    final void move(int from, int to) {
+        setBit(absent, to, getBit(absent, from));
+        setBit(nulls, to, getBit(nulls, from));
+        copy(from, to);
+    }
+
+    /**
+     * 释放一行原来的值（删除或覆盖之前调用），变长列据此统计可回收的空间
+     */
+    final void release(int row) {
+        if (!getBit(absent, row) && !getBit(nulls, row)) {
+            discard(row);
+        }
+        clear(row);
+    }
+
+    /**
+     * 把一行标记为空，不释放它的值（值已经移动到别的行）
+     */
+    final void clear(int row) {
+        setBit(absent, row, true);
+        setBit(nulls, row, false);
+    }
+
+    void grow(int capacity) {
+        nulls = Arrays.copyOf(nulls, words(capacity));
+        absent = Arrays.copyOf(absent, words(capacity));
+    }
+
+    /**
+     * 删除完成后调用，rows 是剩下的行数
+     */
+    void compact(int rows) {
+    }
+
+    /**
+     * @return 可回收的空间已经足够多，值得在修改之后调用 compact
+     */
+    boolean needsCompaction() {
+        return false;
+    }
+
+    long bytes() {
+        return 16L * nulls.length + 64;
+    }
+
+    abstract void set(int row, Object value);
+
+    abstract Object read(int row);
+
+    abstract boolean equalsValue(int row, Object value);
+
+    abstract void copy(int from, int to);
+
+    void discard(int row) {
+    }
+
+    private static int words(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private static final class IntVector extends ColumnVector {
+        private int[] values;
+
+        IntVector(int capacity) {
+            super(capacity);
+            values = new int[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = (Integer) value;
+        }
+
+        @Override
+        Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean equalsValue(int row, Object value) {
+            return value instanceof Integer number && values[row] == number;
+        }
+
+        @Override
+        void copy(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        long bytes() {
+            return super.bytes() + 4L * values.length;
+        }
+    }
+
+    private static final class DoubleVector extends ColumnVector {
+        private double[] values;
+
+        DoubleVector(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = (Double) value;
+        }
+
+        @Override
+        Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean equalsValue(int row, Object value) {
+            // 与 Double.equals 一致：按位比较，NaN 等于 NaN，0.0 不等于 -0.0
+            return value instanceof Double number
+                    && Double.doubleToLongBits(values[row]) == Double.doubleToLongBits(number);
+        }
+
+        @Override
+        void copy(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        long bytes() {
+            return super.bytes() + 8L * values.length;
+        }
+    }
+
+    private static final class BooleanVector extends ColumnVector {
+        private long[] values;
+
+        BooleanVector(int capacity) {
+            super(capacity);
+            values = new long[words(capacity)];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            setBit(values, row, (Boolean) value);
+        }
+
+        @Override
+        Object read(int row) {
+            return getBit(values, row);
+        }
+
+        @Override
+        boolean equalsValue(int row, Object value) {
+            return value instanceof Boolean bool && getBit(values, row) == bool;
+        }
+
+        @Override
+        void copy(int from, int to) {
+            setBit(values, to, getBit(values, from));
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, words(capacity));
+        }
+
+        @Override
+        long bytes() {
+            return super.bytes() + 8L * values.length;
+        }
+    }
+
+    /**
+     * 变长字符串：所有值的 UTF-8 字节依次追加在一个字节数组中，每行记下起始位置和长度。
+     * 覆盖和删除留下的空洞超过一半时在 compact 中整理
+     */
+    private static final class StringVector extends ColumnVector {
+        private static final int COMPACT_MIN_GARBAGE = 64 * 1024; // 修改留下的空洞少于此数时不在 update 中整理
+        private int[] starts;
+        private int[] lengths;
+        private byte[] heap = new byte[256];
+        private int heapSize;
+        private long garbage;
+
+        StringVector(int capacity) {
+            super(capacity);
+            starts = new int[capacity];
+            lengths = new int[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            if (heapSize + bytes.length > heap.length) {
+                long required = (long) heapSize + bytes.length;
+                if (required > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("VARCHAR column exceeds 2 GB");
+                }
+                heap = Arrays.copyOf(heap, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * heap.length)));
+            }
+            System.arraycopy(bytes, 0, heap, heapSize, bytes.length);
+            starts[row] = heapSize;
+            lengths[row] = bytes.length;
+            heapSize += bytes.length;
+        }
+
+        @Override
+        Object read(int row) {
+            return new String(heap, starts[row], lengths[row], StandardCharsets.UTF_8);
+        }
+
+        @Override
+        boolean equalsValue(int row, Object value) {
+            return value instanceof String text && read(row).equals(text);
+        }
+
+        @Override
+        void copy(int from, int to) {
+            starts[to] = starts[from];
+            lengths[to] = lengths[from];
+        }
+
+        @Override
+        void discard(int row) {
+            garbage += lengths[row];
+        }
+
+        @Override
+        boolean needsCompaction() {
+            return garbage >= COMPACT_MIN_GARBAGE && garbage * 2 > heapSize;
+        }
+
+        @Override
+        void compact(int rows) {
+            if (garbage * 2 <= heapSize) {
+                return;
+            }
+            byte[] compacted = new byte[Math.max(256, heapSize - (int) garbage)];
+            int size = 0;
+            for (int row = 0; row < rows; row++) {
+                if (get(row) == null) {
+                    continue;
+                }
+                System.arraycopy(heap, starts[row], compacted, size, lengths[row]);
+                starts[row] = size;
+                size += lengths[row];
+            }
+            heap = compacted;
+            heapSize = size;
+            garbage = 0;
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+
+        @Override
+        long bytes() {
+            return super.bytes() + 8L * starts.length + heap.length;
+        }
+    }
+
+    /**
+     * 时间戳按毫秒数和纳秒部分分开存放，还原出的 Timestamp 与写入的相等
+     */
+    private static final class TimestampVector extends ColumnVector {
+        private long[] millis;
+        private int[] nanos;
+
+        TimestampVector(int capacity) {
+            super(capacity);
+            millis = new long[capacity];
+            nanos = new int[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            Timestamp timestamp = (Timestamp) value;
+            millis[row] = timestamp.getTime();
+            nanos[row] = timestamp.getNanos();
+        }
+
+        @Override
+        Object read(int row) {
+            Timestamp timestamp = new Timestamp(millis[row]);
+            timestamp.setNanos(nanos[row]);
+            return timestamp;
+        }
+
+        @Override
+        boolean equalsValue(int row, Object value) {
+            return value instanceof Timestamp timestamp && timestamp.getTime() == millis[row]
+                    && timestamp.getNanos() == nanos[row];
+        }
+
+        @Override
+        void copy(int from, int to) {
+            millis[to] = millis[from];
+            nanos[to] = nanos[from];
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            millis = Arrays.copyOf(millis, capacity);
+            nanos = Arrays.copyOf(nanos, capacity);
+        }
+
+        @Override
+        long bytes() {
+            return super.bytes() + 12L * millis.length;
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package executor.common.impl;
+
+import executor.common.CloseableIterator;
+import executor.common.ColumnDefinition;
+import executor.common.Index;
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
+import executor.common.Table;
+import executor.common.TableSchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 按列存放的 Table 实现：表结构中的每一列对应一个基本类型数组（ColumnVector），
+ * 不再为每行保存一个装箱值的 HashMap。Record 只在接口边界上按需构造（scan、getAllRecords、delete 的条件），
+ * 构造出的 Record 与插入时的字段完全相等（包括值为 null 和缺少字段的区别）。
+ * 表结构之外的字段放在按行的附加映射中，只有出现这种字段时才分配。
+ * <p>
+ * 与 InMemoryTable 一样，update 按行号在原位置覆盖；不同的是 delete 把保留的行前移填补空位，不保留删除标记，
+ * scan 也不是快照（见 scan）
+ */
+public class ColumnarTable implements Table {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SCAN_BATCH = 1024; // scan 每次持锁构造的行数
+
+    private final TableSchema schema;
+    private final String[] names;
+    private final Map<String, Integer> ordinals;
+    private final RowLayout layout;
+    private final ColumnVector[] columns;
+    private Map<String, Object>[] extras; // 表结构之外的字段，没有时为 null
+    private int capacity = INITIAL_CAPACITY;
+    private volatile int rowCount; // 只在持有 lock 时修改
+    private final Map<String, Index> indexes;
+    private final PrimaryKeyIndex primaryKey; // 表结构没有主键列和 id 列时为 null
+    private final Object lock = new Object();
+    private volatile long version; // 只在持有 lock 时递增
+    private final Set<Scan> scans = Collections.newSetFromMap(new WeakHashMap<>()); // 未结束的 scan，弱引用，丢弃的迭代器随 GC 移除
+
+    public ColumnarTable(TableSchema schema) {
+        this.schema = Objects.requireNonNull(schema);
+        List<ColumnDefinition> definitions = schema.columns();
+        this.names = new String[definitions.size()];
+        this.ordinals = new HashMap<>();
+        this.columns = new ColumnVector[definitions.size()];
+        for (int i = 0; i < definitions.size(); i++) {
+            names[i] = definitions.get(i).name();
+            ordinals.putIfAbsent(names[i], i);
+            columns[i] = ColumnVector.of(definitions.get(i).type(), capacity);
+        }
+        this.layout = RowLayout.of(schema);
+        this.indexes = new ConcurrentHashMap<>();
+        this.primaryKey = PrimaryKeyIndex.create(schema, layout, new PrimaryKeyIndex.Rows() {
+            @Override
+            public Object keyAt(int row) {
+                int[] keyOrdinals = primaryKey.ordinals();
+                Object[] values = new Object[keyOrdinals.length];
+                for (int i = 0; i < keyOrdinals.length; i++) {
+                    values[i] = columns[keyOrdinals[i]].get(row); // 只读键列，不构造记录
+                }
+                return primaryKey.keyOfValues(values);
+            }
+
+            @Override
+            public Record recordAt(int row) {
+                return materialize(row);
+            }
+        }, lock);
+    }
+
+    /**
+     * 分批构造记录：每批在锁内构造，批与批之间不持锁，并发的修改不会抛出 ConcurrentModificationException。
+     * 不是快照：扫描期间一直存在的行恰好返回一次；尚未构造的行被修改时返回修改后的值，被删除时不再返回，
+     * 已经构造在当前批中的行不受影响；新插入的行也会返回。delete 前移行时会相应地调整未结束的 scan 的位置，不会跳过或重复返回行
+     */
+    @Override
+    public CloseableIterator<Record> scan() {
+        return scan(null, null);
+    }
+
+    /**
+     * 只构造需要的列，其余列的数组不会被读取
+     */
+    @Override
+    public CloseableIterator<Record> scan(Collection<String> columnNames) {
+        List<Integer> selected = new ArrayList<>();
+        List<String> extraNames = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(columnNames)) {
+            Integer ordinal = ordinals.get(name);
+            if (ordinal != null) {
+                selected.add(ordinal);
+            } else {
+                extraNames.add(name);
+            }
+        }
+        return scan(selected.stream().mapToInt(Integer::intValue).toArray(), extraNames);
+    }
+
+    /**
+     * @param selected   要构造的列序号，null 表示全部字段
+     * @param extraNames 要构造的表结构之外的字段
+     */
+    private CloseableIterator<Record> scan(int[] selected, List<String> extraNames) {
+        Scan scan = new Scan(selected, extraNames);
+        synchronized (lock) {
+            scans.add(scan);
+        }
+        return scan;
+    }
+
+    /**
+     * 按行号分批读取的迭代器；position 只在持有 lock 时读写，delete 前移行时据此调整
+     */
+    private final class Scan implements CloseableIterator<Record> {
+        private final int[] selected;
+        private final List<String> extraNames;
+        private final List<Record> batch = new ArrayList<>();
+        private int position; // 下一批的起始行
+        private int shift;    // 本次 delete 中删除的、位于 position 之前的行数
+        private int index;
+        private boolean finished;
+
+        Scan(int[] selected, List<String> extraNames) {
+            this.selected = selected;
+            this.extraNames = extraNames;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < batch.size()) {
+                return true;
+            }
+            batch.clear();
+            index = 0;
+            if (finished) {
+                return false;
+            }
+            synchronized (lock) {
+                int end = Math.min(rowCount, position + SCAN_BATCH);
+                for (int row = position; row < end; row++) {
+                    batch.add(selected == null ? materialize(row) : materialize(row, selected, extraNames));
+                }
+                position = Math.max(position, end);
+                if (batch.isEmpty()) {
+                    finished = true;
+                    scans.remove(this);
+                }
+            }
+            return !batch.isEmpty();
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(index++);
+        }
+
+        @Override
+        public void close() {
+            batch.clear();
+            synchronized (lock) {
+                finished = true;
+                scans.remove(this);
+            }
+        }
+    }
+
+    @Override
+    public void insert(Record record) {
+        Objects.requireNonNull(record);
+        if (!schema.validate(record)) {
+            throw new IllegalArgumentException("Record doesn't match table schema");
+        }
+        synchronized (lock) {
+            append(record.fields());
+            indexes.values().forEach(index -> index.onInsert(record));
+            version++;
+        }
+    }
+
+    /**
+     * 逐条校验后直接写入各列，全部写完后再把新记录批量加入各索引，版本号只递增一次。
+     * 没有索引时不保留传入的记录，加载表文件时内存中只有列数据
+     */
+    @Override
+    public void bulkInsert(Iterator<Record> source) {
+        Objects.requireNonNull(source);
+        synchronized (lock) {
+            List<Record> added = indexes.isEmpty() ? null : new ArrayList<>();
+            int first = rowCount;
+            try {
+                while (source.hasNext()) {
+                    Record record = Objects.requireNonNull(source.next());
+                    if (!schema.validate(record)) {
+                        throw new IllegalArgumentException("Record doesn't match table schema");
+                    }
+                    append(record.fields());
+                    if (added != null) {
+                        added.add(record);
+                    }
+                }
+            } finally {
+                // 中途失败时已写入的记录保留在表中，索引与列数据保持一致
+                if (added != null) {
+                    for (Index index : indexes.values()) {
+                        added.forEach(index::onInsert);
+                    }
+                }
+                if (rowCount > first) {
+                    version++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void delete(Predicate<Record> condition) {
+        Objects.requireNonNull(condition);
+        synchronized (lock) {
+            // 一遍完成：保留的行前移覆盖被删除的行，删除多少行都是线性时间
+            int kept = 0;
+            int deleted = 0;
+            try {
+                for (int row = 0; row < rowCount; row++) {
+                    Record record = materialize(row);
+                    if (condition.test(record)) {
+                        release(row);
+                        for (Scan scan : scans) {
+                            if (row < scan.position) {
+                                scan.shift++;
+                            }
+                        }
+                        indexes.values().forEach(index -> index.onDelete(record));
+                        deleted++;
+                        continue;
+                    }
+                    if (kept != row) {
+                        move(row, kept);
+                    }
+                    kept++;
+                }
+            } finally {
+                // 条件抛出异常时，尚未检查的行原样保留
+                int remaining = rowCount - kept - deleted;
+                if (remaining > 0 && deleted > 0) {
+                    for (int row = kept + deleted; row < rowCount; row++) {
+                        move(row, row - deleted);
+                    }
+                }
+                int newCount = rowCount - deleted;
+                for (int row = newCount; row < rowCount; row++) {
+                    clear(row);
+                }
+                rowCount = newCount;
+                for (Scan scan : scans) {
+                    scan.position -= scan.shift;
+                    scan.shift = 0;
+                }
+                if (deleted > 0) {
+                    for (ColumnVector column : columns) {
+                        column.compact(rowCount);
+                    }
+                    if (primaryKey != null) {
+                        primaryKey.rebuild(rowCount); // 保留的行前移，行号变了
+                    }
+                    version += deleted;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void update(Record record, Record newRecord) {
+        Objects.requireNonNull(record);
+        Objects.requireNonNull(newRecord);
+        if (!schema.validate(newRecord)) {
+            throw new IllegalArgumentException("New record doesn't match table schema");
+        }
+        synchronized (lock) {
+            int row = find(record.fields());
+            if (row < 0) {
+                throw new IllegalArgumentException("Record not found in table");
+            }
+            indexes.values().forEach(index -> index.onDelete(record));
+            if (primaryKey != null) {
+                primaryKey.remove(row);
+            }
+            release(row);
+            write(row, newRecord.fields());
+            if (primaryKey != null) {
+                primaryKey.add(row);
+            }
+            for (ColumnVector column : columns) {
+                if (column.needsCompaction()) {
+                    column.compact(rowCount); // 覆盖留下的空洞累积到阈值才整理，逐行修改时摊还为常数时间
+                }
+            }
+            Record merged = record.updateFrom(newRecord);
+            indexes.values().forEach(index -> index.onInsert(merged));
+            version++;
+        }
+    }
+
+    @Override
+    public List<Index> getIndexes() {
+        return new ArrayList<>(indexes.values());
+    }
+
+    @Override
+    public Index getPrimaryKeyIndex() {
+        return primaryKey;
+    }
+
+    @Override
+    public Index getIndex(String indexName) {
+        return primaryKey != null && PrimaryKeyIndex.NAME.equals(indexName) ? primaryKey : indexes.get(indexName);
+    }
+
+    @Override
+    public void addIndex(Index index) {
+        Objects.requireNonNull(index);
+        synchronized (lock) {
+            if (indexes.containsKey(index.getName()) || PrimaryKeyIndex.NAME.equals(index.getName())) {
+                throw new IllegalArgumentException("Index already exists: " + index.getName());
+            }
+            for (int row = 0; row < rowCount; row++) {
+                index.onInsert(materialize(row));
+            }
+            indexes.put(index.getName(), index);
+        }
+    }
+
+    @Override
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public RowLayout getRowLayout() {
+        return layout;
+    }
+
+    /**
+     * 通过主键索引查找，不扫描全表；多列主键请用 getIndex(PrimaryKeyIndex.NAME).search(各列值的列表)
+     */
+    @Override
+    public Record getRecord(String key) {
+        return primaryKey == null ? null : primaryKey.get(key);
+    }
+
+    @Override
+    public List<Record> getAllRecords() {
+        synchronized (lock) {
+            List<Record> records = new ArrayList<>(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                records.add(materialize(row));
+            }
+            return records;
+        }
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 列数据实际占用的堆字节数（按数组容量计算）
+     */
+    public long estimateBytes() {
+        synchronized (lock) {
+            long bytes = 128;
+            for (ColumnVector column : columns) {
+                bytes += column.bytes();
+            }
+            if (primaryKey != null) {
+                bytes += primaryKey.bytes();
+            }
+            if (extras != null) {
+                bytes += 8L * extras.length;
+                for (int row = 0; row < rowCount; row++) {
+                    if (extras[row] != null) {
+                        bytes += 64 + 64L * extras[row].size();
+                    }
+                }
+            }
+            return bytes;
+        }
+    }
+
+    // --- 以下方法都在持有 lock 时调用 ---
+
+    private void append(Map<String, Object> fields) {
+        if (rowCount == capacity) {
+            grow();
+        }
+        write(rowCount, fields);
+        rowCount++;
+        if (primaryKey != null) {
+            primaryKey.add(rowCount - 1);
+        }
+    }
+
+    private void write(int row, Map<String, Object> fields) {
+        int present = 0;
+        RowMap compact = fields instanceof RowMap rowMap && rowMap.layout() == layout ? rowMap : null;
+        for (int i = 0; i < columns.length; i++) {
+            boolean written = compact != null
+                    ? columns[i].put(row, compact.has(i), compact.get(i))
+                    : columns[i].put(row, fields.containsKey(names[i]), fields.get(names[i]));
+            if (written) {
+                present++;
+            }
+        }
+        if (present < fields.size()) {
+            Map<String, Object> extra = new HashMap<>();
+            fields.forEach((name, value) -> {
+                if (!ordinals.containsKey(name)) {
+                    extra.put(name, value);
+                }
+            });
+            extras()[row] = extra;
+        }
+    }
+
+    private Record materialize(int row) {
+        RowMap fields = RowMap.empty(layout);
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].isAbsent(row)) {
+                fields.set(i, columns[i].get(row));
+            }
+        }
+        if (extras != null && extras[row] != null) {
+            fields.putAll(extras[row]);
+        }
+        return new Record(fields);
+    }
+
+    private Record materialize(int row, int[] selected, List<String> extraNames) {
+        RowMap fields = RowMap.empty(layout); // 沿用整张表的布局，过滤条件按表布局绑定的序号仍然有效
+        for (int ordinal : selected) {
+            if (!columns[ordinal].isAbsent(row)) {
+                fields.set(ordinal, columns[ordinal].get(row));
+            }
+        }
+        Map<String, Object> extra = extras == null ? null : extras[row];
+        if (extra != null) {
+            for (String name : extraNames) {
+                if (extra.containsKey(name)) {
+                    fields.put(name, extra.get(name));
+                }
+            }
+        }
+        return new Record(fields);
+    }
+
+    /**
+     * @return 一条字段与 fields 完全相等的行，找不到时返回 -1；逐列比较，不构造记录。
+     * 有主键时只比较主键相同的行
+     */
+    private int find(Map<String, Object> fields) {
+        Object key = primaryKey == null ? null : primaryKey.keyOf(fields);
+        if (key != null) {
+            for (int row : primaryKey.find(key)) {
+                if (rowEquals(row, fields)) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if (rowEquals(row, fields)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private boolean rowEquals(int row, Map<String, Object> fields) {
+        int present = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].isAbsent(row)) {
+                if (fields.containsKey(names[i])) {
+                    return false;
+                }
+                continue;
+            }
+            Object value = fields.get(names[i]);
+            if (!columns[i].matches(row, value) || value == null && !fields.containsKey(names[i])) {
+                return false;
+            }
+            present++;
+        }
+        Map<String, Object> extra = extras == null ? null : extras[row];
+        if (extra == null) {
+            return present == fields.size();
+        }
+        if (present + extra.size() != fields.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> field : extra.entrySet()) {
+            if (!Objects.equals(field.getValue(), fields.get(field.getKey())) || !fields.containsKey(field.getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void release(int row) {
+        for (ColumnVector column : columns) {
+            column.release(row);
+        }
+        if (extras != null) {
+            extras[row] = null;
+        }
+    }
+
+    private void move(int from, int to) {
+        for (ColumnVector column : columns) {
+            column.move(from, to);
+        }
+        if (extras != null) {
+            extras[to] = extras[from];
+        }
+    }
+
+    private void clear(int row) {
+        for (ColumnVector column : columns) {
+            column.clear(row);
+        }
+        if (extras != null) {
+            extras[row] = null;
+        }
+    }
+
+    private void grow() {
+        int newCapacity = capacity + Math.max(INITIAL_CAPACITY, capacity >> 1);
+        for (ColumnVector column : columns) {
+            column.grow(newCapacity);
+        }
+        if (extras != null) {
+            extras = Arrays.copyOf(extras, newCapacity);
+        }
+        capacity = newCapacity;
+    }
+
+    private Map<String, Object>[] extras() {
+        if (extras == null) {
+            extras = newExtras(capacity);
+        }
+        return extras;
+    }
+
+    /**
+     * 按需创建存放表结构外字段的数组，未检查的转换只出现在这里
+     */
+    private static Map<String, Object>[] newExtras(int capacity) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object>[] array = (Map<String, Object>[]) new Map<?, ?>[capacity];
+        return array;
+    }
+}
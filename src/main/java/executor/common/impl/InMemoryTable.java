@@ -5,6 +5,8 @@ import executor.common.Index;
 import executor.common.Table;
 import executor.common.TableSchema;
 import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -12,36 +14,131 @@ import java.util.function.Predicate;
 
 /**
  * Table接口实现
+ * <p>
+ * 每行有一个行号，插入时追加分配，压缩之前不变。删除只在删除位图中置位，
+ * 修改按行号在原位置替换记录，都不移动其它行；大量删除或修改都是线性时间。
+ * 已删除的行占用的位置在死行达到一定数量和比例后，于删除结束时一次压缩回收（压缩会重新分配行号）
+ * <p>
+ * 行和删除位按行号分块（Chunk）存放。scan 开始时只在锁内复制块数组的引用，之后不持锁读取这些块，
+ * 看到的是开始时刻的一致快照，也不阻塞写入：块被未结束的 scan 共享时，写入方先复制这一块再修改（写时复制），
+ * scan 继续读取旧块；追加的行位于所有快照的末尾之后，不需要复制。旧块在最后一个引用它的 scan 结束后由 GC 回收
  */
 public class InMemoryTable implements Table {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 每块的行数，是 64 的倍数
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int COMPACTION_MIN_DEAD_ROWS = 1024; // 死行少于此数时不压缩
+    private static final double COMPACTION_DEAD_RATIO = 0.5;  // 死行占已分配行号的比例达到此值时压缩
+
+    /**
+     * 一块连续行号的行和删除位
+     */
+    private static final class Chunk {
+        final Record[] rows;
+        final long[] deleted;
+        final long epoch; // 创建或复制这一块时的 snapshotEpoch，小于当前值说明之后开始的 scan 可能正在读取它
+
+        Chunk(Record[] rows, long[] deleted, long epoch) {
+            this.rows = rows;
+            this.deleted = deleted;
+            this.epoch = epoch;
+        }
+
+        Chunk(long epoch) {
+            this(new Record[CHUNK_SIZE], new long[CHUNK_SIZE >>> 6], epoch);
+        }
+
+        boolean isDeleted(int offset) {
+            return (deleted[offset >>> 6] & (1L << offset)) != 0;
+        }
+    }
+
     private final TableSchema schema;
-    private final List<Record> records;
+    private final RowLayout layout;
     private final Map<String, Index> indexes;
+    private final PrimaryKeyIndex primaryKey; // 表结构没有主键列和 id 列时为 null
+    private final Object lock = new Object();
+    private Chunk[] chunks = new Chunk[4]; // 行号 >>> CHUNK_SHIFT -> 块；行是按表结构布局的紧凑行，已删除的行保留到压缩
+    private int chunkCount;
+    private int rowCount;  // 已分配的行号数（包括已删除的行）
+    private volatile int liveCount; // 只在持有 lock 时修改
+    private int locateHint; // 没有主键时按记录查找行号的起点
+    private long snapshotEpoch; // 每个 scan 开始时递增
+    private int activeScans;    // 已开始、尚未结束的 scan 数
+    private volatile long version; // 只在持有 lock 时递增
 
     public InMemoryTable(TableSchema schema) {
         this.schema = Objects.requireNonNull(schema);
-        this.records = new ArrayList<>();
+        this.layout = RowLayout.of(schema);
         this.indexes = new ConcurrentHashMap<>();
+        this.primaryKey = PrimaryKeyIndex.create(schema, layout, new PrimaryKeyIndex.Rows() {
+            @Override
+            public Object keyAt(int row) {
+                return primaryKey.keyOf(rowAt(row).fields());
+            }
+
+            @Override
+            public Record recordAt(int row) {
+                return rowAt(row);
+            }
+        }, lock);
     }
 
+    /**
+     * 读取开始时刻的快照：之后的插入、修改、删除和压缩都不影响这次扫描，扫描也不阻塞它们。
+     * 迭代到末尾或 close 时结束；不结束的扫描只会让写入方多复制一些块
+     */
     @Override
     public CloseableIterator<Record> scan() {
+        Chunk[] snapshot;
+        int end;
+        synchronized (lock) {
+            snapshot = Arrays.copyOf(chunks, chunkCount);
+            end = rowCount;
+            snapshotEpoch++;
+            activeScans++;
+        }
         return new CloseableIterator<Record>() {
-            private final Iterator<Record> iterator = records.iterator();
+            private int next = advance(0);
+            private boolean finished;
+
+            private int advance(int row) {
+                while (row < end && snapshot[row >>> CHUNK_SHIFT].isDeleted(row & CHUNK_MASK)) {
+                    row++;
+                }
+                if (row >= end) {
+                    finish();
+                }
+                return row;
+            }
 
             @Override
             public boolean hasNext() {
-                return iterator.hasNext();
+                return next < end;
             }
 
             @Override
             public Record next() {
-                return iterator.next();
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                Record record = snapshot[next >>> CHUNK_SHIFT].rows[next & CHUNK_MASK];
+                next = advance(next + 1);
+                return record;
             }
 
             @Override
             public void close() {
-                // 清理资源，内存实现无需特别处理
+                finish();
+            }
+
+            private void finish() {
+                if (!finished) {
+                    finished = true;
+                    synchronized (lock) {
+                        activeScans--;
+                    }
+                }
             }
         };
     }
@@ -53,13 +150,49 @@ public class InMemoryTable implements Table {
             throw new IllegalArgumentException("Record doesn't match table schema");
         }
 
-        synchronized (records) {
-            records.add(record);
+        Record row = compact(record);
+        synchronized (lock) {
+            append(row);
             // 更新所有索引
-            indexes.values().forEach(index -> index.onInsert(record));
+            indexes.values().forEach(index -> index.onInsert(row));
+            version++;
         }
     }
 
+    /**
+     * 逐条校验后直接追加到行数组，不逐条维护索引；全部追加完后再把新记录批量加入各索引，版本号只递增一次。
+     * 记录从迭代器中逐条取出，加载表文件时不需要先构造完整的记录列表
+     */
+    @Override
+    public void bulkInsert(Iterator<Record> source) {
+        Objects.requireNonNull(source);
+        synchronized (lock) {
+            int first = rowCount;
+            try {
+                while (source.hasNext()) {
+                    Record record = Objects.requireNonNull(source.next());
+                    if (!schema.validate(record)) {
+                        throw new IllegalArgumentException("Record doesn't match table schema");
+                    }
+                    append(compact(record));
+                }
+            } finally {
+                // 中途失败时已追加的记录保留在表中，索引与行数组保持一致
+                if (rowCount > first) {
+                    for (Index index : indexes.values()) {
+                        for (int row = first; row < rowCount; row++) {
+                            index.onInsert(rowAt(row));
+                        }
+                    }
+                    version++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按行号在原位置替换，不移动其它行
+     */
     @Override
     public void update(Record record, Record newRecord) {
         Objects.requireNonNull(record);
@@ -70,48 +203,184 @@ public class InMemoryTable implements Table {
             throw new IllegalArgumentException("New record doesn't match table schema");
         }
 
-        synchronized (records) {
-            // 检查记录是否存在（可选，根据需求决定是否需要）
-            if (!records.contains(record)) {
+        Record stored = compact(newRecord);
+        synchronized (lock) {
+            int row = locate(record);
+            if (row < 0) {
                 throw new IllegalArgumentException("Record not found in table");
             }
 
             // 更新前从索引中移除旧记录
-            indexes.values().forEach(index -> index.onDelete(record));
-
-            // 更新记录内容
-            boolean removed = records.remove(record);
-            if (!removed) {
-                throw new IllegalArgumentException("Old record not found in the table");
+            Record old = rowAt(row);
+            indexes.values().forEach(index -> index.onDelete(old));
+            if (primaryKey != null) {
+                primaryKey.remove(row);
             }
 
-            // Add the new record
-            records.add(newRecord);
+            writable(row).rows[row & CHUNK_MASK] = stored;
 
-            // 注意：这里假设Record是可变的，如果不可变需要先删除再添加
-            newRecord = record.updateFrom(newRecord);
-
-            // 将更新后的记录重新加入索引
-            Record finalNewRecord = newRecord;
-            indexes.values().forEach(index -> index.onInsert(finalNewRecord));
+            // 将更新后的记录（表中保存的对象）重新加入索引
+            if (primaryKey != null) {
+                primaryKey.add(row);
+            }
+            indexes.values().forEach(index -> index.onInsert(stored));
+            version++;
         }
     }
 
+    /**
+     * 一遍检查所有行，满足条件的行在删除位图中置位；结束后死行足够多时压缩
+     */
     @Override
     public void delete(Predicate<Record> condition) {
         Objects.requireNonNull(condition);
 
-        synchronized (records) {
-            Iterator<Record> iterator = records.iterator();
-            while (iterator.hasNext()) {
-                Record record = iterator.next();
-                if (condition.test(record)) {
-                    iterator.remove();
-                    // 从所有索引中删除
-                    indexes.values().forEach(index -> index.onDelete(record));
+        synchronized (lock) {
+            try {
+                for (int row = 0; row < rowCount; row++) {
+                    if (!isDeleted(row) && condition.test(rowAt(row))) {
+                        remove(row);
+                    }
+                }
+            } finally {
+                // 条件抛出异常时，已经删除的行保持删除
+                compactIfNeeded();
+            }
+        }
+    }
+
+    /**
+     * 有主键时按主键找到行，不扫描全表
+     */
+    @Override
+    public void deleteRecord(Record record) {
+        Objects.requireNonNull(record);
+        synchronized (lock) {
+            int row = locate(record);
+            if (row >= 0) {
+                remove(row);
+                compactIfNeeded();
+            }
+        }
+    }
+
+    // --- 以下方法都在持有 lock 时调用 ---
+
+    private Record rowAt(int row) {
+        return chunks[row >>> CHUNK_SHIFT].rows[row & CHUNK_MASK];
+    }
+
+    private boolean isDeleted(int row) {
+        return chunks[row >>> CHUNK_SHIFT].isDeleted(row & CHUNK_MASK);
+    }
+
+    /**
+     * @return 可以原地修改的、包含 row 的块；块可能被未结束的 scan 读取时先复制
+     */
+    private Chunk writable(int row) {
+        int index = row >>> CHUNK_SHIFT;
+        Chunk chunk = chunks[index];
+        if (activeScans > 0 && chunk.epoch < snapshotEpoch) {
+            chunk = new Chunk(chunk.rows.clone(), chunk.deleted.clone(), snapshotEpoch);
+            chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * 新行的行号不小于任何快照的末尾，写入已有的块不影响正在进行的 scan
+     */
+    private void append(Record row) {
+        if (rowCount == chunkCount << CHUNK_SHIFT) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            chunks[chunkCount++] = new Chunk(snapshotEpoch);
+        }
+        chunks[rowCount >>> CHUNK_SHIFT].rows[rowCount & CHUNK_MASK] = row;
+        if (primaryKey != null) {
+            primaryKey.add(rowCount);
+        }
+        rowCount++;
+        liveCount++;
+    }
+
+    private void remove(int row) {
+        Record record = rowAt(row);
+        if (primaryKey != null) {
+            primaryKey.remove(row);
+        }
+        writable(row).deleted[(row & CHUNK_MASK) >>> 6] |= 1L << row;
+        liveCount--;
+        // 从所有索引中删除
+        indexes.values().forEach(index -> index.onDelete(record));
+        version++;
+    }
+
+    /**
+     * @return 一条与 record 字段完全相等的未删除行的行号，找不到时返回 -1。
+     * 有主键时只比较主键相同的行；没有主键时从上次找到的位置往后找，按扫描顺序逐条修改时每次只比较很少的行
+     */
+    private int locate(Record record) {
+        Object key = primaryKey == null ? null : primaryKey.keyOf(record.fields());
+        if (key != null) {
+            for (int row : primaryKey.find(key)) {
+                Record candidate = rowAt(row);
+                if (candidate == record || candidate.equals(record)) {
+                    return row;
                 }
             }
+            return -1;
+        }
+        for (int i = 0; i < rowCount; i++) {
+            int row = locateHint + i < rowCount ? locateHint + i : locateHint + i - rowCount;
+            Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+            Record candidate = chunk.rows[row & CHUNK_MASK];
+            if (!chunk.isDeleted(row & CHUNK_MASK) && (candidate == record || candidate.equals(record))) {
+                locateHint = row + 1 < rowCount ? row + 1 : 0;
+                return row;
+            }
         }
+        return -1;
+    }
+
+    /**
+     * 死行达到阈值时把未删除的行依次移到新的块中，重新分配行号并重建主键索引。
+     * 使用新的块而不是原地移动，正在进行的 scan 仍然读取旧块
+     */
+    private void compactIfNeeded() {
+        int dead = rowCount - liveCount;
+        if (dead < COMPACTION_MIN_DEAD_ROWS || dead < rowCount * COMPACTION_DEAD_RATIO) {
+            return;
+        }
+        Chunk[] compacted = new Chunk[Math.max(4, (liveCount >>> CHUNK_SHIFT) + 1)];
+        int kept = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (!isDeleted(row)) {
+                if ((kept & CHUNK_MASK) == 0) {
+                    compacted[kept >>> CHUNK_SHIFT] = new Chunk(snapshotEpoch);
+                }
+                compacted[kept >>> CHUNK_SHIFT].rows[kept & CHUNK_MASK] = rowAt(row);
+                kept++;
+            }
+        }
+        chunks = compacted;
+        chunkCount = (kept + CHUNK_MASK) >>> CHUNK_SHIFT;
+        rowCount = kept;
+        locateHint = 0;
+        if (primaryKey != null) {
+            primaryKey.rebuild(rowCount);
+        }
+    }
+
+    /**
+     * @return 按表结构布局的紧凑行；已经是这种行时直接返回
+     */
+    private Record compact(Record record) {
+        if (record.fields() instanceof RowMap row && row.layout() == layout) {
+            return record;
+        }
+        return new Record(RowMap.copyOf(layout, record.fields()));
     }
 
     @Override
@@ -119,22 +388,29 @@ public class InMemoryTable implements Table {
         return new ArrayList<>(indexes.values());
     }
 
+    @Override
+    public Index getPrimaryKeyIndex() {
+        return primaryKey;
+    }
+
     @Override
     public Index getIndex(String indexName) {
-        return indexes.get(indexName);
+        return primaryKey != null && PrimaryKeyIndex.NAME.equals(indexName) ? primaryKey : indexes.get(indexName);
     }
 
     @Override
     public void addIndex(Index index) {
         Objects.requireNonNull(index);
-        synchronized (records) {
-            if (indexes.containsKey(index.getName())) {
+        synchronized (lock) {
+            if (indexes.containsKey(index.getName()) || PrimaryKeyIndex.NAME.equals(index.getName())) {
                 throw new IllegalArgumentException("Index already exists: " + index.getName());
             }
 
             // 为现有数据构建索引
-            for (Record record : records) {
-                index.onInsert(record);
+            for (int row = 0; row < rowCount; row++) {
+                if (!isDeleted(row)) {
+                    index.onInsert(rowAt(row));
+                }
             }
 
             indexes.put(index.getName(), index);
@@ -146,18 +422,39 @@ public class InMemoryTable implements Table {
         return schema;
     }
 
+    @Override
+    public RowLayout getRowLayout() {
+        return layout;
+    }
+
+    /**
+     * 通过主键索引查找，不扫描全表；多列主键请用 getIndex(PrimaryKeyIndex.NAME).search(各列值的列表)
+     */
     @Override
     public Record getRecord(String key) {
-        for (Record record : records) {
-            if (key.equals(record.getPrimaryKey())) {
-                return record;
+        return primaryKey == null ? null : primaryKey.get(key);
+    }
+
+    @Override
+    public List<Record> getAllRecords() {
+        synchronized (lock) {
+            List<Record> records = new ArrayList<>(liveCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (!isDeleted(row)) {
+                    records.add(rowAt(row));
+                }
             }
+            return records;
         }
-        return null;  // or throw an exception if not found
     }
 
     @Override
-    public List<Record> getAllRecords() {
-        return new ArrayList<>(records);
+    public int size() {
+        return liveCount;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
     }
 }
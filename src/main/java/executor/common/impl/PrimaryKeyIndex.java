@@ -0,0 +1,320 @@
+package executor.common.impl;
+
+import executor.common.CloseableIterator;
+import executor.common.ColumnDefinition;
+import executor.common.Index;
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
+import executor.common.TableSchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每张表自动维护的主键哈希索引：键 -> 行号，按主键查找记录（getRecord、主键上的等值条件）不再扫描全表。
+ * 主键列取表结构中 isPrimaryKey 的列（可以有多列）；没有声明主键时沿用 Record.getPrimaryKey 的约定，以 "id" 列为键。
+ * 键按值的字符串形式比较，与 WHERE 中 = 的比较方式（EvaluateFilter 统一转为字符串）一致：
+ * 单列主键的键是值的字符串形式，多列主键的键是各列字符串形式的列表；有键列为 null 或缺失的行不进入索引。
+ * 不要求键唯一，重复的键都能查到。
+ * 由所属的表在自己的锁内维护（按行号，不经过 onInsert/onDelete），哈希表是开放寻址的 int 数组，每行只占两个 int
+ */
+public final class PrimaryKeyIndex implements Index {
+    public static final String NAME = "PRIMARY_KEY";
+    private static final int INITIAL_SLOTS = 16;
+
+    /**
+     * 表按行号提供键和记录，只在持有表的锁时调用
+     */
+    interface Rows {
+        /**
+         * @return 行的键（keyOf 的结果），不进入索引时返回 null
+         */
+        Object keyAt(int row);
+
+        Record recordAt(int row);
+    }
+
+    private final List<String> columns;
+    private final int[] ordinals; // 键列在表布局中的序号
+    private final RowLayout layout;
+    private final Rows rows;
+    private final Object lock;
+    private int[] slots = new int[INITIAL_SLOTS]; // 行号 + 1，0 表示空
+    private int[] hashes = new int[INITIAL_SLOTS];
+    private int size;
+
+    private PrimaryKeyIndex(RowLayout layout, List<String> columns, Rows rows, Object lock) {
+        this.columns = List.copyOf(columns);
+        this.layout = layout;
+        this.ordinals = columns.stream().mapToInt(layout::ordinal).toArray();
+        this.rows = rows;
+        this.lock = lock;
+    }
+
+    /**
+     * @param layout 表的行布局，键列的序号按它确定
+     * @param lock   表修改数据时持有的锁，search 和 get 在这个锁内读取
+     * @return 表结构既没有主键列也没有 "id" 列时返回 null
+     */
+    static PrimaryKeyIndex create(TableSchema schema, RowLayout layout, Rows rows, Object lock) {
+        List<String> columns = new ArrayList<>();
+        for (ColumnDefinition column : schema.columns()) {
+            if (column.isPrimaryKey()) {
+                columns.add(column.name());
+            }
+        }
+        if (columns.isEmpty() && schema.getColumn("id") != null) {
+            columns.add("id");
+        }
+        return columns.isEmpty() ? null : new PrimaryKeyIndex(layout, columns, rows, lock);
+    }
+
+    /**
+     * @return 记录的键，有键列为 null 或缺失时返回 null
+     */
+    Object keyOf(Map<String, Object> fields) {
+        Object[] values = new Object[ordinals.length];
+        boolean compact = fields instanceof RowMap row && row.layout() == layout;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = compact ? ((RowMap) fields).get(ordinals[i]) : fields.get(columns.get(i));
+        }
+        return keyOfValues(values);
+    }
+
+    /**
+     * @param values 按主键列顺序的各列值
+     * @return 键，有值为 null 时返回 null
+     */
+    Object keyOfValues(Object[] values) {
+        if (values.length == 1) {
+            return values[0] == null ? null : values[0].toString();
+        }
+        String[] parts = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                return null;
+            }
+            parts[i] = values[i].toString();
+        }
+        return Arrays.asList(parts);
+    }
+
+    /**
+     * 主键列在表布局中的序号
+     */
+    int[] ordinals() {
+        return ordinals;
+    }
+
+    /**
+     * 把查找时给出的键规范化为 keyOf 的形式：多列主键传入各列值的列表
+     * @return 键的形式与主键列数不符或含 null 时返回 null
+     */
+    private Object normalize(Object key) {
+        if (key instanceof List<?> parts) {
+            return parts.size() == ordinals.length ? keyOfValues(parts.toArray()) : null;
+        }
+        return key == null || ordinals.length != 1 ? null : key.toString();
+    }
+
+    // ---------- 由表在持锁时调用 ----------
+
+    void add(int row) {
+        Object key = rows.keyAt(row);
+        if (key == null) {
+            return;
+        }
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        insert(row, hash(key));
+        size++;
+    }
+
+    /**
+     * 在行的内容改变之前调用
+     */
+    void remove(int row) {
+        Object key = rows.keyAt(row);
+        if (key == null) {
+            return;
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slots[slot] == row + 1) {
+                deleteSlot(slot);
+                size--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 行号整体变化后（删除后压缩）按当前的行重建
+     */
+    void rebuild(int rowCount) {
+        int capacity = INITIAL_SLOTS;
+        while (capacity < rowCount * 2) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+        hashes = new int[capacity];
+        size = 0;
+        for (int row = 0; row < rowCount; row++) {
+            add(row);
+        }
+    }
+
+    /**
+     * @param key 已经规范化的键
+     * @return 键相等的行号，按插入索引的顺序
+     */
+    List<Integer> find(Object key) {
+        if (key == null) {
+            return List.of();
+        }
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        List<Integer> found = null;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && key.equals(rows.keyAt(slots[slot] - 1))) {
+                if (found == null) {
+                    found = new ArrayList<>(1);
+                }
+                found.add(slots[slot] - 1);
+            }
+        }
+        return found == null ? List.of() : found;
+    }
+
+    /**
+     * @return 单列主键值的字符串形式为 key 的第一条记录
+     */
+    Record get(String key) {
+        synchronized (lock) {
+            List<Integer> found = find(normalize(key));
+            return found.isEmpty() ? null : rows.recordAt(found.get(0));
+        }
+    }
+
+    private void insert(int row, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+        hashes[slot] = hash;
+    }
+
+    /**
+     * 线性探测的删除：把后面同一探测链上的元素前移，不留墓碑
+     */
+    private void deleteSlot(int slot) {
+        int mask = slots.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (slots[next] == 0) {
+                break;
+            }
+            int home = hashes[next] & mask;
+            boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (reachable) {
+                continue; // 元素的起始位置在空出的位置之后，留在原处仍能找到
+            }
+            slots[slot] = slots[next];
+            hashes[slot] = hashes[next];
+            slot = next;
+        }
+        slots[slot] = 0;
+        hashes[slot] = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new int[capacity];
+        hashes = new int[capacity];
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                insert(oldSlots[i] - 1, oldHashes[i]);
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    long bytes() {
+        return 8L * slots.length + 64;
+    }
+
+    // ---------- Index ----------
+
+    @Override
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param key 单列主键为列值（按字符串形式比较），多列主键为按主键列顺序的值列表
+     */
+    @Override
+    public CloseableIterator<Record> search(Object key) {
+        List<Record> records;
+        synchronized (lock) {
+            List<Integer> found = find(normalize(key));
+            records = new ArrayList<>(found.size());
+            for (int row : found) {
+                records.add(rows.recordAt(row));
+            }
+        }
+        Iterator<Record> iterator = records.iterator();
+        return new CloseableIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Record next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * 主键索引由表按行号维护，不接受按记录的维护。表的 getIndexes 不包含主键索引，
+     * 逐个维护 getIndexes 中索引的调用方不会调用到这里
+     */
+    @Override
+    public void onInsert(Record record) {
+        throw new UnsupportedOperationException("Primary key index is maintained by its table");
+    }
+
+    @Override
+    public void onDelete(Record record) {
+        throw new UnsupportedOperationException("Primary key index is maintained by its table");
+    }
+
+    @Override
+    public String toString() {
+        return NAME + columns;
+    }
+}
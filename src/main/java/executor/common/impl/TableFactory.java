@@ -0,0 +1,24 @@
+package executor.common.impl;
+
+import common.StorageConfig;
+import executor.common.Table;
+import executor.common.TableSchema;
+
+/**
+ * 按配置的存放方式创建空的内存表；建表、加载表文件和崩溃恢复都从这里创建
+ */
+public final class TableFactory {
+    private TableFactory() {
+    }
+
+    public static Table create(TableSchema schema) {
+        return create(schema, StorageConfig.TABLE_LAYOUT);
+    }
+
+    public static Table create(TableSchema schema, TableLayout layout) {
+        return switch (layout) {
+            case ROW -> new InMemoryTable(schema);
+            case COLUMNAR -> new ColumnarTable(schema);
+        };
+    }
+}
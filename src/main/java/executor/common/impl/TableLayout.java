@@ -0,0 +1,11 @@
+package executor.common.impl;
+
+/**
+ * 内存表的存放方式，由 StorageConfig.TABLE_LAYOUT 选择
+ */
+public enum TableLayout {
+    /** InMemoryTable：每行一个 Record，字段按表结构的 RowLayout 存放在紧凑的 RowMap 中，值仍是装箱对象 */
+    ROW,
+    /** ColumnarTable：每列一个基本类型数组，Record 只在读取时构造，内存占用小、扫描快 */
+    COLUMNAR
+}
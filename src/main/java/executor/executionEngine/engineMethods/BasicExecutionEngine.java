@@ -89,18 +89,18 @@ public class BasicExecutionEngine {
     public static int executeInsert(StorageEngine storage,InsertPlan plan) {
         Table table = storage.openTable(plan.getTableName());
         int count = 0;
+        TableSchema schema = table.getSchema();
+        RowLayout layout = table.getRowLayout();
 
         for (List<Object> values : plan.getValues()) {
-            Map<String, Object> fieldMap = new HashMap<>();
-            TableSchema schema = table.getSchema();
-
-            for (int i = 0; i < schema.columns().size(); i++) {
+            // 值按表结构的列顺序存放，与布局的序号一致
+            Object[] row = new Object[schema.columns().size()];
+            for (int i = 0; i < row.length; i++) {
                 ColumnDefinition col = schema.columns().get(i);
-                Object value = convertValue(col.type(), values.get(i));
-                fieldMap.put(col.name(), value);
+                row[i] = convertValue(col.type(), values.get(i));
             }
 
-            table.insert(new Record(fieldMap));
+            table.insert(new Record(RowMap.of(layout, row)));
             count++;
         }
         storage.saveTable(plan.getTableName(), table);
@@ -127,37 +127,47 @@ public class BasicExecutionEngine {
         Table table = storage.openTable(plan.getTableName());
         List<Record> results = new ArrayList<>();
         EvaluateFilter evaluateFilter = new EvaluateFilter();
+        RowLayout layout = table.getRowLayout();
+        Expression filter = bindColumns(plan.getFilter(), layout);
+        // 投影布局和各投影列的序号每个查询只确定一次；投影布局只在这次查询中使用，不进入共用的缓存
+        List<String> projectedColumns = List.copyOf(new LinkedHashSet<>(plan.getColumns()));
+        RowLayout projection = RowLayout.create(projectedColumns);
+        ColumnReference[] projectedReferences = projectedColumns.stream()
+                .map(column -> new ColumnReference(column).bind(layout))
+                .toArray(ColumnReference[]::new);
 
         // 1. 检查是否有可用的索引
-        Index usableIndex = findUsableIndex(table, plan.getFilter());
+        Index usableIndex = findUsableIndex(table, filter);
 
         if (usableIndex != null) {
             // 2. 使用索引扫描代替全表扫描
-            try (CloseableIterator<Record> iterator = usableIndex.search(extractIndexKey(plan.getFilter()))) {
+            try (CloseableIterator<Record> iterator = usableIndex.search(extractIndexKey(usableIndex, filter))) {
                 while (iterator.hasNext()) {
                     Record record = iterator.next();
 
                     // 3. 应用可能的剩余过滤条件（如果索引不完全匹配查询条件）
-                    if (plan.getFilter() != null &&
-                            !evaluateFilter.evaluateFilter(plan.getFilter(), record)) {
+                    if (filter != null &&
+                            !evaluateFilter.evaluateFilter(filter, record)) {
                         continue;
                     }
 
-                    results.add(projectColumns(record, plan.getColumns()));
+                    results.add(projectColumns(record, projection, projectedReferences));
                 }
             }
         } else {
-            // 4. 没有可用索引，回退到全表扫描
-            try (CloseableIterator<Record> iterator = table.scan()) {
+            // 4. 没有可用索引，回退到全表扫描；只读取投影和过滤条件用到的列（SELECT * 已在生成计划时展开）
+            Set<String> requiredColumns = new LinkedHashSet<>(plan.getColumns());
+            boolean pruned = filter == null || collectFilterColumns(filter, requiredColumns);
+            try (CloseableIterator<Record> iterator = pruned ? table.scan(requiredColumns) : table.scan()) {
                 while (iterator.hasNext()) {
                     Record record = iterator.next();
 
-                    if (plan.getFilter() != null &&
-                            !evaluateFilter.evaluateFilter(plan.getFilter(), record)) {
+                    if (filter != null &&
+                            !evaluateFilter.evaluateFilter(filter, record)) {
                         continue;
                     }
 
-                    results.add(projectColumns(record, plan.getColumns()));
+                    results.add(projectColumns(record, projection, projectedReferences));
                 }
             } catch (Exception e) {
                 System.out.println(e.getMessage());
@@ -181,18 +191,25 @@ public class BasicExecutionEngine {
         return results;
     }
 
-    //查找可用索引
+    //查找可用索引：过滤条件中的等值条件覆盖了索引的全部列时才能用索引查找
     private static Index findUsableIndex(Table table, Expression filter) {
         if (filter == null) {
             return null; // 没有过滤条件，不需要索引
         }
 
-        // 获取表中所有索引
-        List<Index> indexes = table.getIndexes();
+        Map<String, Object> equalities = new HashMap<>();
+        collectEqualities(filter, equalities);
+        if (equalities.isEmpty()) {
+            return null;
+        }
 
-        // 找出最适合的索引
-        for (Index index : indexes) {
-            if (isIndexApplicable(index, filter)) {
+        // 先看主键索引，再看其它索引，找出第一个列全部有等值条件的索引
+        Index primaryKey = table.getPrimaryKeyIndex();
+        if (primaryKey != null && equalities.keySet().containsAll(primaryKey.getColumns())) {
+            return primaryKey;
+        }
+        for (Index index : table.getIndexes()) {
+            if (equalities.keySet().containsAll(index.getColumns())) {
                 return index;
             }
         }
@@ -200,40 +217,84 @@ public class BasicExecutionEngine {
         return null;
     }
 
-    //检查索引是否可用
-    private static boolean isIndexApplicable(Index index, Expression filter) {
-        // 简单实现：检查过滤条件是否直接使用了索引列
-        // 实际实现中可以更复杂，考虑多列索引、部分匹配等情况
-
-        Set<String> indexColumns = new HashSet<>(index.getColumns());
-        Set<String> filterColumns = extractColumnsFromFilter(filter);
-
-        return !Collections.disjoint(indexColumns, filterColumns);
+    //提取索引条件：单列索引为列值，多列索引为按索引列顺序的值列表
+    private static Object extractIndexKey(Index index, Expression filter) {
+        Map<String, Object> equalities = new HashMap<>();
+        collectEqualities(filter, equalities);
+        List<String> columns = index.getColumns();
+        if (columns.size() == 1) {
+            return equalities.get(columns.get(0));
+        }
+        List<Object> key = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            key.add(equalities.get(column));
+        }
+        return key;
     }
 
-    //提取索引条件
-    private static Object extractIndexKey(Expression filter) {
-        // 简单实现：提取等值比较的值
-        // 实际实现中需要考虑更复杂的条件解析
-
-        if (filter instanceof BinaryExpression) {
-            BinaryExpression binary = (BinaryExpression) filter;
-            if (binary.getOperator() == BinaryExpression.Operator.EQ &&
-                    binary.getRight() instanceof Literal) {
-                return ((Literal) binary.getRight()).getValue();
+    /**
+     * 收集 AND 连接的 列 = 常量 条件。其余条件不影响收集，索引查找到的记录仍要经过完整的过滤条件
+     */
+    private static void collectEqualities(Expression filter, Map<String, Object> equalities) {
+        if (!(filter instanceof BinaryExpression binary)) {
+            return;
+        }
+        if (binary.getOperator() == BinaryExpression.Operator.AND) {
+            collectEqualities(binary.getLeft(), equalities);
+            collectEqualities(binary.getRight(), equalities);
+        } else if (binary.getOperator() == BinaryExpression.Operator.EQ) {
+            String column = columnName(binary.getLeft());
+            Object value = constantValue(binary.getRight());
+            if (column == null) {
+                column = columnName(binary.getRight());
+                value = constantValue(binary.getLeft());
+            }
+            if (column != null && value != null) {
+                equalities.putIfAbsent(column, value);
             }
         }
+    }
 
-        return null;
+    private static String columnName(Expression expression) {
+        if (expression instanceof ColumnReference column) {
+            return column.getColumnName();
+        }
+        return expression instanceof FieldExpression field ? field.getFieldName() : null;
+    }
+
+    private static Object constantValue(Expression expression) {
+        if (expression instanceof Literal literal) {
+            return literal.getValue();
+        }
+        return expression instanceof ConstantExpression constant ? constant.getValue() : null;
     }
 
     //投影
-    private static Record projectColumns(Record source, List<String> columns) {
-        Map<String, Object> projected = new HashMap<>();
-        for (String col : columns) {
-            projected.put(col, source.fields().get(col));
+    private static Record projectColumns(Record source, RowLayout projection, ColumnReference[] columns) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = columns[i].evaluate(source);
         }
-        return new Record(projected);
+        return new Record(RowMap.of(projection, values));
+    }
+
+    /**
+     * 把过滤条件中的列引用绑定到表的行布局，求值时按序号读取紧凑行。
+     * 返回这次执行使用的新表达式树，计划中的节点不变，同一个计划可以被多个查询同时执行
+     */
+    private static Expression bindColumns(Expression filter, RowLayout layout) {
+        if (filter instanceof ColumnReference column) {
+            return column.bind(layout);
+        } else if (filter instanceof BinaryExpression binary) {
+            return new BinaryExpression(bindColumns(binary.getLeft(), layout), binary.getOperator(),
+                    bindColumns(binary.getRight(), layout));
+        } else if (filter instanceof UnaryExpression unary) {
+            return new UnaryExpression(unary.getOperator(), bindColumns(unary.getOperand(), layout));
+        } else if (filter instanceof FunctionExpression function) {
+            return new FunctionExpression(function.getFunctionName(),
+                    function.getArguments().stream().map(argument -> bindColumns(argument, layout)).toList());
+        }
+        return filter;
     }
 
     //删除
@@ -241,10 +302,11 @@ public class BasicExecutionEngine {
         Table table = storage.openTable(plan.getTableName());
         AtomicInteger count = new AtomicInteger();
         EvaluateFilter evaluateFilter = new EvaluateFilter();
+        Expression filter = bindColumns(plan.getFilter(), table.getRowLayout());
 
         // 使用谓词下推优化
         table.delete(record -> {
-            if (evaluateFilter.evaluateFilter(plan.getFilter(), record)) {
+            if (evaluateFilter.evaluateFilter(filter, record)) {
                 count.incrementAndGet();
                 return true;
             }
@@ -254,24 +316,26 @@ public class BasicExecutionEngine {
         return count.get();
     }
 
-    /*
-    todo 有更好的实现方式 适用于更复杂的表达式
+    /**
+     * 收集过滤条件读取的列名
+     * @return 条件中有无法确定读取哪些列的表达式（如函数）时返回 false，调用方应读取完整的记录
      */
-    //从 SQL 过滤条件表达式中提取所有涉及的列名
-    private static Set<String> extractColumnsFromFilter(Expression filter) {
-        Set<String> columns = new HashSet<>();
-        if (filter instanceof ColumnReference) {
-            columns.add(((ColumnReference) filter).getColumnName());
-        } else if (filter instanceof BinaryExpression) {
-            BinaryExpression binary = (BinaryExpression) filter;
-            columns.addAll(extractColumnsFromFilter(binary.getLeft()));
-            columns.addAll(extractColumnsFromFilter(binary.getRight()));
-        } else if (filter instanceof UnaryExpression) {
-            UnaryExpression unary = (UnaryExpression) filter;
-            columns.addAll(extractColumnsFromFilter(unary.getOperand()));
+    private static boolean collectFilterColumns(Expression filter, Set<String> columns) {
+        if (filter instanceof ColumnReference column) {
+            columns.add(column.getColumnName());
+            return true;
+        }
+        if (filter instanceof FieldExpression field) {
+            columns.add(field.getFieldName());
+            return true;
         }
-        // 添加其他表达式类型的处理...
-        return columns;
+        if (filter instanceof BinaryExpression binary) {
+            return collectFilterColumns(binary.getLeft(), columns) && collectFilterColumns(binary.getRight(), columns);
+        }
+        if (filter instanceof UnaryExpression unary) {
+            return collectFilterColumns(unary.getOperand(), columns);
+        }
+        return filter instanceof Literal || filter instanceof ConstantExpression;
     }
 
     /**
@@ -285,25 +349,35 @@ public class BasicExecutionEngine {
         AtomicInteger count = new AtomicInteger();
         EvaluateFilter evaluateFilter = new EvaluateFilter();
 
+        RowLayout layout = table.getRowLayout();
+        Expression filter = bindColumns(plan.getFilter(), layout);
+
         // 1. 检查是否有可用的索引用于WHERE条件
-        Index usableIndex = findUsableIndex(table, plan.getFilter());
+        Index usableIndex = findUsableIndex(table, filter);
+
+        // SET子句的列序号和转换后的值只计算一次
+        int[] setOrdinals = new int[plan.getSetValues().size()];
+        Object[] setValues = new Object[setOrdinals.length];
+        int setIndex = 0;
+        for (Map.Entry<String, Object> entry : plan.getSetValues().entrySet()) {
+            String column = entry.getKey();
+            // 获取列定义以进行类型转换
+            ColumnDefinition colDef = table.getSchema().getColumn(column);
+            if (colDef == null) {
+                throw new ExecutionException("Column not found: " + column);
+            }
+            setOrdinals[setIndex] = layout.ordinal(column);
+            setValues[setIndex] = convertValue(colDef.type(), entry.getValue());
+            setIndex++;
+        }
 
         // 2. 定义更新逻辑
         Consumer<Record> updateAction = record -> {
-            // 创建新记录副本
-            Map<String, Object> newFields = new HashMap<>(record.fields());
-
-            // 应用所有SET子句的更新
-            plan.getSetValues().forEach((column, newValue) -> {
-                // 获取列定义以进行类型转换
-                ColumnDefinition colDef = table.getSchema().columns().stream()
-                        .filter(c -> c.name().equals(column))
-                        .findFirst()
-                        .orElseThrow(() -> new ExecutionException("Column not found: " + column));
-
-                // 转换值类型并更新
-                newFields.put(column, convertValue(colDef.type(), newValue));
-            });
+            // 创建新记录副本并应用所有SET子句的更新
+            RowMap newFields = RowMap.copyOf(layout, record.fields());
+            for (int i = 0; i < setOrdinals.length; i++) {
+                newFields.set(setOrdinals[i], setValues[i]);
+            }
 
             // 替换原记录
             table.update(record, new Record(newFields));
@@ -313,9 +387,9 @@ public class BasicExecutionEngine {
         // 3. 根据是否有索引选择执行路径
         if (usableIndex != null) {
             // 使用索引扫描优化
-            try (CloseableIterator<Record> iterator = usableIndex.search(extractIndexKey(plan.getFilter()))) {
+            try (CloseableIterator<Record> iterator = usableIndex.search(extractIndexKey(usableIndex, filter))) {
                 iterator.forEachRemaining(record -> {
-                    if (evaluateFilter.evaluateFilter(plan.getFilter(), record)) {
+                    if (evaluateFilter.evaluateFilter(filter, record)) {
                         updateAction.accept(record);
                     }
                 });
@@ -324,7 +398,7 @@ public class BasicExecutionEngine {
             // 全表扫描
             try (CloseableIterator<Record> iterator = table.scan()) {
                 iterator.forEachRemaining(record -> {
-                    if (evaluateFilter.evaluateFilter(plan.getFilter(), record)) {
+                    if (evaluateFilter.evaluateFilter(filter, record)) {
                         updateAction.accept(record);
                     }
                 });
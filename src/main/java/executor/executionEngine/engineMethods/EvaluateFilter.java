@@ -56,7 +56,7 @@ public class EvaluateFilter {
         }
         else if (filter instanceof ColumnReference) {
             // 直接引用列名时，非 null 值视为 true
-            Object value = record.getValue(((ColumnReference) filter).getColumnName());
+            Object value = ((ColumnReference) filter).evaluate(record);
             return value != null;
         }
         else if (filter instanceof Literal) {
@@ -87,7 +87,7 @@ public class EvaluateFilter {
         } else if (expr instanceof FunctionExpression) {
             return evaluateFunctionExpression((FunctionExpression) expr, record);
         } else if (expr instanceof ColumnReference) {  // 新增处理 ColumnReference
-            return record.getValue(((ColumnReference) expr).getColumnName());
+            return ((ColumnReference) expr).evaluate(record);
         }else {
             throw new ExecutionException("Unsupported expression type: " + expr.getClass());
         }
@@ -1,18 +1,28 @@
 package executor.expression;
 
 import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
 
 /**
- * 表示对记录中某个字段的引用
+ * 表示对记录中某个字段的引用。不可变，计划中的同一个节点可以被多个查询同时求值
  */
 public final class ColumnReference implements Expression {
     private final String columnName;
+    private final RowLayout layout; // 绑定的行布局，未绑定时为 null
+    private final int ordinal;      // 列在 layout 中的序号，不在其中时为 -1
 
     public ColumnReference(String columnName) {
+        this(columnName, null, -1);
         if (columnName == null || columnName.trim().isEmpty()) {
             throw new IllegalArgumentException("Column name cannot be null or empty");
         }
+    }
+
+    private ColumnReference(String columnName, RowLayout layout, int ordinal) {
         this.columnName = columnName;
+        this.layout = layout;
+        this.ordinal = ordinal;
     }
 
     public String getColumnName() {
@@ -24,8 +34,19 @@ public final class ColumnReference implements Expression {
         return columnName;
     }
 
+    /**
+     * 执行时按表的行布局预先确定列的序号，不修改计划中的节点
+     * @return 绑定到 layout 的引用，对该布局的紧凑行求值时按下标读取
+     */
+    public ColumnReference bind(RowLayout layout) {
+        return new ColumnReference(columnName, layout, layout.ordinal(columnName));
+    }
+
     @Override
     public Object evaluate(Record record) {
-        return record.getValue(columnName); // 直接返回字段值
+        if (ordinal >= 0 && record.fields() instanceof RowMap row && row.layout() == layout) {
+            return row.get(ordinal);
+        }
+        return record.getValue(columnName); // 未绑定或布局不同（如投影后的行）时按字段名读取
     }
-}
\ No newline at end of file
+}
@@ -180,17 +180,23 @@ public class StorageEngineImpl implements StorageEngine {
 
     @Override
     public void beginTransaction() {
-
+        if (storeManager != null) {
+            storeManager.beginTransaction();
+        }
     }
 
     @Override
     public void commitTransaction() {
-
+        if (storeManager != null) {
+            storeManager.commitTransaction();
+        }
     }
 
     @Override
     public void rollbackTransaction() {
-
+        if (storeManager != null) {
+            storeManager.rollbackTransaction();
+        }
     }
 
     @Override
@@ -52,7 +52,7 @@ public class Main {
         logger.info("---------- 1. Initializing Storage System ----------");
         DiskManager diskManager = new DiskManager(DB_FILE);
         // 创建一个容量为3的缓冲池，方便观察LRU替换
-        BufferPoolManager bufferPoolManager = new BufferPoolManager(3, diskManager);
+        BufferPoolManager bufferPoolManager = new BufferPoolManager(3, diskManager).start();
 
         logger.info("\n---------- 2. Testing Page Allocation and Writing ----------");
         Page page0 = bufferPoolManager.newPage();
@@ -109,12 +109,12 @@ public class Main {
         bufferPoolManager.unpinPage(0, false);
 
         logger.info("\n---------- 6. Flushing all dirty pages and closing ----------");
-        bufferPoolManager.flushAllPages();
+        bufferPoolManager.close();
         diskManager.close();
 
         logger.info("\n---------- 7. Verifying data persistence after reopening ----------");
         DiskManager newDiskManager = new DiskManager(DB_FILE);
-        BufferPoolManager newBPM = new BufferPoolManager(3, newDiskManager);
+        BufferPoolManager newBPM = new BufferPoolManager(3, newDiskManager).start();
         Page reFetchedPage1 = newBPM.fetchPage(1);
         logger.info("Re-fetched page 1. Content: '{}'", reFetchedPage1.readString(100));
         newBPM.unpinPage(1, false);
@@ -0,0 +1,82 @@
+package storage.buffer;
+
+import common.StorageConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 缓冲池的后台刷盘线程：周期性地把最旧的脏页写回，让每个分区保持一定比例的干净帧，
+ * 前台缺页时几乎总能直接淘汰干净帧；同时按 CHECKPOINT_INTERVAL_MS 做检查点。
+ * 写回使用脏页快照，不阻塞读写缓冲池的线程。
+ */
+class BackgroundFlusher implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundFlusher.class);
+
+    private final String name;
+    private volatile BufferPoolManager bufferPoolManager;
+    private volatile Thread thread; // start 之前为 null
+    private volatile boolean running = true;
+
+    BackgroundFlusher(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 在缓冲池构造完成后启动刷盘线程，只能调用一次
+     */
+    void start(BufferPoolManager bufferPoolManager) {
+        this.bufferPoolManager = bufferPoolManager;
+        Thread started = new Thread(this, "bpm-flusher-" + name);
+        started.setDaemon(true);
+        thread = started;
+        started.start();
+    }
+
+    /**
+     * 前台淘汰到脏页，说明干净帧不足，立即唤醒刷盘
+     */
+    void wakeUp() {
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        Thread current = thread;
+        if (current == null) {
+            return;
+        }
+        LockSupport.unpark(current);
+        try {
+            current.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long checkpointInterval = TimeUnit.MILLISECONDS.toNanos(StorageConfig.CHECKPOINT_INTERVAL_MS);
+        long nextCheckpoint = System.nanoTime() + checkpointInterval;
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(StorageConfig.FLUSH_INTERVAL_MS));
+            if (!running) {
+                break;
+            }
+            try {
+                bufferPoolManager.flushOldestDirtyPages();
+                if (System.nanoTime() - nextCheckpoint >= 0) {
+                    bufferPoolManager.checkpoint();
+                    nextCheckpoint = System.nanoTime() + checkpointInterval;
+                }
+            } catch (Exception e) {
+                logger.error("Background flush failed", e);
+            }
+        }
+    }
+}
@@ -2,166 +2,374 @@ package storage.buffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import common.StorageConfig;
 import storage.page.Page;
+import storage.buffer.BufferPoolPartition.DirtyPage;
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
-public class BufferPoolManager {
+/**
+ * 缓冲池管理器：按页号哈希把缓冲池划分为多个分区，每个分区有独立的锁、页表和替换器，
+ * 不同分区上的访问互不阻塞，缺页时的磁盘 I/O 也在分区锁之外进行。
+ * 检测到顺序访问（或调用方通过 prefetch 给出扫描提示）时，在后台线程上把后续页成批预读进空闲帧。
+ */
+public class BufferPoolManager implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(BufferPoolManager.class);
+    // 每个分区至少拥有的帧数，小缓冲池退化为单分区
+    private static final int MIN_FRAMES_PER_PARTITION = 16;
+    // 连续访问多少个相邻页后认为是顺序扫描
+    private static final int SEQUENTIAL_TRIGGER = 2;
+    // 关闭时检查页是否已解除固定的间隔
+    private static final long CLOSE_POLL_MS = 10;
 
-    private final Page[] pages; // 缓冲池（帧数组）
-    private final Map<Integer, Integer> pageTable; // pageId -> frameId
-    private final LRUReplacer replacer;
+    private final BufferPoolPartition[] partitions;
+    private final FrameRegion region;
+    private final BufferPoolMetrics metrics;
     private final DiskManager diskManager;
-    private final ReentrantLock latch = new ReentrantLock(); // 保护共享数据结构
+    private final BackgroundFlusher flusher;
+    private final ExecutorService prefetchExecutor;
+    private final int readAheadPages;
+    // 顺序访问检测的启发式状态，多线程间的竞争只会影响是否预读，不影响正确性
+    private int lastAccessedPageId = -1;
+    private int sequentialRun;
+    private int prefetchedUpTo;
 
     public BufferPoolManager(int poolSize, DiskManager diskManager) {
-        this.pages = new Page[poolSize];
-        for (int i = 0; i < poolSize; i++) {
-            this.pages[i] = new Page();
+        this(poolSize, diskManager, StorageConfig.REPLACER_POLICY);
+    }
+
+    public BufferPoolManager(int poolSize, DiskManager diskManager, ReplacerPolicy policy) {
+        this(poolSize, diskManager, policy, StorageConfig.BUFFER_POOL_PARTITIONS);
+    }
+
+    public BufferPoolManager(int poolSize, DiskManager diskManager, ReplacerPolicy policy, int partitionCount) {
+        int count = Math.max(1, Math.min(partitionCount, poolSize / MIN_FRAMES_PER_PARTITION));
+        this.flusher = new BackgroundFlusher(diskManager.getFileName());
+        this.region = new FrameRegion(poolSize);
+        this.metrics = BufferPoolMetrics.forPool(diskManager.getFileName(), poolSize);
+        this.partitions = new BufferPoolPartition[count];
+        int firstFrame = 0;
+        for (int i = 0; i < count; i++) {
+            // 帧数不能整除时，前面的分区各多分一帧
+            int frames = poolSize / count + (i < poolSize % count ? 1 : 0);
+            this.partitions[i] = new BufferPoolPartition(region, firstFrame, frames, diskManager, policy, metrics,
+                    flusher::wakeUp);
+            firstFrame += frames;
         }
-        this.pageTable = new HashMap<>();
         this.diskManager = diskManager;
-        this.replacer = new LRUReplacer(poolSize);
+        // 预读窗口不超过缓冲池的四分之一，避免小缓冲池被预读页挤满
+        this.readAheadPages = Math.min(StorageConfig.READ_AHEAD_PAGES, poolSize / 4);
+        this.prefetchExecutor = Executors.newFixedThreadPool(StorageConfig.PREFETCH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "bpm-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Buffer pool of {} frames ({} KB off-heap) in {} partition(s) using {} replacement.",
+                poolSize, region.byteSize() >> 10, count, policy);
+    }
+
+    /**
+     * 启动后台刷盘线程。构造完成后调用一次；不启动时脏页只在淘汰、检查点和 close 时写回
+     * @return this，便于链式调用
+     */
+    public BufferPoolManager start() {
+        flusher.start(this);
+        return this;
     }
 
     public Page fetchPage(int pageId) throws IOException {
-        latch.lock();
+        detectSequential(pageId);
+        return partitionFor(pageId).fetchPage(pageId);
+    }
+
+    /**
+     * 扫描提示：调用方即将从 firstPageId 开始顺序扫描。异步把 [firstPageId, firstPageId + count)
+     * 中不在缓冲池的页读入空闲帧，超出文件末尾的部分忽略；之后的访问直接按顺序扫描继续预读
+     */
+    public void prefetch(int firstPageId, int count) {
+        lastAccessedPageId = firstPageId - 1;
+        sequentialRun = SEQUENTIAL_TRIGGER;
+        submitPrefetch(firstPageId, count);
+    }
+
+    private void submitPrefetch(int firstPageId, int count) {
+        int end = Math.min(firstPageId + count, diskManager.getPageCount());
+        if (firstPageId < 0 || firstPageId >= end) {
+            return;
+        }
+        prefetchedUpTo = end;
         try {
-            if (pageTable.containsKey(pageId)) {
-                int frameId = pageTable.get(pageId);
-                Page page = pages[frameId];
-                page.pin();
-                replacer.pin(frameId);
-                logger.info("Cache HIT for page {}. Found in frame {}.", pageId, frameId);
-                return page;
-            }
+            prefetchExecutor.execute(() -> readAhead(firstPageId, end));
+        } catch (RejectedExecutionException e) {
+            // 缓冲池正在关闭，放弃预读
+        }
+    }
 
-            logger.info("Cache MISS for page {}. Loading from disk.", pageId);
-            int frameId = findAvailableFrame();
-            if (frameId == -1) {
-                logger.error("Cannot fetch page {}. Buffer pool is full and all pages are pinned.", pageId);
-                return null;
-            }
+    /**
+     * 连续访问相邻页时，保持 [pageId + 1, pageId + 1 + readAheadPages) 窗口已经预读；
+     * 窗口剩余不足一半时才补读，使每次预读都是一段较长的连续 I/O
+     */
+    private void detectSequential(int pageId) {
+        if (readAheadPages <= 0) {
+            return;
+        }
+        if (pageId == lastAccessedPageId + 1) {
+            sequentialRun++;
+        } else if (pageId != lastAccessedPageId) {
+            sequentialRun = 0;
+        }
+        lastAccessedPageId = pageId;
+        if (sequentialRun < SEQUENTIAL_TRIGGER) {
+            return;
+        }
+        int windowEnd = pageId + 1 + readAheadPages;
+        int from = prefetchedUpTo > pageId && prefetchedUpTo <= windowEnd ? prefetchedUpTo : pageId + 1;
+        if (windowEnd - from >= Math.max(1, readAheadPages / 2)) {
+            submitPrefetch(from, windowEnd - from);
+        }
+    }
 
-            Page page = pages[frameId];
-            // 如果旧页是脏的，写回磁盘
-            if (page.isDirty()) {
-                diskManager.writePage(page.getPageId(), page.getData());
+    /**
+     * 在预读线程上执行：逐页占用帧，把页号连续的一段用一次分散读装入
+     */
+    private void readAhead(int firstPageId, int end) {
+        List<Page> run = new ArrayList<>();
+        for (int pageId = firstPageId; pageId < end; pageId++) {
+            int position = lastAccessedPageId;
+            if (position >= pageId) {
+                // 预读线程落后于扫描，这些页前台已经自己读过了，再装入只会挤掉有用的页，直接跳到扫描位置之后
+                loadRun(run);
+                pageId = position;
+                continue;
             }
-            // 从页表中移除旧页的映射
-            if (page.getPageId() != -1) {
-                pageTable.remove(page.getPageId());
+            Page page = partitionFor(pageId).reservePrefetch(pageId);
+            if (page == null) {
+                loadRun(run);
+                continue;
             }
+            run.add(page);
+        }
+        loadRun(run);
+    }
 
-            // 从磁盘加载新页
-            diskManager.readPage(pageId, page.getData());
-            page.setPageId(pageId);
-            page.pin();
-            pageTable.put(pageId, frameId);
-            replacer.pin(frameId);
-
-            return page;
+    private void loadRun(List<Page> run) {
+        if (run.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[run.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = run.get(i).getBuffer();
+        }
+        boolean loaded = false;
+        try {
+            long start = System.nanoTime();
+            diskManager.readPages(run.get(0).getPageId(), buffers);
+            metrics.recordRead(System.nanoTime() - start);
+            loaded = true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Prefetch of pages {}..{} failed", run.get(0).getPageId(),
+                    run.get(run.size() - 1).getPageId(), e);
         } finally {
-            latch.unlock();
+            for (Page page : run) {
+                partitionFor(page.getPageId()).finishPrefetch(page, loaded);
+            }
+            run.clear();
         }
     }
 
+    /**
+     * @return 本缓冲池的运行指标
+     */
+    public BufferPoolMetrics getMetrics() {
+        return metrics;
+    }
+
     public boolean unpinPage(int pageId, boolean isDirty) {
-        latch.lock();
-        try {
-            if (!pageTable.containsKey(pageId)) {
-                return false;
-            }
-            int frameId = pageTable.get(pageId);
-            Page page = pages[frameId];
-            int before = page.getPinCount();
-            page.unpin();
-            int after = page.getPinCount();
-            logger.info("Unpin page {} in frame {}: pinCount {} -> {}", page, frameId, before, after);
-            if (isDirty) {
-                page.setDirty(true);
+        return partitionFor(pageId).unpinPage(pageId, isDirty);
+    }
+
+    public Page newPage() throws IOException {
+        // 先分配页号，再交给页号所属的分区
+        int newPageId = diskManager.allocatePage();
+        return partitionFor(newPageId).newPage(newPageId);
+    }
+
+    /**
+     * 写回开始时的所有脏页：先从各分区列出脏页号并排序，再按 StorageConfig.FLUSH_BATCH_PAGES 分批拷贝快照、
+     * 把页号连续的一段用一次聚集写落盘，快照占用的直接内存不超过一批。
+     * 之后才变脏的页留给下一次，持续写入时也能结束；被固定的页跳过，由下一次检查点或淘汰写回，
+     * close 会先等待它们解除固定
+     */
+    public void flushAllPages() throws IOException {
+        long dirtyBefore = System.nanoTime();
+        int[] pageIds = new int[0];
+        for (BufferPoolPartition partition : partitions) {
+            int[] partitionPageIds = partition.dirtyPageIds(dirtyBefore);
+            int offset = pageIds.length;
+            pageIds = Arrays.copyOf(pageIds, offset + partitionPageIds.length);
+            System.arraycopy(partitionPageIds, 0, pageIds, offset, partitionPageIds.length);
+        }
+        Arrays.sort(pageIds);
+        int flushed = 0;
+        List<DirtyPage> batch = new ArrayList<>(Math.min(pageIds.length, StorageConfig.FLUSH_BATCH_PAGES));
+        for (int i = 0; i < pageIds.length; i++) {
+            DirtyPage dirtyPage = partitionFor(pageIds[i]).snapshotDirtyPage(pageIds[i], dirtyBefore);
+            if (dirtyPage != null) {
+                batch.add(dirtyPage);
             }
-            if (page.getPinCount() == 0) {
-                replacer.unpin(frameId);
+            if (batch.size() >= StorageConfig.FLUSH_BATCH_PAGES || (i == pageIds.length - 1 && !batch.isEmpty())) {
+                flushed += batch.size();
+                writeDirtyPages(batch);
+                batch.clear();
             }
-            return true;
-        } finally {
-            latch.unlock();
         }
+        logger.info("Flushed {} dirty page(s) to disk, {} pinned or busy page(s) left for later.",
+                flushed, pageIds.length - flushed);
     }
 
-    public Page newPage() throws IOException {
-        latch.lock();
-        try {
-            int frameId = findAvailableFrame();
-            if (frameId == -1) {
-                logger.error("Cannot create new page. Buffer pool is full and all pages are pinned.");
-                return null;
+    /**
+     * 后台刷盘：每个分区把最旧的脏页写回，直到干净帧达到 StorageConfig.CLEAN_FRAME_RATIO；
+     * 每批最多 StorageConfig.FLUSH_BATCH_PAGES 页
+     */
+    void flushOldestDirtyPages() throws IOException {
+        List<DirtyPage> dirtyPages = new ArrayList<>();
+        do {
+            dirtyPages.clear();
+            for (BufferPoolPartition partition : partitions) {
+                int cleanTarget = (int) Math.ceil(partition.getFrameCount() * StorageConfig.CLEAN_FRAME_RATIO);
+                partition.collectFlushCandidates(cleanTarget, StorageConfig.FLUSH_BATCH_PAGES, dirtyPages);
             }
+            if (dirtyPages.isEmpty()) {
+                return;
+            }
+            writeDirtyPages(dirtyPages);
+            logger.debug("Background flushed {} dirty page(s).", dirtyPages.size());
+        } while (dirtyPages.size() >= StorageConfig.FLUSH_BATCH_PAGES);
+    }
 
-            // 先保存旧页的pageId
-            int oldPageId = pages[frameId].getPageId();
-
-            // 如果旧页是脏的，写回磁盘
-            if (pages[frameId].isDirty() && oldPageId != -1) {
-                diskManager.writePage(oldPageId, pages[frameId].getData());
+    /**
+     * 按页号排序后把页号连续的一段用一次聚集写落盘，结束后通知各分区
+     */
+    private void writeDirtyPages(List<DirtyPage> dirtyPages) throws IOException {
+        dirtyPages.sort(Comparator.comparingInt(dirtyPage -> dirtyPage.pageId));
+        try {
+            int runStart = 0;
+            for (int i = 1; i <= dirtyPages.size(); i++) {
+                if (i < dirtyPages.size() && dirtyPages.get(i).pageId == dirtyPages.get(i - 1).pageId + 1) {
+                    continue;
+                }
+                List<DirtyPage> run = dirtyPages.subList(runStart, i);
+                ByteBuffer[] buffers = new ByteBuffer[run.size()];
+                for (int j = 0; j < buffers.length; j++) {
+                    buffers[j] = run.get(j).data;
+                }
+                long start = System.nanoTime();
+                diskManager.writePages(run.get(0).pageId, buffers);
+                metrics.recordWrite(System.nanoTime() - start);
+                metrics.recordFlushed(buffers.length);
+                run.forEach(dirtyPage -> dirtyPage.written = true);
+                runStart = i;
             }
-            // // 从页表中移除旧页的映射
-            if (oldPageId != -1) {
-                pageTable.remove(oldPageId);
+        } finally {
+            for (BufferPoolPartition partition : partitions) {
+                partition.finishFlush(dirtyPages);
             }
-
-            // 分配新页
-            int newPageId = diskManager.allocatePage();
-            Page newPage = new Page();
-            pages[frameId] = newPage;
-            // Page newPage = pages[frameId];
-
-            newPage.setPageId(newPageId);
-            newPage.setDirty(false);
-            // 重置pinCount
-            while (newPage.getPinCount() > 0) {
-                newPage.unpin();
+            for (DirtyPage dirtyPage : dirtyPages) {
+                region.release(dirtyPage.data);
             }
-            newPage.pin();
+        }
+    }
 
-            pageTable.put(newPageId, frameId);
-            replacer.pin(frameId);
+    /**
+     * 检查点：写回所有脏页并强制落盘
+     */
+    public void checkpoint() throws IOException {
+        flushAllPages();
+        diskManager.sync();
+    }
 
-            logger.info("Allocated new page {} in frame {}.", newPageId, frameId);
-            return newPage;
+    /**
+     * 停止预读和后台刷盘线程，等待所有页解除固定后做最后一次检查点；底层 DiskManager 由调用方关闭
+     * @throws IOException 写回失败，或等待 StorageConfig.BUFFER_POOL_CLOSE_TIMEOUT_MS 后仍有页被固定——
+     *                     这些页上的修改没有写回磁盘
+     */
+    public void close() throws IOException {
+        close(StorageConfig.BUFFER_POOL_CLOSE_TIMEOUT_MS);
+    }
 
-        } finally {
-            latch.unlock();
+    void close(long pinnedTimeoutMs) throws IOException {
+        prefetchExecutor.shutdown();
+        try {
+            prefetchExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher.shutdown();
+        int[] pinned = awaitUnpinned(pinnedTimeoutMs);
+        checkpoint();
+        if (pinned.length > 0) {
+            throw new IOException("Buffer pool of '" + diskManager.getFileName() + "' closed with " + pinned.length
+                    + " page(s) still pinned after " + pinnedTimeoutMs + " ms; their changes were not written: "
+                    + Arrays.toString(pinned));
         }
     }
 
-    public void flushAllPages() throws IOException {
-        latch.lock();
-        try {
-            for (Page page : pages) {
-                if (page != null && page.isDirty()) {
-                    diskManager.writePage(page.getPageId(), page.getData());
-                    page.setDirty(false);
-                }
+    /**
+     * 被固定的页可能正在被修改，检查点不会写它们：等待它们解除固定，最多等待 timeoutMs 毫秒
+     * @return 超时后仍被固定的页号，全部解除固定时为空
+     */
+    private int[] awaitUnpinned(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            int[] pinned = pinnedPageIds();
+            if (pinned.length == 0 || System.nanoTime() - deadline >= 0) {
+                return pinned;
+            }
+            try {
+                Thread.sleep(CLOSE_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return pinnedPageIds();
             }
-            logger.info("All dirty pages have been flushed to disk.");
-        } finally {
-            latch.unlock();
         }
     }
 
-    private int findAvailableFrame() {
-        // 先找空闲帧
-        for (int i = 0; i < pages.length; i++) {
-            if (pages[i].getPageId() == -1) {
-                return i;
-            }
+    private int[] pinnedPageIds() {
+        int[] pageIds = new int[0];
+        for (BufferPoolPartition partition : partitions) {
+            int[] partitionPageIds = partition.pinnedPageIds();
+            int offset = pageIds.length;
+            pageIds = Arrays.copyOf(pageIds, offset + partitionPageIds.length);
+            System.arraycopy(partitionPageIds, 0, pageIds, offset, partitionPageIds.length);
+        }
+        Arrays.sort(pageIds);
+        return pageIds;
+    }
+
+    /**
+     * 获取底层文件当前的页数
+     * @return 页数
+     */
+    public int getPageCount() {
+        return diskManager.getPageCount();
+    }
+
+    private BufferPoolPartition partitionFor(int pageId) {
+        if (partitions.length == 1) {
+            return partitions[0];
         }
-        // 没有空闲帧，使用LRU淘汰
-        return replacer.victim().orElse(-1);
+        // 打散相邻页号，避免顺序扫描集中在少数分区
+        int h = pageId * 0x9E3779B9;
+        h ^= h >>> 16;
+        return partitions[Math.floorMod(h, partitions.length)];
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package storage.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓冲池运行指标：计数器都是 LongAdder，热路径上只有无竞争的累加，不写日志。
+ * 指标按数据文件名登记，同一文件先后打开的缓冲池共用一份指标并持续累计，
+ * 通过 JMX (oursql:type=BufferPool) 和 CLI 的 .bufferstats 命令查看，用于确定 BUFFER_POOL_SIZE。
+ */
+public final class BufferPoolMetrics implements BufferPoolMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(BufferPoolMetrics.class);
+    private static final Map<String, BufferPoolMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    private final String name;
+    private volatile int capacity;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder dirtyWriteBacks = new LongAdder(); // 前台淘汰时写回的脏页
+    private final LongAdder flushedPages = new LongAdder(); // 后台刷盘和检查点写回的脏页
+    private final AtomicInteger pinnedFrames = new AtomicInteger();
+    private final AtomicInteger pinnedHighWaterMark = new AtomicInteger();
+    private final LongAdder latchWaits = new LongAdder();
+    private final LongAdder latchWaitNanos = new LongAdder();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LongAdder prefetchIssued = new LongAdder();
+    private final LongAdder prefetchHits = new LongAdder();
+    private final LongAdder prefetchWasted = new LongAdder();
+
+    private BufferPoolMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 取得（首次时创建并注册到 JMX）某个数据文件的缓冲池指标
+     */
+    static BufferPoolMetrics forPool(String name, int capacity) {
+        BufferPoolMetrics metrics = REGISTRY.computeIfAbsent(name, key -> {
+            BufferPoolMetrics created = new BufferPoolMetrics(key);
+            created.registerMBean();
+            return created;
+        });
+        metrics.capacity = capacity;
+        return metrics;
+    }
+
+    /**
+     * @return 所有缓冲池的指标，按名称排序
+     */
+    public static List<BufferPoolMetrics> all() {
+        List<BufferPoolMetrics> list = new ArrayList<>(REGISTRY.values());
+        list.sort(Comparator.comparing(BufferPoolMetrics::getName));
+        return list;
+    }
+
+    private void registerMBean() {
+        try {
+            ObjectName objectName = new ObjectName("oursql:type=BufferPool,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            logger.warn("Failed to register buffer pool metrics for {} with JMX", name, e);
+        }
+    }
+
+    // --- 记录 ---
+
+    void recordHit() { hits.increment(); }
+    void recordMiss() { misses.increment(); }
+    void recordEviction() { evictions.increment(); }
+    void recordDirtyWriteBack() { dirtyWriteBacks.increment(); }
+    void recordFlushed(int pages) { flushedPages.add(pages); }
+    void recordRead(long nanos) { readLatency.record(nanos); }
+    void recordWrite(long nanos) { writeLatency.record(nanos); }
+    void recordPrefetch() { prefetchIssued.increment(); }
+    void recordPrefetchHit() { prefetchHits.increment(); }
+    void recordPrefetchWasted() { prefetchWasted.increment(); }
+
+    void recordLatchWait(long nanos) {
+        latchWaits.increment();
+        latchWaitNanos.add(nanos);
+    }
+
+    /**
+     * 帧的固定计数由 0 变为 1
+     */
+    void framePinned() {
+        int pinned = pinnedFrames.incrementAndGet();
+        int highWater = pinnedHighWaterMark.get();
+        while (pinned > highWater && !pinnedHighWaterMark.compareAndSet(highWater, pinned)) {
+            highWater = pinnedHighWaterMark.get();
+        }
+    }
+
+    /**
+     * 帧的固定计数回到 0
+     */
+    void frameUnpinned() {
+        pinnedFrames.decrementAndGet();
+    }
+
+    // --- MXBean ---
+
+    @Override public String getName() { return name; }
+    @Override public int getCapacity() { return capacity; }
+    @Override public long getHits() { return hits.sum(); }
+    @Override public long getMisses() { return misses.sum(); }
+    @Override public long getEvictions() { return evictions.sum(); }
+    @Override public long getDirtyWriteBacks() { return dirtyWriteBacks.sum(); }
+    @Override public long getFlushedPages() { return flushedPages.sum(); }
+    @Override public int getPinnedFrames() { return pinnedFrames.get(); }
+    @Override public int getPinnedHighWaterMark() { return pinnedHighWaterMark.get(); }
+    @Override public long getLatchWaits() { return latchWaits.sum(); }
+    @Override public long getLatchWaitNanos() { return latchWaitNanos.sum(); }
+    @Override public long getReads() { return readLatency.count(); }
+    @Override public long getReadLatencyMeanNanos() { return readLatency.meanNanos(); }
+    @Override public long getReadLatencyP99Nanos() { return readLatency.percentileNanos(0.99); }
+    @Override public long[] getReadLatencyHistogram() { return readLatency.snapshot(); }
+    @Override public long getWrites() { return writeLatency.count(); }
+    @Override public long getWriteLatencyMeanNanos() { return writeLatency.meanNanos(); }
+    @Override public long getWriteLatencyP99Nanos() { return writeLatency.percentileNanos(0.99); }
+    @Override public long[] getWriteLatencyHistogram() { return writeLatency.snapshot(); }
+    @Override public long getPrefetchIssued() { return prefetchIssued.sum(); }
+    @Override public long getPrefetchHits() { return prefetchHits.sum(); }
+    @Override public long getPrefetchWasted() { return prefetchWasted.sum(); }
+
+    @Override
+    public double getHitRatio() {
+        long hit = getHits();
+        long total = hit + getMisses();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : List.of(hits, misses, evictions, dirtyWriteBacks, flushedPages, latchWaits,
+                latchWaitNanos, prefetchIssued, prefetchHits, prefetchWasted)) {
+            adder.reset();
+        }
+        pinnedHighWaterMark.set(pinnedFrames.get());
+        readLatency.reset();
+        writeLatency.reset();
+    }
+
+    /**
+     * CLI 展示用的多行摘要
+     */
+    public String format() {
+        return String.format("""
+                %s (%d frames)
+                  hits %d, misses %d, hit ratio %.2f%%
+                  evictions %d, dirty write-backs %d, background/checkpoint flushed %d
+                  pinned %d (high-water %d)
+                  latch waits %d, total %.3f ms
+                  reads %d, mean %.1f us, p99 <= %.1f us
+                  writes %d, mean %.1f us, p99 <= %.1f us
+                  prefetched %d, used %d, wasted %d""",
+                name, capacity,
+                getHits(), getMisses(), getHitRatio() * 100,
+                getEvictions(), getDirtyWriteBacks(), getFlushedPages(),
+                getPinnedFrames(), getPinnedHighWaterMark(),
+                getLatchWaits(), getLatchWaitNanos() / 1e6,
+                getReads(), getReadLatencyMeanNanos() / 1e3, getReadLatencyP99Nanos() / 1e3,
+                getWrites(), getWriteLatencyMeanNanos() / 1e3, getWriteLatencyP99Nanos() / 1e3,
+                getPrefetchIssued(), getPrefetchHits(), getPrefetchWasted());
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
@@ -0,0 +1,37 @@
+package storage.buffer;
+
+/**
+ * 缓冲池指标的 JMX 接口，ObjectName 为 oursql:type=BufferPool,name=&lt;数据文件&gt;
+ */
+public interface BufferPoolMetricsMXBean {
+    String getName();
+    int getCapacity();
+
+    long getHits();
+    long getMisses();
+    double getHitRatio();
+    long getEvictions();
+    long getDirtyWriteBacks();
+    long getFlushedPages();
+
+    int getPinnedFrames();
+    int getPinnedHighWaterMark();
+
+    long getLatchWaits();
+    long getLatchWaitNanos();
+
+    long getReads();
+    long getReadLatencyMeanNanos();
+    long getReadLatencyP99Nanos();
+    long[] getReadLatencyHistogram();
+    long getWrites();
+    long getWriteLatencyMeanNanos();
+    long getWriteLatencyP99Nanos();
+    long[] getWriteLatencyHistogram();
+
+    long getPrefetchIssued();
+    long getPrefetchHits();
+    long getPrefetchWasted();
+
+    void reset();
+}
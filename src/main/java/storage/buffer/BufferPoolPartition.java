@@ -0,0 +1,526 @@
+package storage.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import storage.page.Page;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 缓冲池分区：拥有自己的帧、页表、替换器和锁，只负责哈希到本分区的页。
+ * 磁盘读写在锁外进行：正在装载的帧处于“I/O 中”状态，其他访问同一页的线程在 ioDone 上等待；
+ * 正在写回的页记录在 writesInFlight 中，写回完成前不允许再次从磁盘读取该页或再次写它。
+ */
+class BufferPoolPartition {
+    private static final Logger logger = LoggerFactory.getLogger(BufferPoolManager.class);
+    private static final int RETRY = -2;
+
+    private final Page[] pages; // 本分区的帧
+    private final boolean[] ioInProgress; // 帧正在从磁盘装载
+    private final boolean[] prefetched; // 帧中的页由预读装入，尚未被访问
+    private final IntIntHashMap pageTable; // pageId -> frameId
+    private final IntIntHashMap writesInFlight; // 正在写回磁盘的页 (pageId -> 0)
+    private final int[] freeFrames; // 空闲帧栈，缺页时 O(1) 取得空闲帧
+    private int freeCount;
+    private final Replacer replacer;
+    private final DiskManager diskManager;
+    private final FrameRegion region;
+    private final ReentrantLock latch = new ReentrantLock();
+    private final Condition ioDone = latch.newCondition();
+    private final Runnable onDirtyEviction; // 前台淘汰到脏页时通知后台刷盘线程
+    private final BufferPoolMetrics metrics;
+    private int prefetchesInFlight; // 已占用帧、尚未装载完成的预读页数
+
+    /**
+     * @param region     整个缓冲池的堆外帧区域
+     * @param firstFrame 本分区在区域中的第一帧
+     * @param frameCount 本分区的帧数
+     * @param metrics    整个缓冲池共用的指标
+     */
+    BufferPoolPartition(FrameRegion region, int firstFrame, int frameCount, DiskManager diskManager,
+                        ReplacerPolicy policy, BufferPoolMetrics metrics, Runnable onDirtyEviction) {
+        this.region = region;
+        this.metrics = metrics;
+        this.pages = new Page[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            // 每个 Page 固定绑定一帧，换页时只重置内容
+            this.pages[i] = new Page(region.frame(firstFrame + i));
+        }
+        this.ioInProgress = new boolean[frameCount];
+        this.prefetched = new boolean[frameCount];
+        this.pageTable = new IntIntHashMap(frameCount);
+        this.writesInFlight = new IntIntHashMap(frameCount);
+        this.freeFrames = new int[frameCount];
+        for (int i = frameCount - 1; i >= 0; i--) {
+            freeFrames[freeCount++] = i;
+        }
+        this.replacer = policy.create(frameCount);
+        this.diskManager = diskManager;
+        this.onDirtyEviction = onDirtyEviction;
+    }
+
+    Page fetchPage(int pageId) throws IOException {
+        int frameId;
+        int evictedPageId;
+        lockLatch();
+        try {
+            while (true) {
+                int cached = pageTable.get(pageId);
+                if (cached != IntIntHashMap.MISSING) {
+                    if (ioInProgress[cached]) {
+                        // 其他线程正在装载这一页，等它完成后重新查找
+                        ioDone.awaitUninterruptibly();
+                        continue;
+                    }
+                    Page page = pages[cached];
+                    pin(page);
+                    replacer.pin(cached);
+                    if (prefetched[cached]) {
+                        prefetched[cached] = false;
+                        metrics.recordPrefetchHit();
+                    }
+                    metrics.recordHit();
+                    return page;
+                }
+                if (writesInFlight.containsKey(pageId)) {
+                    // 该页的脏数据还在写回，磁盘上的内容尚不可读
+                    ioDone.awaitUninterruptibly();
+                    continue;
+                }
+
+                frameId = findAvailableFrame();
+                if (frameId == RETRY) {
+                    continue;
+                }
+                if (frameId == -1) {
+                    logger.error("Cannot fetch page {}. Buffer pool is full and all pages are pinned.", pageId);
+                    return null;
+                }
+                evictedPageId = reserveFrame(frameId, pageId);
+                metrics.recordMiss();
+                break;
+            }
+        } finally {
+            latch.unlock();
+        }
+
+        Page page = pages[frameId];
+        if (evictedPageId != -1) {
+            writeBackEvicted(frameId, evictedPageId);
+        }
+        try {
+            long start = System.nanoTime();
+            diskManager.readPage(pageId, page.getBuffer());
+            metrics.recordRead(System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            lockLatch();
+            try {
+                pageTable.remove(pageId);
+                page.setPageId(-1);
+                page.setDirty(false);
+                unpin(page);
+                freeFrames[freeCount++] = frameId;
+                ioInProgress[frameId] = false;
+                ioDone.signalAll();
+            } finally {
+                latch.unlock();
+            }
+            throw e;
+        }
+        finishLoad(frameId);
+        return page;
+    }
+
+    Page newPage(int pageId) throws IOException {
+        int frameId;
+        int evictedPageId;
+        lockLatch();
+        try {
+            do {
+                frameId = findAvailableFrame();
+            } while (frameId == RETRY);
+            if (frameId == -1) {
+                logger.error("Cannot create new page {}. Buffer pool is full and all pages are pinned.", pageId);
+                return null;
+            }
+            evictedPageId = reserveFrame(frameId, pageId);
+            // 新页不需要从磁盘读取，但在旧页写回完成前同样处于 I/O 状态
+        } finally {
+            latch.unlock();
+        }
+
+        Page page = pages[frameId];
+        if (evictedPageId != -1) {
+            writeBackEvicted(frameId, evictedPageId);
+        }
+        page.reset();
+        finishLoad(frameId);
+        return page;
+    }
+
+    boolean unpinPage(int pageId, boolean isDirty) {
+        lockLatch();
+        try {
+            int frameId = pageTable.get(pageId);
+            if (frameId == IntIntHashMap.MISSING) {
+                return false;
+            }
+            Page page = pages[frameId];
+            unpin(page);
+            if (isDirty) {
+                page.setDirty(true);
+            }
+            if (page.getPinCount() == 0) {
+                replacer.unpin(frameId);
+            }
+            return true;
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 为预读占用一帧：只使用空闲帧，不向替换器要淘汰帧——victim 会移除帧并清空访问历史，
+     * 预读不能因此打乱替换策略对热点页的判断；
+     * 同时在途的预读最多占用本分区一半的帧，避免挤占前台访问。占用的帧处于 I/O 状态，
+     * 调用方在锁外读入数据后必须调用 finishPrefetch
+     * @return 占用的帧；页已在缓冲池中或没有合适的帧时返回 null
+     */
+    Page reservePrefetch(int pageId) {
+        lockLatch();
+        try {
+            if (pageTable.containsKey(pageId) || writesInFlight.containsKey(pageId)
+                    || prefetchesInFlight >= pages.length / 2) {
+                return null;
+            }
+            int frameId = findFreeFrame();
+            if (frameId == -1) {
+                return null;
+            }
+            reserveFrame(frameId, pageId);
+            prefetchesInFlight++;
+            return pages[frameId];
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 结束一次预读：装载成功的页解除固定、交给替换器并标记为预读页；失败时释放该帧
+     */
+    void finishPrefetch(Page page, boolean loaded) {
+        lockLatch();
+        try {
+            int frameId = pageTable.get(page.getPageId());
+            unpin(page);
+            if (loaded) {
+                prefetched[frameId] = true;
+                metrics.recordPrefetch();
+                replacer.unpin(frameId);
+            } else {
+                pageTable.remove(page.getPageId());
+                page.setPageId(-1);
+                freeFrames[freeCount++] = frameId;
+            }
+            prefetchesInFlight--;
+            ioInProgress[frameId] = false;
+            ioDone.signalAll();
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 检查点的第一步：列出本分区在 dirtyBefore 之前变脏的页号，不拷贝页数据
+     */
+    int[] dirtyPageIds(long dirtyBefore) {
+        lockLatch();
+        try {
+            int[] pageIds = new int[pages.length];
+            int count = 0;
+            for (Page page : pages) {
+                if (page.getPageId() != -1 && page.isDirty() && page.getDirtySince() - dirtyBefore <= 0) {
+                    pageIds[count++] = page.getPageId();
+                }
+            }
+            return Arrays.copyOf(pageIds, count);
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * @return 本分区中被固定的页号（包括正在装载的页），关闭缓冲池时据此等待
+     */
+    int[] pinnedPageIds() {
+        lockLatch();
+        try {
+            int[] pageIds = new int[pages.length];
+            int count = 0;
+            for (Page page : pages) {
+                if (page.getPageId() != -1 && page.getPinCount() > 0) {
+                    pageIds[count++] = page.getPageId();
+                }
+            }
+            return Arrays.copyOf(pageIds, count);
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 把一个脏页拷贝到快照缓冲区并标记为干净，由调用方在锁外写回磁盘；写回期间其他线程照常读写缓冲池，
+     * 写回结束后必须调用 finishFlush。
+     * 被固定的页可能正在被修改，没有页级的锁可以得到完整的拷贝，因此跳过，留给下一次检查点或淘汰时写回；
+     * 关闭缓冲池时先等待所有页解除固定，不会因此漏写
+     * @return 页不在本分区、已经干净、在 dirtyBefore 之后才变脏、被固定或正在装载、写回时返回 null
+     */
+    DirtyPage snapshotDirtyPage(int pageId, long dirtyBefore) {
+        lockLatch();
+        try {
+            int frameId = pageTable.get(pageId);
+            if (frameId == IntIntHashMap.MISSING || ioInProgress[frameId] || writesInFlight.containsKey(pageId)) {
+                return null;
+            }
+            Page page = pages[frameId];
+            if (!page.isDirty() || page.getPinCount() > 0 || page.getDirtySince() - dirtyBefore > 0) {
+                return null;
+            }
+            return snapshot(page);
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 后台刷盘：当可直接淘汰的干净帧少于 cleanTarget 时，按变脏时间从旧到新取出未固定的脏页快照，
+     * 数量补足差额，但 out 中最多放入 limit 页；写回后同样调用 finishFlush
+     */
+    void collectFlushCandidates(int cleanTarget, int limit, List<DirtyPage> out) {
+        lockLatch();
+        try {
+            int clean = 0;
+            List<Integer> candidates = new ArrayList<>();
+            for (int frameId = 0; frameId < pages.length; frameId++) {
+                Page page = pages[frameId];
+                if (ioInProgress[frameId]) {
+                    continue;
+                }
+                if (page.getPageId() == -1) {
+                    clean++;
+                } else if (page.getPinCount() == 0) {
+                    if (!page.isDirty()) {
+                        clean++;
+                    } else if (!writesInFlight.containsKey(page.getPageId())) {
+                        candidates.add(frameId);
+                    }
+                }
+            }
+            int deficit = cleanTarget - clean;
+            if (deficit <= 0 || candidates.isEmpty()) {
+                return;
+            }
+            candidates.sort(Comparator.comparingLong(frameId -> pages[frameId].getDirtySince()));
+            for (int i = 0; i < Math.min(deficit, candidates.size()) && out.size() < limit; i++) {
+                out.add(snapshot(pages[candidates.get(i)]));
+            }
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 在持有锁时拷贝未固定的脏页并把它记为正在写回
+     */
+    private DirtyPage snapshot(Page page) {
+        DirtyPage dirtyPage = new DirtyPage(this, page.getPageId(), region.snapshot(page.getBuffer()));
+        page.setDirty(false);
+        writesInFlight.put(page.getPageId(), 0);
+        return dirtyPage;
+    }
+
+    int getFrameCount() {
+        return pages.length;
+    }
+
+    /**
+     * 结束一批由 snapshotDirtyPage 或 collectFlushCandidates 取出的写回，未写成功且仍在缓冲池中的页重新标记为脏
+     */
+    void finishFlush(List<DirtyPage> flushed) {
+        lockLatch();
+        try {
+            for (DirtyPage dirtyPage : flushed) {
+                if (dirtyPage.partition != this) {
+                    continue;
+                }
+                writesInFlight.remove(dirtyPage.pageId);
+                int frameId = pageTable.get(dirtyPage.pageId);
+                if (!dirtyPage.written && frameId != IntIntHashMap.MISSING) {
+                    pages[frameId].setDirty(true);
+                }
+            }
+            ioDone.signalAll();
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 等待写回的脏页快照
+     */
+    static final class DirtyPage {
+        final BufferPoolPartition partition;
+        final int pageId;
+        final ByteBuffer data;
+        boolean written;
+
+        DirtyPage(BufferPoolPartition partition, int pageId, ByteBuffer data) {
+            this.partition = partition;
+            this.pageId = pageId;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 在持有锁时为新页占用一个帧（空闲帧或 findAvailableFrame 选出的淘汰帧）：解除旧页映射，建立新页映射，
+     * 并把帧置为 I/O 状态
+     * @return 需要写回的旧页号；不需要写回时返回 -1
+     */
+    private int reserveFrame(int frameId, int newPageId) {
+        Page page = pages[frameId];
+        int oldPageId = page.getPageId();
+        boolean dirty = oldPageId != -1 && page.isDirty();
+        if (oldPageId != -1) {
+            pageTable.remove(oldPageId);
+            metrics.recordEviction();
+        }
+        if (prefetched[frameId]) {
+            prefetched[frameId] = false;
+            metrics.recordPrefetchWasted();
+        }
+        if (dirty) {
+            writesInFlight.put(oldPageId, 0);
+            onDirtyEviction.run();
+        }
+        page.setPageId(newPageId);
+        page.setDirty(false);
+        pin(page);
+        replacer.pin(frameId);
+        pageTable.put(newPageId, frameId);
+        ioInProgress[frameId] = true;
+        return dirty ? oldPageId : -1;
+    }
+
+    /**
+     * @return 空闲帧或淘汰帧；都没有时返回 -1；可淘汰的帧都在等待写回时等待一次写回结束后返回 RETRY，
+     * 调用方应重新查找
+     */
+    private int findAvailableFrame() {
+        // 先找空闲帧
+        int frameId = findFreeFrame();
+        if (frameId != -1) {
+            return frameId;
+        }
+        // 没有空闲帧，由替换策略选出淘汰帧；写回尚未结束又变脏的页不能再次写回，跳过它们而不改变其在替换器中的状态
+        frameId = replacer.victim(this::canEvictNow);
+        if (frameId == -1 && replacer.size() > 0) {
+            ioDone.awaitUninterruptibly();
+            return RETRY;
+        }
+        return frameId;
+    }
+
+    private boolean canEvictNow(int frameId) {
+        Page page = pages[frameId];
+        return !page.isDirty() || !writesInFlight.containsKey(page.getPageId());
+    }
+
+    private int findFreeFrame() {
+        return freeCount > 0 ? freeFrames[--freeCount] : -1;
+    }
+
+    /**
+     * 在锁外把被淘汰的脏页写回磁盘；失败时恢复旧页的映射，新页的装载作废
+     */
+    private void writeBackEvicted(int frameId, int evictedPageId) throws IOException {
+        Page page = pages[frameId];
+        try {
+            long start = System.nanoTime();
+            diskManager.writePage(evictedPageId, page.getBuffer());
+            metrics.recordWrite(System.nanoTime() - start);
+            metrics.recordDirtyWriteBack();
+        } catch (IOException | RuntimeException e) {
+            lockLatch();
+            try {
+                writesInFlight.remove(evictedPageId);
+                pageTable.remove(page.getPageId());
+                page.setPageId(evictedPageId);
+                page.setDirty(true);
+                pageTable.put(evictedPageId, frameId);
+                unpin(page);
+                replacer.unpin(frameId);
+                ioInProgress[frameId] = false;
+                ioDone.signalAll();
+            } finally {
+                latch.unlock();
+            }
+            throw e;
+        }
+        lockLatch();
+        try {
+            writesInFlight.remove(evictedPageId);
+            ioDone.signalAll();
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 获取分区锁；无竞争时直接拿到，有竞争时把等待时间计入指标
+     */
+    private void lockLatch() {
+        if (latch.tryLock()) {
+            return;
+        }
+        long start = System.nanoTime();
+        latch.lock();
+        metrics.recordLatchWait(System.nanoTime() - start);
+    }
+
+    /**
+     * 固定页，并在帧由未固定变为固定时更新固定帧数
+     */
+    private void pin(Page page) {
+        if (page.getPinCount() == 0) {
+            metrics.framePinned();
+        }
+        page.pin();
+    }
+
+    private void unpin(Page page) {
+        if (page.getPinCount() == 1) {
+            metrics.frameUnpinned();
+        }
+        page.unpin();
+    }
+
+    /**
+     * 帧装载完成，唤醒等待这一页的线程
+     */
+    private void finishLoad(int frameId) {
+        lockLatch();
+        try {
+            ioInProgress[frameId] = false;
+            ioDone.signalAll();
+        } finally {
+            latch.unlock();
+        }
+    }
+}
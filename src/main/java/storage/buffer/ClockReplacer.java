@@ -0,0 +1,65 @@
+package storage.buffer;
+
+import java.util.function.IntPredicate;
+
+/**
+ * CLOCK（二次机会）：时钟指针扫过帧，引用位为 1 的帧清零后跳过，遇到引用位为 0 的可淘汰帧即淘汰。
+ * 每个帧最多被跳过一次，victim 的均摊复杂度为 O(1)。不满足 victim 条件的帧被指针越过，引用位保持不变。
+ */
+public class ClockReplacer implements Replacer {
+    private final boolean[] evictable;
+    private final boolean[] referenced;
+    private int hand;
+    private int size;
+
+    public ClockReplacer(int capacity) {
+        this.evictable = new boolean[capacity];
+        this.referenced = new boolean[capacity];
+    }
+
+    @Override
+    public synchronized int victim(IntPredicate eligible) {
+        if (size == 0) {
+            return -1;
+        }
+        // 最多两圈：第一圈清除引用位，第二圈必然找到引用位为 0 的帧
+        for (int scanned = 0; scanned < 2 * evictable.length; scanned++) {
+            int frameId = hand;
+            hand = (hand + 1) % evictable.length;
+            if (!evictable[frameId] || !eligible.test(frameId)) {
+                continue;
+            }
+            if (referenced[frameId]) {
+                referenced[frameId] = false;
+                continue;
+            }
+            evictable[frameId] = false;
+            size--;
+            return frameId;
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized void pin(int frameId) {
+        if (evictable[frameId]) {
+            evictable[frameId] = false;
+            size--;
+        }
+        referenced[frameId] = true;
+    }
+
+    @Override
+    public synchronized void unpin(int frameId) {
+        if (!evictable[frameId]) {
+            evictable[frameId] = true;
+            size++;
+        }
+        referenced[frameId] = true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+}
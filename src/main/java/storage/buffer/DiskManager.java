@@ -1,61 +1,243 @@
 package storage.buffer;
 
+import common.StorageConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import storage.page.Page;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class DiskManager {
+/**
+ * 磁盘管理器：基于 FileChannel 的定位读写 (pread/pwrite)，不依赖共享的文件指针，
+ * 多个线程可以同时对同一文件发起页 I/O。
+ * MMAP 模式下文件按 StorageConfig.MMAP_SEGMENT_SIZE 分段只读映射，读页只是一次带边界检查的内存拷贝，
+ * 文件增长后按需重新映射；写页仍然走 FileChannel，由 sync() 在检查点落盘。
+ */
+public class DiskManager implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(DiskManager.class);
-    private final RandomAccessFile dbFile;
+    private final FileChannel channel;
+    private final String fileName;
+    private final IoMode ioMode;
     private final AtomicInteger pageCounter;
+    // MMAP 模式下的映射分段及其覆盖的文件长度，重新映射时整体替换
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long mappedSize;
+    // 聚集写 (writev) 和分散读 (readv) 需要设置通道位置，只在它们之间互斥，定位读写不受影响
+    private final Object positionLock = new Object();
     private final String prePath = System.getProperty("user.home") + File.separator + ".oursql" + File.separator;
 
     public DiskManager(String dbFilePath) throws IOException {
+        this(dbFilePath, StorageConfig.ioModeFor(dbFilePath));
+    }
+
+    public DiskManager(String dbFilePath, IoMode ioMode) throws IOException {
+        this.fileName = dbFilePath;
         File file = new File(prePath + dbFilePath);
         // 确保目录存在
         File parent = file.getParentFile();
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
-        this.dbFile = new RandomAccessFile(file, "rw");
-        long fileSize = dbFile.length();
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
         this.pageCounter = new AtomicInteger((int) Math.ceilDiv(fileSize, Page.PAGE_SIZE)); // 设置为向上取整
-        logger.info("Opened DB file '{}'. Found {} pages.", dbFilePath, pageCounter.get());
+        this.ioMode = ioMode;
+        if (ioMode == IoMode.MMAP) {
+            remap();
+        }
+        logger.info("Opened DB file '{}' ({}). Found {} pages.", dbFilePath, ioMode, pageCounter.get());
     }
 
-    public synchronized void readPage(int pageId, byte[] pageData) throws IOException {
+    public void readPage(int pageId, byte[] pageData) throws IOException {
+        readPage(pageId, ByteBuffer.wrap(pageData));
+    }
+
+    /**
+     * 把一页读入缓冲区的 [0, PAGE_SIZE) 区间；已分配但还未写入磁盘的部分以 0 填充
+     */
+    public void readPage(int pageId, ByteBuffer pageData) throws IOException {
         if (pageId >= pageCounter.get()) {
             throw new IllegalArgumentException("Page ID " + pageId + " does not exist.");
         }
+        if (ioMode == IoMode.MMAP) {
+            ByteBuffer mapped = pageSlice(pageId);
+            if (mapped != null) {
+                pageData.put(0, mapped, 0, Page.PAGE_SIZE);
+                return;
+            }
+            // 页已分配但文件尚未写到这里，走通道读取并补零
+        }
+        ByteBuffer dst = pageData.slice(0, Page.PAGE_SIZE);
         long offset = (long) pageId * Page.PAGE_SIZE;
-        dbFile.seek(offset);
-        dbFile.readFully(pageData);
-        logger.trace("Read page {} from disk.", pageId);
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, offset + dst.position());
+            if (n < 0) {
+                while (dst.hasRemaining()) {
+                    dst.put((byte) 0);
+                }
+                break;
+            }
+        }
     }
 
-    public synchronized void writePage(int pageId, byte[] pageData) throws IOException {
+    /**
+     * 用一次分散读把页号连续的多页读入各自的缓冲区，顺序预读时使用；文件末尾之后的部分以 0 填充
+     * @param firstPageId 第一页的页号
+     * @param pages       依次对应 firstPageId, firstPageId + 1, ... 的页缓冲区
+     */
+    public void readPages(int firstPageId, ByteBuffer[] pages) throws IOException {
+        if (firstPageId + pages.length > pageCounter.get()) {
+            throw new IllegalArgumentException("Pages " + firstPageId + ".." + (firstPageId + pages.length - 1)
+                    + " do not exist.");
+        }
+        if (pages.length == 1 || ioMode == IoMode.MMAP) {
+            // 映射区读取本身没有系统调用，逐页拷贝即可
+            for (int i = 0; i < pages.length; i++) {
+                readPage(firstPageId + i, pages[i]);
+            }
+            return;
+        }
+        ByteBuffer[] dsts = new ByteBuffer[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            dsts[i] = pages[i].slice(0, Page.PAGE_SIZE);
+        }
+        synchronized (positionLock) {
+            channel.position((long) firstPageId * Page.PAGE_SIZE);
+            while (dsts[dsts.length - 1].hasRemaining()) {
+                if (channel.read(dsts) < 0) {
+                    break;
+                }
+            }
+        }
+        for (ByteBuffer dst : dsts) {
+            while (dst.hasRemaining()) {
+                dst.put((byte) 0);
+            }
+        }
+        logger.trace("Read pages {}..{} from disk.", firstPageId, firstPageId + pages.length - 1);
+    }
+
+    public void writePage(int pageId, byte[] pageData) throws IOException {
+        writePage(pageId, ByteBuffer.wrap(pageData));
+    }
+
+    /**
+     * 把缓冲区的 [0, PAGE_SIZE) 区间写入一页
+     */
+    public void writePage(int pageId, ByteBuffer pageData) throws IOException {
+        ByteBuffer src = pageData.slice(0, Page.PAGE_SIZE);
         long offset = (long) pageId * Page.PAGE_SIZE;
-        dbFile.seek(offset);
-        dbFile.write(pageData);
-        logger.trace("Wrote page {} to disk.", pageId);
+        while (src.hasRemaining()) {
+            channel.write(src, offset + src.position());
+        }
     }
 
-    public synchronized int allocatePage() {
+    /**
+     * 用一次聚集写把页号连续的多页写入磁盘
+     * @param firstPageId 第一页的页号
+     * @param pages       依次对应 firstPageId, firstPageId + 1, ... 的页数据
+     */
+    public void writePages(int firstPageId, ByteBuffer[] pages) throws IOException {
+        if (pages.length == 1) {
+            writePage(firstPageId, pages[0]);
+            return;
+        }
+        ByteBuffer[] srcs = new ByteBuffer[pages.length];
+        long remaining = 0;
+        for (int i = 0; i < pages.length; i++) {
+            srcs[i] = pages[i].slice(0, Page.PAGE_SIZE);
+            remaining += Page.PAGE_SIZE;
+        }
+        synchronized (positionLock) {
+            channel.position((long) firstPageId * Page.PAGE_SIZE);
+            while (remaining > 0) {
+                remaining -= channel.write(srcs);
+            }
+        }
+        logger.trace("Wrote pages {}..{} to disk.", firstPageId, firstPageId + pages.length - 1);
+    }
+
+    /**
+     * MMAP 模式下返回页在映射区中的只读视图，不发生系统调用和拷贝
+     * @return 只读视图；非 MMAP 模式或页超出文件末尾时返回 null
+     */
+    public ByteBuffer pageSlice(int pageId) throws IOException {
+        if (ioMode != IoMode.MMAP) {
+            return null;
+        }
+        long offset = (long) pageId * Page.PAGE_SIZE;
+        if (offset + Page.PAGE_SIZE > mappedSize) {
+            remap();
+            if (offset + Page.PAGE_SIZE > mappedSize) {
+                return null;
+            }
+        }
+        MappedByteBuffer segment = segments[(int) (offset / StorageConfig.MMAP_SEGMENT_SIZE)];
+        return segment.slice((int) (offset % StorageConfig.MMAP_SEGMENT_SIZE), Page.PAGE_SIZE).asReadOnlyBuffer();
+    }
+
+    /**
+     * 按当前文件长度重新映射；已完整映射的分段保持不变，只重映射末尾分段和新增分段
+     */
+    private synchronized void remap() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize <= mappedSize) {
+            return;
+        }
+        long segmentSize = StorageConfig.MMAP_SEGMENT_SIZE;
+        MappedByteBuffer[] old = segments;
+        MappedByteBuffer[] remapped = new MappedByteBuffer[(int) Math.ceilDiv(fileSize, segmentSize)];
+        for (int i = 0; i < remapped.length; i++) {
+            long start = i * segmentSize;
+            long length = Math.min(segmentSize, fileSize - start);
+            if (i < old.length && old[i].capacity() == length) {
+                remapped[i] = old[i];
+            } else {
+                remapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+        }
+        segments = remapped;
+        mappedSize = fileSize;
+        logger.debug("Mapped {} bytes in {} segment(s).", fileSize, remapped.length);
+    }
+
+    /**
+     * @return 相对 ~/.oursql/ 的文件路径
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public IoMode getIoMode() {
+        return ioMode;
+    }
+
+    public int allocatePage() {
         // 直接返回当前的页面计数器值作为新页的ID，然后递增计数器
         return pageCounter.getAndIncrement();
     }
 
+    /**
+     * 把已写入的数据强制落盘，检查点时调用
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
     public void close() throws IOException {
-        dbFile.close();
+        channel.close();
     }
 
     public boolean isEmpty() throws IOException {
-        return dbFile.length() == 0;
+        return channel.size() == 0;
     }
 
     /**
@@ -65,4 +247,4 @@ public class DiskManager {
     public int getPageCount() {
         return pageCounter.get();
     }
-}
\ No newline at end of file
+}
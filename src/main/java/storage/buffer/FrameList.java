@@ -0,0 +1,91 @@
+package storage.buffer;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * 以帧号为节点的侵入式双向链表，所有操作 O(1) 且不分配对象，供各替换器维护淘汰顺序
+ */
+class FrameList {
+    private static final int NIL = -1;
+
+    private final int[] prev;
+    private final int[] next;
+    private final boolean[] linked;
+    private int head = NIL;
+    private int tail = NIL;
+    private int size;
+
+    FrameList(int capacity) {
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        this.linked = new boolean[capacity];
+        Arrays.fill(prev, NIL);
+        Arrays.fill(next, NIL);
+    }
+
+    boolean contains(int frameId) {
+        return linked[frameId];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 追加到表尾（最近使用端）
+     */
+    void pushBack(int frameId) {
+        if (linked[frameId]) {
+            return;
+        }
+        prev[frameId] = tail;
+        next[frameId] = NIL;
+        if (tail == NIL) {
+            head = frameId;
+        } else {
+            next[tail] = frameId;
+        }
+        tail = frameId;
+        linked[frameId] = true;
+        size++;
+    }
+
+    void remove(int frameId) {
+        if (!linked[frameId]) {
+            return;
+        }
+        int p = prev[frameId];
+        int n = next[frameId];
+        if (p == NIL) {
+            head = n;
+        } else {
+            next[p] = n;
+        }
+        if (n == NIL) {
+            tail = p;
+        } else {
+            prev[n] = p;
+        }
+        prev[frameId] = NIL;
+        next[frameId] = NIL;
+        linked[frameId] = false;
+        size--;
+    }
+
+    /**
+     * @return 从表头起第一个满足 predicate 的帧号，不修改链表；没有时返回 -1
+     */
+    int first(IntPredicate predicate) {
+        for (int frameId = head; frameId != NIL; frameId = next[frameId]) {
+            if (predicate.test(frameId)) {
+                return frameId;
+            }
+        }
+        return NIL;
+    }
+}
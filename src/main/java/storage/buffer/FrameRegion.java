@@ -0,0 +1,73 @@
+package storage.buffer;
+
+import storage.page.Page;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓冲池的堆外内存：启动时一次性分配直接内存 (direct ByteBuffer)，按页对齐切分为帧，
+ * 页数据不占用 Java 堆，缓冲池再大也不会拉长 GC 停顿。单个直接缓冲区容量受 int 限制，
+ * 超大缓冲池按 MAX_CHUNK_BYTES 分成多块。
+ * 另外维护一组可复用的直接缓冲区，用作写回脏页时的快照，写盘时同样无需中间拷贝。
+ */
+final class FrameRegion {
+    private static final int MAX_CHUNK_BYTES = 1 << 30; // 每块 1GB
+    private static final int FRAMES_PER_CHUNK = MAX_CHUNK_BYTES / Page.PAGE_SIZE;
+    private static final int MAX_RETAINED_SNAPSHOTS = 1024; // 最多缓存 4MB 快照缓冲区
+
+    private final ByteBuffer[] chunks;
+    private final int frameCount;
+    private final ConcurrentLinkedQueue<ByteBuffer> snapshots = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retainedSnapshots = new AtomicInteger();
+
+    FrameRegion(int frameCount) {
+        this.frameCount = frameCount;
+        this.chunks = new ByteBuffer[Math.max(1, Math.ceilDiv(frameCount, FRAMES_PER_CHUNK))];
+        for (int i = 0; i < chunks.length; i++) {
+            int frames = Math.min(FRAMES_PER_CHUNK, frameCount - i * FRAMES_PER_CHUNK);
+            // 多分配一页用于按页对齐
+            chunks[i] = ByteBuffer.allocateDirect((frames + 1) * Page.PAGE_SIZE).alignedSlice(Page.PAGE_SIZE);
+        }
+    }
+
+    /**
+     * @return 第 index 帧的视图，只覆盖该帧的 PAGE_SIZE 字节
+     */
+    ByteBuffer frame(int index) {
+        if (index < 0 || index >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + index + " out of " + frameCount);
+        }
+        ByteBuffer chunk = chunks[index / FRAMES_PER_CHUNK];
+        return chunk.slice((index % FRAMES_PER_CHUNK) * Page.PAGE_SIZE, Page.PAGE_SIZE);
+    }
+
+    long byteSize() {
+        return (long) frameCount * Page.PAGE_SIZE;
+    }
+
+    /**
+     * 取一个页大小的快照缓冲区并拷入 source 的内容
+     */
+    ByteBuffer snapshot(ByteBuffer source) {
+        ByteBuffer buffer = snapshots.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(Page.PAGE_SIZE);
+        } else {
+            retainedSnapshots.decrementAndGet();
+        }
+        return buffer.put(0, source, 0, Page.PAGE_SIZE);
+    }
+
+    /**
+     * 写回结束后归还快照缓冲区
+     */
+    void release(ByteBuffer snapshot) {
+        if (retainedSnapshots.incrementAndGet() <= MAX_RETAINED_SNAPSHOTS) {
+            snapshots.offer(snapshot);
+        } else {
+            retainedSnapshots.decrementAndGet();
+        }
+    }
+}
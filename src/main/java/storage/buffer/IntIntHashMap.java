@@ -0,0 +1,121 @@
+package storage.buffer;
+
+import java.util.Arrays;
+
+/**
+ * 开放寻址（线性探测）的 int -> int 哈希表，用作缓冲池的页表：键和值都存放在 int 数组中，
+ * 查找、插入和删除都不创建对象。键必须是非负数（页号），删除使用后移法，不留墓碑。
+ */
+final class IntIntHashMap {
+    private static final int EMPTY = -1;
+    static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    IntIntHashMap(int expectedSize) {
+        // 负载因子不超过 0.5，探测序列保持很短
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @return 键对应的值，不存在时返回 MISSING
+     */
+    int get(int key) {
+        int index = indexOf(key);
+        return index < 0 ? MISSING : values[index];
+    }
+
+    boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    void put(int key, int value) {
+        int index = hash(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > (mask + 1) >> 1) {
+            resize();
+        }
+    }
+
+    /**
+     * @return 被删除的值，键不存在时返回 MISSING
+     */
+    int remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return MISSING;
+        }
+        int removed = values[index];
+        // 后移法删除：把探测链上后面的键前移填补空位
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            // home 不在 (gap, next] 区间内时，该键可以移到 gap
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        while (true) {
+            int k = keys[index];
+            if (k == key) {
+                return index;
+            }
+            if (k == EMPTY) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int hash(int key) {
+        // 相邻页号打散到不同的槽
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
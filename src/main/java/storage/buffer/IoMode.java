@@ -0,0 +1,11 @@
+package storage.buffer;
+
+/**
+ * DiskManager 的页读取方式，按文件在 StorageConfig.ioModeFor 中选择
+ */
+public enum IoMode {
+    /** FileChannel 定位读写，每次读页是一次系统调用 */
+    CHANNEL,
+    /** 读页直接从内存映射区拷贝，写页仍走 FileChannel，适合读多写少的目录和索引文件 */
+    MMAP
+}
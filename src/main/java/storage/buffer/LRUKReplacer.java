@@ -0,0 +1,99 @@
+package storage.buffer;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * LRU-K：按倒数第 K 次访问时间（后向 K 距离）淘汰。
+ * 访问不足 K 次的帧 K 距离为无穷大，优先淘汰，它们之间按最近访问时间排成 LRU 链表，victim 为 O(1)；
+ * 访问满 K 次的帧按倒数第 K 次访问时间保存在有序表中，只有没有冷帧时才从中选择，代价为 O(log n)。
+ */
+public class LRUKReplacer implements Replacer {
+    private final int k;
+    // 每帧最近 K 次访问的时间戳，环形存放
+    private final long[] history;
+    private final int[] ringPosition;
+    private final int[] accessCount; // 最多记到 K
+    private final FrameList coldList;
+    // 倒数第 K 次访问时间 -> 帧号；时间戳由逻辑时钟产生，不会重复
+    private final TreeMap<Long, Integer> hotFrames = new TreeMap<>();
+    private final long[] hotKey;
+    private long clock;
+
+    public LRUKReplacer(int capacity, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        this.history = new long[capacity * k];
+        this.ringPosition = new int[capacity];
+        this.accessCount = new int[capacity];
+        this.coldList = new FrameList(capacity);
+        this.hotKey = new long[capacity];
+    }
+
+    @Override
+    public synchronized int victim(IntPredicate eligible) {
+        int frameId = coldList.first(eligible);
+        if (frameId != -1) {
+            coldList.remove(frameId);
+        } else {
+            Iterator<Map.Entry<Long, Integer>> hot = hotFrames.entrySet().iterator();
+            while (frameId == -1 && hot.hasNext()) {
+                int candidate = hot.next().getValue();
+                if (eligible.test(candidate)) {
+                    hot.remove();
+                    hotKey[candidate] = 0;
+                    frameId = candidate;
+                }
+            }
+            if (frameId == -1) {
+                return -1;
+            }
+        }
+        // 帧将装入新页，清空访问历史
+        accessCount[frameId] = 0;
+        ringPosition[frameId] = 0;
+        return frameId;
+    }
+
+    @Override
+    public synchronized void pin(int frameId) {
+        removeEvictable(frameId);
+        history[frameId * k + ringPosition[frameId]] = ++clock;
+        ringPosition[frameId] = (ringPosition[frameId] + 1) % k;
+        if (accessCount[frameId] < k) {
+            accessCount[frameId]++;
+        }
+    }
+
+    @Override
+    public synchronized void unpin(int frameId) {
+        if (coldList.contains(frameId) || hotKey[frameId] != 0) {
+            return;
+        }
+        if (accessCount[frameId] < k) {
+            coldList.pushBack(frameId);
+        } else {
+            // 环形缓冲中下一个写入位置正是倒数第 K 次访问
+            long kthRecent = history[frameId * k + ringPosition[frameId]];
+            hotKey[frameId] = kthRecent;
+            hotFrames.put(kthRecent, frameId);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return coldList.size() + hotFrames.size();
+    }
+
+    private void removeEvictable(int frameId) {
+        coldList.remove(frameId);
+        if (hotKey[frameId] != 0) {
+            hotFrames.remove(hotKey[frameId]);
+            hotKey[frameId] = 0;
+        }
+    }
+}
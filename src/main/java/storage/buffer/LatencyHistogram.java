@@ -0,0 +1,81 @@
+package storage.buffer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 2 的幂为桶边界的延迟直方图（纳秒）：第 i 个桶统计 [2^i, 2^(i+1)) 纳秒的样本，
+ * 每个桶是一个 LongAdder，多线程记录时没有竞争，分位数按桶上界估算。
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 40; // 最大约 18 分钟，足够覆盖任何 I/O
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = nanos <= 1 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+        buckets[bucket].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @return 各桶的样本数，下标 i 对应 [2^i, 2^(i+1)) 纳秒
+     */
+    public long[] snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long meanNanos() {
+        long count = count();
+        return count == 0 ? 0 : totalNanos.sum() / count;
+    }
+
+    /**
+     * @param quantile 0 到 1 之间的分位点，例如 0.99
+     * @return 该分位点所在桶的上界（纳秒），没有样本时返回 0
+     */
+    public long percentileNanos(double quantile) {
+        long[] counts = snapshot();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 1L << (i + 1);
+            }
+        }
+        return 1L << BUCKETS;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+}
@@ -0,0 +1,46 @@
+package storage.buffer;
+
+import java.util.function.IntPredicate;
+
+/**
+ * 页面替换策略接口，BufferPoolManager 通过它选择被淘汰的帧。
+ * 替换器只跟踪 pinCount 为 0 的可淘汰帧。
+ * <p>
+ * 线程约定：前台访问线程、预读线程和后台刷盘线程都会通过缓冲池分区调用替换器，实现类必须是线程安全的，
+ * 现有实现的每个方法都是 synchronized。BufferPoolPartition 总是在持有分区锁时调用，
+ * 因此替换器的状态与分区的页表、pinCount 保持一致；替换器自身的同步只保证单次调用的原子性，
+ * 不能代替分区锁把多次调用组合成原子操作。
+ */
+public interface Replacer {
+    /**
+     * 选出一个可淘汰的帧，并将其从替换器中移除。会改变替换器状态（部分实现同时清空该帧的访问历史），
+     * 只应在确定要淘汰该帧时调用
+     * @return 帧号，没有可淘汰的帧时返回 -1
+     */
+    default int victim() {
+        return victim(frameId -> true);
+    }
+
+    /**
+     * 按淘汰顺序选出第一个满足 eligible 的帧并将其从替换器中移除；不满足条件的帧保持原有的位置和访问历史
+     * @return 帧号，没有满足条件的可淘汰帧时返回 -1
+     */
+    int victim(IntPredicate eligible);
+
+    /**
+     * 帧被访问并固定，不可再被淘汰
+     * @param frameId 帧号
+     */
+    void pin(int frameId);
+
+    /**
+     * 帧的 pinCount 降为 0，可以被淘汰
+     * @param frameId 帧号
+     */
+    void unpin(int frameId);
+
+    /**
+     * 当前可淘汰的帧数
+     */
+    int size();
+}
@@ -0,0 +1,26 @@
+package storage.buffer;
+
+import common.StorageConfig;
+
+/**
+ * 可选的页面替换策略，在 StorageConfig.REPLACER_POLICY 中配置
+ */
+public enum ReplacerPolicy {
+    LRU,
+    CLOCK,
+    LRU_K,
+    TWO_Q;
+
+    /**
+     * 创建对应策略的替换器
+     * @param capacity 缓冲池帧数
+     */
+    public Replacer create(int capacity) {
+        return switch (this) {
+            case LRU -> new LRUReplacer(capacity);
+            case CLOCK -> new ClockReplacer(capacity);
+            case LRU_K -> new LRUKReplacer(capacity, StorageConfig.LRU_K);
+            case TWO_Q -> new TwoQueueReplacer(capacity);
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package storage.buffer;
+
+import java.util.function.IntPredicate;
+
+/**
+ * 简化版 2Q：只被访问过一次的帧进入 A1 队列，再次被访问时晋升到 Am 队列（LRU）。
+ * 淘汰优先从 A1 中选择，因此一次性的顺序扫描只会在 A1 中轮转，不会冲掉 Am 中反复访问的热点页。
+ * 替换器只知道帧号，不保留已淘汰页面的幽灵队列（A1out）。
+ */
+public class TwoQueueReplacer implements Replacer {
+    // A1 可占用的帧比例，超过后才允许从 Am 中淘汰
+    private static final double A1_RATIO = 0.25;
+
+    private final FrameList a1List;
+    private final FrameList amList;
+    private final int[] accessCount;
+    private final int a1Threshold;
+
+    public TwoQueueReplacer(int capacity) {
+        this.a1List = new FrameList(capacity);
+        this.amList = new FrameList(capacity);
+        this.accessCount = new int[capacity];
+        this.a1Threshold = Math.max(1, (int) (capacity * A1_RATIO));
+    }
+
+    @Override
+    public synchronized int victim(IntPredicate eligible) {
+        boolean preferA1 = a1List.size() >= a1Threshold || amList.isEmpty();
+        FrameList first = preferA1 ? a1List : amList;
+        FrameList second = preferA1 ? amList : a1List;
+        int frameId = first.first(eligible);
+        if (frameId != -1) {
+            first.remove(frameId);
+        } else {
+            frameId = second.first(eligible);
+            if (frameId == -1) {
+                return -1;
+            }
+            second.remove(frameId);
+        }
+        accessCount[frameId] = 0; // 帧将装入新页，清空访问历史
+        return frameId;
+    }
+
+    @Override
+    public synchronized void pin(int frameId) {
+        a1List.remove(frameId);
+        amList.remove(frameId);
+        if (accessCount[frameId] < 2) {
+            accessCount[frameId]++;
+        }
+    }
+
+    @Override
+    public synchronized void unpin(int frameId) {
+        if (a1List.contains(frameId) || amList.contains(frameId)) {
+            return;
+        }
+        if (accessCount[frameId] >= 2) {
+            amList.pushBack(frameId);
+        } else {
+            a1List.pushBack(frameId);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return a1List.size() + amList.size();
+    }
+}
@@ -10,10 +10,12 @@ import common.StorageConfig;
 
 public class Page {
     public static final int PAGE_SIZE = StorageConfig.PAGE_SIZE; // 页大小定义为4KB
-    private final ByteBuffer data; // 使用ByteBuffer可以方便地读写基本类型
+    private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
+    private final ByteBuffer data; // 页数据，缓冲池中是堆外帧的视图
     private int pageId;
     private int pinCount; // 页面被使用时，pinCount++; 页面使用完后，pinCount--
     private boolean isDirty;
+    private long dirtySince; // 页由干净变脏的时间 (System.nanoTime)，后台刷盘按它从旧到新写回
     private int startIndex;
     private List<Integer> startIndexList;
     private static ObjectMapper objectMapper = new ObjectMapper();
@@ -31,7 +33,18 @@ public class Page {
     }
 
     public Page() {
-        this.data = ByteBuffer.allocate(PAGE_SIZE);
+        this(ByteBuffer.allocate(PAGE_SIZE));
+    }
+
+    /**
+     * 以给定缓冲区作为页数据的视图，缓冲池用它把 Page 绑定到一个固定的帧上反复使用
+     * @param frame 恰好 PAGE_SIZE 字节的缓冲区
+     */
+    public Page(ByteBuffer frame) {
+        if (frame.capacity() != PAGE_SIZE) {
+            throw new IllegalArgumentException("Frame must be exactly " + PAGE_SIZE + " bytes");
+        }
+        this.data = frame;
         this.pageId = -1; // -1 表示无效或空闲
         this.pinCount = 0;
         this.isDirty = false;
@@ -54,26 +67,44 @@ public class Page {
     public void setPageId(int pageId) { this.pageId = pageId; }
     public int getPinCount() { return pinCount; }
     public boolean isDirty() { return isDirty; }
-    public void setDirty(boolean dirty) { isDirty = dirty; }
-    public byte[] getData() { return data.array(); }
+    public void setDirty(boolean dirty) {
+        if (dirty && !isDirty) {
+            dirtySince = System.nanoTime();
+        }
+        isDirty = dirty;
+    }
+    public long getDirtySince() { return dirtySince; }
+    /**
+     * 页数据的 ByteBuffer 视图，供 SlottedPage 等按绝对位置读写；缓冲池中的页是堆外内存，没有 byte[]
+     */
+    public ByteBuffer getBuffer() { return data; }
+
+    /**
+     * 帧装入新页时清零数据，并清空字符串写入位置
+     */
+    public void reset() {
+        data.put(0, ZERO_PAGE);
+        startIndex = 0;
+        startIndexList.clear();
+        startIndexList.add(0);
+    }
 
     // --- Helper methods to read/write content within the page ---
     public void writeString(int offset, String value) {
         byte[] stringBytes = value.getBytes(StandardCharsets.UTF_8);
-        data.position(offset);
-        data.putInt(stringBytes.length); // 先写入字符串长度
-        data.put(stringBytes);           // 再写入字符串内容
-        int nextStartIndex = data.position();
+        // 使用绝对位置读写，多个线程同时读同一页时不会互相改动 position
+        data.putInt(offset, stringBytes.length);      // 先写入字符串长度
+        data.put(offset + 4, stringBytes);            // 再写入字符串内容
+        int nextStartIndex = offset + 4 + stringBytes.length;
         startIndexList.add(nextStartIndex);
         setStartIndex(nextStartIndex);
         this.isDirty = true;
     }
 
     public String readString(int offset) {
-        data.position(offset);
-        int length = data.getInt();
+        int length = data.getInt(offset);
         byte[] stringBytes = new byte[length];
-        data.get(stringBytes);
+        data.get(offset + 4, stringBytes);
         return new String(stringBytes, StandardCharsets.UTF_8);
     }
 }
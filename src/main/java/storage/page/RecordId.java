@@ -0,0 +1,13 @@
+package storage.page;
+
+/**
+ * 记录标识符 (RID)：定位堆文件中的一条记录
+ * @param pageId 记录所在页的页号
+ * @param slot   记录在页内槽目录中的槽号
+ */
+public record RecordId(int pageId, int slot) {
+    @Override
+    public String toString() {
+        return "(" + pageId + ", " + slot + ")";
+    }
+}
@@ -0,0 +1,212 @@
+package storage.page;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 槽页（Slotted Page）视图，直接在 Page 的字节数据上解释页格式，本身不持有数据。
+ * <pre>
+ * | slotCount(4) | freeSpacePointer(4) | slot[0] | slot[1] | ... |  空闲空间  | ... | tuple[1] | tuple[0] |
+ * </pre>
+ * 页头之后是槽目录，每个槽记录元组的 (offset, length)，length = -1 表示该槽已删除；
+ * 元组数据从页尾向前增长，freeSpacePointer 指向最后一个元组的起始位置。
+ */
+public class SlottedPage {
+    public static final int HEADER_SIZE = 8;
+    public static final int SLOT_SIZE = 8;
+    /** 单个元组的最大长度（整页只放一个元组时） */
+    public static final int MAX_TUPLE_SIZE = Page.PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
+
+    private static final int SLOT_COUNT_OFFSET = 0;
+    private static final int FREE_POINTER_OFFSET = 4;
+    private static final int EMPTY_SLOT = -1;
+
+    private final Page page;
+    private final ByteBuffer data;
+
+    public SlottedPage(Page page) {
+        this.page = page;
+        this.data = page.getBuffer();
+        // 全零的新页 freeSpacePointer 为 0，此时初始化页头
+        if (getFreeSpacePointer() == 0) {
+            initHeader();
+        }
+    }
+
+    /**
+     * 将页初始化为空槽页
+     */
+    public void init() {
+        initHeader();
+    }
+
+    private void initHeader() {
+        data.putInt(SLOT_COUNT_OFFSET, 0);
+        data.putInt(FREE_POINTER_OFFSET, Page.PAGE_SIZE);
+        page.setDirty(true);
+    }
+
+    public int getSlotCount() {
+        return data.getInt(SLOT_COUNT_OFFSET);
+    }
+
+    private int getFreeSpacePointer() {
+        return data.getInt(FREE_POINTER_OFFSET);
+    }
+
+    private int slotOffset(int slot) {
+        return data.getInt(HEADER_SIZE + slot * SLOT_SIZE);
+    }
+
+    private int slotLength(int slot) {
+        return data.getInt(HEADER_SIZE + slot * SLOT_SIZE + 4);
+    }
+
+    private void setSlot(int slot, int offset, int length) {
+        data.putInt(HEADER_SIZE + slot * SLOT_SIZE, offset);
+        data.putInt(HEADER_SIZE + slot * SLOT_SIZE + 4, length);
+    }
+
+    /**
+     * 槽目录末尾与元组区之间的连续空闲字节数
+     */
+    public int getFreeSpace() {
+        return getFreeSpacePointer() - HEADER_SIZE - getSlotCount() * SLOT_SIZE;
+    }
+
+    /**
+     * 连续空闲空间加上已删除元组留下的空洞，即整理后可用的字节数
+     */
+    private int getReclaimableSpace() {
+        int used = 0;
+        int slotCount = getSlotCount();
+        for (int i = 0; i < slotCount; i++) {
+            int length = slotLength(i);
+            if (length != EMPTY_SLOT) {
+                used += length;
+            }
+        }
+        return Page.PAGE_SIZE - HEADER_SIZE - slotCount * SLOT_SIZE - used;
+    }
+
+    private int findEmptySlot() {
+        int slotCount = getSlotCount();
+        for (int i = 0; i < slotCount; i++) {
+            if (slotLength(i) == EMPTY_SLOT) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 插入元组
+     * @param tuple 元组字节
+     * @return 分配的槽号，页内空间不足时返回 -1
+     */
+    public int insert(byte[] tuple) {
+        int slot = findEmptySlot();
+        int needed = tuple.length + (slot == -1 ? SLOT_SIZE : 0);
+        if (getFreeSpace() < needed) {
+            if (getReclaimableSpace() < needed) {
+                return -1;
+            }
+            compact();
+        }
+        if (slot == -1) {
+            slot = getSlotCount();
+            data.putInt(SLOT_COUNT_OFFSET, slot + 1);
+        }
+        int offset = getFreeSpacePointer() - tuple.length;
+        data.put(offset, tuple);
+        data.putInt(FREE_POINTER_OFFSET, offset);
+        setSlot(slot, offset, tuple.length);
+        page.setDirty(true);
+        return slot;
+    }
+
+    /**
+     * 读取元组
+     * @param slot 槽号
+     * @return 元组字节的拷贝，槽不存在或已删除时返回 null
+     */
+    public byte[] get(int slot) {
+        if (slot < 0 || slot >= getSlotCount()) {
+            return null;
+        }
+        int length = slotLength(slot);
+        if (length == EMPTY_SLOT) {
+            return null;
+        }
+        byte[] tuple = new byte[length];
+        data.get(slotOffset(slot), tuple);
+        return tuple;
+    }
+
+    /**
+     * 删除元组，只标记槽为空，空间在下次整理时回收
+     * @return 槽存在且未被删除时返回 true
+     */
+    public boolean delete(int slot) {
+        if (slot < 0 || slot >= getSlotCount() || slotLength(slot) == EMPTY_SLOT) {
+            return false;
+        }
+        setSlot(slot, 0, EMPTY_SLOT);
+        page.setDirty(true);
+        return true;
+    }
+
+    /**
+     * 原地更新元组，槽号保持不变
+     * @return 页内空间不足以容纳新元组时返回 false，原元组保持不变
+     */
+    public boolean update(int slot, byte[] tuple) {
+        if (slot < 0 || slot >= getSlotCount()) {
+            return false;
+        }
+        int length = slotLength(slot);
+        if (length == EMPTY_SLOT) {
+            return false;
+        }
+        if (tuple.length <= length) {
+            // 新元组不比旧元组长，直接覆盖
+            data.put(slotOffset(slot), tuple);
+            setSlot(slot, slotOffset(slot), tuple.length);
+            page.setDirty(true);
+            return true;
+        }
+        if (getReclaimableSpace() + length < tuple.length) {
+            return false;
+        }
+        setSlot(slot, 0, EMPTY_SLOT);
+        if (getFreeSpace() < tuple.length) {
+            compact();
+        }
+        int offset = getFreeSpacePointer() - tuple.length;
+        data.put(offset, tuple);
+        data.putInt(FREE_POINTER_OFFSET, offset);
+        setSlot(slot, offset, tuple.length);
+        page.setDirty(true);
+        return true;
+    }
+
+    /**
+     * 整理页面：把存活元组紧密排列到页尾，回收删除留下的空洞，槽号不变
+     */
+    public void compact() {
+        int slotCount = getSlotCount();
+        byte[] scratch = new byte[Page.PAGE_SIZE];
+        int pointer = Page.PAGE_SIZE;
+        for (int i = 0; i < slotCount; i++) {
+            int length = slotLength(i);
+            if (length == EMPTY_SLOT) {
+                continue;
+            }
+            pointer -= length;
+            data.get(slotOffset(i), scratch, pointer, length);
+            setSlot(i, pointer, length);
+        }
+        data.put(pointer, scratch, pointer, Page.PAGE_SIZE - pointer);
+        data.putInt(FREE_POINTER_OFFSET, pointer);
+        page.setDirty(true);
+    }
+}
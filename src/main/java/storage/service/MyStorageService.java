@@ -2,6 +2,7 @@ package storage.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import common.StorageConfig;
+import executor.common.CloseableIterator;
 import executor.common.Record;
 import executor.common.Table;
 import executor.common.TableSchema;
@@ -11,68 +12,79 @@ import org.slf4j.LoggerFactory;
 import storage.buffer.BufferPoolManager;
 import storage.buffer.DiskManager;
 import storage.page.Page;
+import storage.page.RecordId;
+import storage.table.TableHeap;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MyStorageService {
-    private DiskManager dataFileManager;
-    private DiskManager indexFileManager;
-    private DiskManager schemaFileManager;
-    private DiskManager sysCatalogManager;
-
-    private BufferPoolManager dataBufferPoolManager;
-    private BufferPoolManager indexBufferPoolManager;
-    private BufferPoolManager schemaBufferPoolManager;
-    private BufferPoolManager sysCatalogBufferPoolManager;
-
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     private HashMap<String, TableSchema> schemas;
+    // 已打开的数据文件，在多次 openTable/saveTable 之间复用同一个缓冲池，由 close 统一释放
+    private final Map<String, TableFile> tableFiles = new HashMap<>();
 
     private static final Logger logger = LoggerFactory.getLogger(MyStorageService.class);
 
+    /**
+     * 一张表的数据文件、缓冲池和堆文件
+     */
+    private static final class TableFile {
+        final DiskManager diskManager;
+        final BufferPoolManager bufferPoolManager;
+        final TableHeap heap;
+        List<RecordId> recordIds; // 上次保存（或打开后首次保存前读出）的各条记录的位置，按保存顺序
+
+        TableFile(DiskManager diskManager, BufferPoolManager bufferPoolManager) {
+            this.diskManager = diskManager;
+            this.bufferPoolManager = bufferPoolManager;
+            this.heap = new TableHeap(bufferPoolManager);
+        }
+
+        void close() throws IOException {
+            try {
+                bufferPoolManager.close();
+            } finally {
+                diskManager.close();
+            }
+        }
+    }
+
     public MyStorageService() {
         this.schemas = new HashMap<>();
     }
 
-    public Table openTable(String tableName) {
-        try{
-            dataFileManager = new DiskManager("/data/"+tableName + ".db");
-            dataBufferPoolManager = new BufferPoolManager(100, dataFileManager);
-            TableSchema schema = schemas.get(tableName);
-            RandomAccessFile raf = new RandomAccessFile(StorageConfig.prePathData + tableName + ".db", "r");
-            if (schema != null) {
-                Table table = new InMemoryTable(schemas.get(tableName));
-                int pageCount = dataFileManager.getPageCount();
-
-                for (int i = 0; i < pageCount; i++) {
-                    Page page = dataBufferPoolManager.fetchPage(i);
-                    String json = page.readString(page.getStartIndex());
-                    page.unpin();
-                    logger.info("record: {}", json);
-                    Record record = objectMapper.readValue(json, Record.class);
-                    table.insert(record);
+    public synchronized Table openTable(String tableName) {
+        TableSchema schema = schemas.get(tableName);
+        if (schema == null) {
+            return null;
+        }
+        try {
+            TableFile file = tableFile(tableName);
+            Table table = new InMemoryTable(schema);
+            // 堆文件的每一页存放多条记录，按页顺序扫描
+            try (CloseableIterator<byte[]> tuples = file.heap.scan()) {
+                while (tuples.hasNext()) {
+                    table.insert(objectMapper.readValue(tuples.next(), Record.class));
                 }
-                return table;
             }
-            return null;
+            return table;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
     public void createTable(TableSchema schema){
-        try{
-            schemas.put(schema.tableName(), schema);
-            schemaFileManager = new DiskManager("/schema/"+schema.tableName()+".schema");
-            schemaBufferPoolManager = new BufferPoolManager(10, schemaFileManager);
+        schemas.put(schema.tableName(), schema);
+        try (DiskManager schemaFileManager = new DiskManager("/schema/" + schema.tableName() + ".schema");
+             BufferPoolManager schemaBufferPoolManager = new BufferPoolManager(10, schemaFileManager)) {
             Page page = schemaBufferPoolManager.newPage();
             page.writeString(page.getStartIndex(), objectMapper.writeValueAsString(schema));
             page.unpin();
-            schemaBufferPoolManager.flushAllPages();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -81,38 +93,42 @@ public class MyStorageService {
     public void dropTable(String tableName){
 
     }
-    public void saveTable(String tableName, Table table) {
+
+    /**
+     * 保存整张表：第 i 条记录对应上次保存的第 i 条记录的位置，编码后的字节没有变化时不写，
+     * 变化时覆盖（放得下时原地覆盖）；多出的记录追加，剩余的旧元组删除。
+     * 不截断、不重建文件，只有真正改动过的页变脏并被写回
+     */
+    public synchronized void saveTable(String tableName, Table table) {
+        TableFile file = null;
         try {
-            RandomAccessFile raf = new RandomAccessFile(StorageConfig.prePathData + tableName + ".db", "rw");
-            raf.setLength(0);
-            // 初始化DiskManager和BufferPoolManager
-            dataFileManager = new DiskManager("/data/" + tableName + ".db");
-            dataBufferPoolManager = new BufferPoolManager(5, dataFileManager);
-
-            // 获取所有记录
-            List<Record> records = table.getAllRecords();
-
-            // 清空现有数据文件（可选）
-            // 这里假设每次保存都会覆盖旧数据
-            // 如果需要保留旧数据，可以添加逻辑来处理更新和插入
-
-            // 遍历记录，逐个写入
-            for (Record record : records) {
-                // 序列化记录为JSON字符串
-                String json = objectMapper.writeValueAsString(record);
-                logger.info("json: {}", json);
-
-                // 分配新页
-                Page page = dataBufferPoolManager.newPage();
-
-                // 写入数据到页
-                page.writeString(page.getStartIndex(), json);
-                page.unpin();
+            file = tableFile(tableName);
+            if (file.recordIds == null) {
+                file.recordIds = file.heap.recordIds();
             }
-
-            // 刷新所有页到磁盘
-            dataBufferPoolManager.flushAllPages();
+            List<RecordId> previous = file.recordIds;
+            List<RecordId> saved = new ArrayList<>(table.size());
+            // 每条记录序列化为JSON后作为一个元组写入堆文件，多条记录共享一页
+            for (Record record : table.getAllRecords()) {
+                byte[] tuple = objectMapper.writeValueAsBytes(record);
+                RecordId recordId = null;
+                if (saved.size() < previous.size()) {
+                    RecordId old = previous.get(saved.size());
+                    recordId = Arrays.equals(file.heap.get(old), tuple) ? old : file.heap.update(old, tuple);
+                }
+                saved.add(recordId != null ? recordId : file.heap.insert(tuple));
+            }
+            for (int i = saved.size(); i < previous.size(); i++) {
+                file.heap.delete(previous.get(i));
+            }
+            file.recordIds = saved;
+            // 刷新所有脏页到磁盘
+            file.bufferPoolManager.checkpoint();
         } catch (IOException e) {
+            // 保存中途失败时各记录的位置不再可信，下次保存前重新读出；打开数据文件失败时没有需要重置的状态
+            if (file != null) {
+                file.recordIds = null;
+            }
             throw new RuntimeException(e);
         }
     }
@@ -123,4 +139,41 @@ public class MyStorageService {
     public void dropIndex(String tableName, String indexName){
 
     }
+
+    /**
+     * 关闭所有已打开的数据文件：写回脏页并停止各缓冲池的后台线程
+     */
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (TableFile file : tableFiles.values()) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        tableFiles.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private TableFile tableFile(String tableName) throws IOException {
+        TableFile file = tableFiles.get(tableName);
+        if (file == null) {
+            DiskManager diskManager = new DiskManager("/data/" + tableName + StorageConfig.DB_SUFFIX);
+            try {
+                file = new TableFile(diskManager, new BufferPoolManager(StorageConfig.BUFFER_POOL_SIZE, diskManager).start());
+            } catch (RuntimeException | Error e) {
+                diskManager.close();
+                throw e;
+            }
+            tableFiles.put(tableName, file);
+        }
+        return file;
+    }
 }
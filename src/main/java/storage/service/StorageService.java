@@ -39,7 +39,7 @@ public class StorageService {
                 this.tableIndex = new BPTree<>();
             }
             diskManager = new DiskManager(dbFileName);
-            bufferPoolManager = new BufferPoolManager(StorageConfig.BUFFER_POOL_SIZE, diskManager);
+            bufferPoolManager = new BufferPoolManager(StorageConfig.BUFFER_POOL_SIZE, diskManager).start();
         } catch (IOException e) {
             logger.error("init storage failed", e.getMessage());
         }
@@ -48,7 +48,7 @@ public class StorageService {
     public StorageService(String fileName, FileType fileType) {
         try {
             diskManager = new DiskManager(fileName);
-            bufferPoolManager = new BufferPoolManager(StorageConfig.BUFFER_POOL_SIZE, diskManager);
+            bufferPoolManager = new BufferPoolManager(StorageConfig.BUFFER_POOL_SIZE, diskManager).start();
         } catch (IOException e) {
             logger.error(fileName + "not found", e);
         }
@@ -86,7 +86,7 @@ public class StorageService {
             return false;
         }
         logger.info("write data to page: {}", pageId);
-        System.arraycopy(data, 0, page.getData(), 0, Page.PAGE_SIZE);
+        page.getBuffer().put(0, data, 0, Page.PAGE_SIZE);
         page.setDirty(true);
         bufferPoolManager.unpinPage(pageId, true);
         return true;
@@ -142,6 +142,7 @@ public class StorageService {
     }
 
     public void close() throws IOException {
+        bufferPoolManager.close();
         diskManager.close();
     }
 
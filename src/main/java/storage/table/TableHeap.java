@@ -0,0 +1,207 @@
+package storage.table;
+
+import common.StorageConfig;
+import executor.common.CloseableIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import storage.buffer.BufferPoolManager;
+import storage.page.Page;
+import storage.page.RecordId;
+import storage.page.SlottedPage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 堆文件：一个数据文件中的所有页都是槽页，每页存放多条元组，通过 RecordId 定位。
+ * 页的读写全部经过 BufferPoolManager。读写方法都在本对象的监视器内执行，
+ * 读者不会看到写者只改了一半的槽目录；扫描逐页进入监视器，两页之间的修改可能被看到
+ */
+public class TableHeap {
+    private static final Logger logger = LoggerFactory.getLogger(TableHeap.class);
+
+    private final BufferPoolManager bufferPoolManager;
+    private int lastPageId; // 最近一次插入所在页，新元组优先放在这里
+
+    public TableHeap(BufferPoolManager bufferPoolManager) {
+        this.bufferPoolManager = bufferPoolManager;
+        this.lastPageId = bufferPoolManager.getPageCount() - 1;
+    }
+
+    /**
+     * 插入元组，优先写入最后一页，放不下时分配新页
+     * @param tuple 元组字节
+     * @return 新元组的 RecordId
+     */
+    public synchronized RecordId insert(byte[] tuple) throws IOException {
+        if (tuple.length > SlottedPage.MAX_TUPLE_SIZE) {
+            throw new IllegalArgumentException("Tuple of " + tuple.length + " bytes exceeds page capacity "
+                    + SlottedPage.MAX_TUPLE_SIZE);
+        }
+        if (lastPageId >= 0) {
+            Page page = fetch(lastPageId);
+            int slot = new SlottedPage(page).insert(tuple);
+            bufferPoolManager.unpinPage(lastPageId, slot != -1);
+            if (slot != -1) {
+                return new RecordId(lastPageId, slot);
+            }
+        }
+
+        Page page = bufferPoolManager.newPage();
+        if (page == null) {
+            throw new IOException("Buffer pool is full, cannot allocate a new heap page");
+        }
+        SlottedPage slottedPage = new SlottedPage(page);
+        int slot = slottedPage.insert(tuple);
+        lastPageId = page.getPageId();
+        bufferPoolManager.unpinPage(lastPageId, true);
+        return new RecordId(lastPageId, slot);
+    }
+
+    /**
+     * 读取元组
+     * @return 元组字节，记录不存在时返回 null
+     */
+    public synchronized byte[] get(RecordId rid) throws IOException {
+        Page page = fetch(rid.pageId());
+        try {
+            return new SlottedPage(page).get(rid.slot());
+        } finally {
+            bufferPoolManager.unpinPage(rid.pageId(), false);
+        }
+    }
+
+    /**
+     * 原地删除元组
+     * @return 记录存在并被删除时返回 true
+     */
+    public synchronized boolean delete(RecordId rid) throws IOException {
+        Page page = fetch(rid.pageId());
+        boolean deleted = new SlottedPage(page).delete(rid.slot());
+        bufferPoolManager.unpinPage(rid.pageId(), deleted);
+        return deleted;
+    }
+
+    /**
+     * 更新元组；原页放得下时原地更新并保持 RecordId 不变，否则先把新元组插入到其它页，成功后再删除原元组。
+     * 插入失败（元组过大、缓冲池已满）时抛出异常，原元组保持不变
+     * @return 更新后元组的 RecordId，原记录不存在时返回 null
+     */
+    public synchronized RecordId update(RecordId rid, byte[] tuple) throws IOException {
+        Page page = fetch(rid.pageId());
+        boolean dirty = false;
+        try {
+            SlottedPage slottedPage = new SlottedPage(page);
+            if (slottedPage.get(rid.slot()) == null) {
+                return null;
+            }
+            if (slottedPage.update(rid.slot(), tuple)) {
+                dirty = true;
+                return rid;
+            }
+            // 原页在插入期间保持固定，插入成功后删除原元组不会再失败
+            RecordId moved = insert(tuple);
+            slottedPage.delete(rid.slot());
+            dirty = true;
+            return moved;
+        } finally {
+            bufferPoolManager.unpinPage(rid.pageId(), dirty);
+        }
+    }
+
+    /**
+     * @return 所有存活元组的 RecordId，顺序与 scan 相同
+     */
+    public synchronized List<RecordId> recordIds() throws IOException {
+        int pageCount = bufferPoolManager.getPageCount();
+        List<RecordId> recordIds = new ArrayList<>();
+        for (int pageId = 0; pageId < pageCount; pageId++) {
+            Page page = fetch(pageId);
+            try {
+                SlottedPage slottedPage = new SlottedPage(page);
+                int slotCount = slottedPage.getSlotCount();
+                for (int slot = 0; slot < slotCount; slot++) {
+                    if (slottedPage.get(slot) != null) {
+                        recordIds.add(new RecordId(pageId, slot));
+                    }
+                }
+            } finally {
+                bufferPoolManager.unpinPage(pageId, false);
+            }
+        }
+        return recordIds;
+    }
+
+    /**
+     * 顺序扫描所有存活元组，每次取出一整页的元组后立即释放该页；
+     * 扫描开始时给缓冲池一个预读提示，之后由缓冲池的顺序访问检测继续预读
+     */
+    public CloseableIterator<byte[]> scan() {
+        bufferPoolManager.prefetch(0, StorageConfig.READ_AHEAD_PAGES);
+        return new CloseableIterator<>() {
+            private final int pageCount = bufferPoolManager.getPageCount();
+            private int nextPageId = 0;
+            private List<byte[]> current = List.of();
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (position >= current.size()) {
+                    if (nextPageId >= pageCount) {
+                        return false;
+                    }
+                    current = readPage(nextPageId++);
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.get(position++);
+            }
+
+            @Override
+            public void close() {
+                current = List.of();
+                nextPageId = pageCount;
+            }
+        };
+    }
+
+    private synchronized List<byte[]> readPage(int pageId) {
+        try {
+            Page page = fetch(pageId);
+            try {
+                SlottedPage slottedPage = new SlottedPage(page);
+                int slotCount = slottedPage.getSlotCount();
+                List<byte[]> tuples = new ArrayList<>(slotCount);
+                for (int i = 0; i < slotCount; i++) {
+                    byte[] tuple = slottedPage.get(i);
+                    if (tuple != null) {
+                        tuples.add(tuple);
+                    }
+                }
+                return tuples;
+            } finally {
+                bufferPoolManager.unpinPage(pageId, false);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read heap page {}", pageId, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Page fetch(int pageId) throws IOException {
+        Page page = bufferPoolManager.fetchPage(pageId);
+        if (page == null) {
+            throw new IOException("Buffer pool is full, cannot fetch heap page " + pageId);
+        }
+        return page;
+    }
+}
@@ -11,7 +11,7 @@ public class CacheTestRunner {
 
     public static void main(String[] args) throws InterruptedException {
         System.out.println("--- 缓存功能测试启动 ---");
-        StoreManager storeManager = new StoreManager();
+        StoreManager storeManager = StoreManager.open();
 
         // 模拟创建一些表的元信息 (Schema)
         createTestSchemas(storeManager);
@@ -24,13 +24,13 @@ public class CacheTestRunner {
         Thread.sleep(100);
         storeManager.openTable("orders");
         System.out.println("--- 阶段 1 完成 ---");
-        storeManager.printCacheStats(); // 打印第一次统计
+        System.out.println(storeManager.getCacheStats().format()); // 打印第一次统计
 
         // --- 阶段 2: 访问已在缓存中的数据 (预期：1次命中) ---
         System.out.println("\n--- 阶段 2: 再次访问 users 表 ---");
         storeManager.openTable("users"); // users 变为最近最常使用
         System.out.println("--- 阶段 2 完成 ---");
-        storeManager.printCacheStats(); // 打印第二次统计
+        System.out.println(storeManager.getCacheStats().format()); // 打印第二次统计
 
         // --- 阶段 3: 触发缓存驱逐 (预期：1次未命中 + 1次替换日志) ---
         // 当前缓存顺序 (从最近到最旧): [users, orders, products]
@@ -38,14 +38,14 @@ public class CacheTestRunner {
         System.out.println("\n--- 阶段 3: 访问新表 invoices，触发缓存驱逐 ---");
         storeManager.openTable("invoices");
         System.out.println("--- 阶段 3 完成 ---");
-        storeManager.printCacheStats();
+        System.out.println(storeManager.getCacheStats().format());
 
         // --- 阶段 4: 验证驱逐是否成功 (预期：1次未命中) ---
         // 再次访问 "products"，因为它已被驱逐，所以应该是缓存未命中
         System.out.println("\n--- 阶段 4: 再次访问已被驱逐的 products 表 ---");
         storeManager.openTable("products");
         System.out.println("--- 阶段 4 完成 ---");
-        storeManager.printCacheStats();
+        System.out.println(storeManager.getCacheStats().format());
 
         System.out.println("\n--- 测试结束，关闭 StoreManager ---");
         storeManager.close();
@@ -0,0 +1,169 @@
+package store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 表文件并行读写专用的有界执行器，取代 parallelStream：阻塞的文件 I/O 不再占用公共 ForkJoinPool，
+ * 并发数（StorageConfig.IO_CONCURRENCY）也与 CPU 核数分开配置。
+ * 虚拟线程模式下每个任务一个虚拟线程，由信号量限制同时进行的任务数；否则使用固定大小的平台线程池。
+ * 每批任务记录每张表的耗时，结束后输出一行汇总，失败的表集中报告而不是中断整批。
+ */
+final class IoExecutor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(IoExecutor.class);
+    private static final int MAX_REPORTED_FAILURES = 10;
+
+    /**
+     * 对一张表的读写
+     */
+    @FunctionalInterface
+    interface TableTask {
+        /**
+         * @return 实际做了读写时返回 true，跳过时返回 false
+         */
+        boolean run(String tableName) throws Exception;
+    }
+
+    /**
+     * 一批任务的结果
+     * @param operation    操作名，用于日志
+     * @param completed    实际完成读写的表数
+     * @param skipped      跳过的表数
+     * @param failures     失败的表 -> 异常
+     * @param tableNanos   完成的表 -> 耗时（纳秒）
+     * @param elapsedNanos 整批耗时（纳秒）
+     */
+    record Report(String operation, int completed, int skipped, Map<String, Throwable> failures,
+                  Map<String, Long> tableNanos, long elapsedNanos) {
+        boolean hasFailures() {
+            return !failures.isEmpty();
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int concurrency;
+    private final boolean virtualThreads;
+
+    IoExecutor(int concurrency, boolean virtualThreads) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("I/O concurrency must be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        this.virtualThreads = virtualThreads;
+        this.permits = new Semaphore(concurrency);
+        if (virtualThreads) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("store-io-", 0).factory());
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "store-io-" + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 以最多 concurrency 个并发任务处理每张表，全部结束后返回；单张表失败不影响其它表
+     */
+    Report runAll(String operation, Collection<String> tableNames, TableTask task) {
+        long start = System.nanoTime();
+        Map<String, Long> tableNanos = new ConcurrentHashMap<>();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        AtomicInteger skipped = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(tableNames.size());
+        try {
+            for (String tableName : tableNames) {
+                // 在提交方获取许可：虚拟线程模式下同时存在的任务线程也不超过并发数
+                permits.acquire();
+                try {
+                    futures.add(executor.submit(() -> {
+                        long tableStart = System.nanoTime();
+                        try {
+                            if (task.run(tableName)) {
+                                tableNanos.put(tableName, System.nanoTime() - tableStart);
+                            } else {
+                                skipped.incrementAndGet();
+                            }
+                        } catch (Exception | Error e) {
+                            failures.put(tableName, e);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    permits.release();
+                    failures.put(tableName, e); // 执行器已关闭
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException(operation + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(operation + " failed", e.getCause()); // 任务内部已捕获所有异常，不会发生
+        }
+        Report report = new Report(operation, tableNanos.size(), skipped.get(), failures, tableNanos,
+                System.nanoTime() - start);
+        log(report);
+        return report;
+    }
+
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void log(Report report) {
+        if (logger.isDebugEnabled()) {
+            report.tableNanos().forEach((tableName, nanos) ->
+                    logger.debug("{} '{}' took {} ms.", report.operation(), tableName, nanos / 1_000_000));
+        }
+        int total = report.completed() + report.skipped() + report.failures().size();
+        if (total == 0) {
+            return;
+        }
+        String slowest = report.tableNanos().entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(entry -> String.format(", slowest '%s' %d ms", entry.getKey(), entry.getValue() / 1_000_000))
+                .orElse("");
+        logger.info("{}: {} table(s) in {} ms ({} {} thread(s), {} skipped, {} failed{}).", report.operation(),
+                report.completed(), report.elapsedNanos() / 1_000_000, concurrency,
+                virtualThreads ? "virtual" : "platform", report.skipped(), report.failures().size(), slowest);
+        if (report.hasFailures()) {
+            Map<String, Throwable> shown = report.failures().entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .limit(MAX_REPORTED_FAILURES)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+            // 只附上第一个失败的堆栈，其余的表在汇总中列出异常信息
+            logger.error("{} failed for {} table(s): {}{}", report.operation(), report.failures().size(),
+                    shown.entrySet().stream()
+                            .map(entry -> entry.getKey() + " (" + entry.getValue() + ")")
+                            .collect(Collectors.joining(", ")),
+                    report.failures().size() > shown.size() ? ", ..." : "",
+                    shown.values().iterator().next());
+        }
+    }
+}
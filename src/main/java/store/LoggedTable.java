@@ -0,0 +1,158 @@
+package store;
+
+import executor.common.CloseableIterator;
+import executor.common.Index;
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.Table;
+import executor.common.TableSchema;
+import store.wal.LogRecord;
+import store.wal.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 记录日志的表：修改前先把表登记到 StoreManager 的当前事务，修改作用于内存中的表后
+ * 把重做记录和撤销动作加入事务；不在事务中的修改在语句结束时自动提交。读操作直接委托。
+ */
+class LoggedTable implements Table {
+    private final String tableName;
+    private final Table delegate;
+    private final StoreManager storeManager;
+
+    LoggedTable(String tableName, Table delegate, StoreManager storeManager) {
+        this.tableName = tableName;
+        this.delegate = delegate;
+        this.storeManager = storeManager;
+    }
+
+    Table getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void insert(Record record) {
+        Transaction transaction = storeManager.enlist(tableName);
+        try {
+            delegate.insert(record);
+            transaction.add(LogRecord.insert(tableName, record.fields()),
+                    () -> delegate.deleteRecord(record));
+        } finally {
+            storeManager.endStatement(transaction);
+        }
+    }
+
+    /**
+     * 整批作为一条语句：每条记录照常写重做日志，自动提交时一次提交
+     */
+    @Override
+    public void bulkInsert(Iterator<Record> records) {
+        Transaction transaction = storeManager.enlist(tableName);
+        try {
+            while (records.hasNext()) {
+                Record record = records.next();
+                delegate.insert(record);
+                transaction.add(LogRecord.insert(tableName, record.fields()),
+                        () -> delegate.deleteRecord(record));
+            }
+        } finally {
+            storeManager.endStatement(transaction);
+        }
+    }
+
+    @Override
+    public void update(Record record, Record newRecord) {
+        Transaction transaction = storeManager.enlist(tableName);
+        try {
+            delegate.update(record, newRecord);
+            transaction.add(LogRecord.update(tableName, record.fields(), newRecord.fields()),
+                    () -> delegate.update(newRecord, record));
+        } finally {
+            storeManager.endStatement(transaction);
+        }
+    }
+
+    @Override
+    public void delete(Predicate<Record> condition) {
+        Transaction transaction = storeManager.enlist(tableName);
+        try {
+            List<Record> deleted = new ArrayList<>();
+            delegate.delete(record -> {
+                if (condition.test(record)) {
+                    deleted.add(record);
+                    return true;
+                }
+                return false;
+            });
+            for (Record record : deleted) {
+                transaction.add(LogRecord.delete(tableName, record.fields()), () -> delegate.insert(record));
+            }
+        } finally {
+            storeManager.endStatement(transaction);
+        }
+    }
+
+    @Override
+    public CloseableIterator<Record> scan() {
+        return delegate.scan();
+    }
+
+    @Override
+    public CloseableIterator<Record> scan(Collection<String> columns) {
+        return delegate.scan(columns);
+    }
+
+    @Override
+    public List<Index> getIndexes() {
+        return delegate.getIndexes();
+    }
+
+    @Override
+    public Index getPrimaryKeyIndex() {
+        return delegate.getPrimaryKeyIndex();
+    }
+
+    @Override
+    public Index getIndex(String indexName) {
+        return delegate.getIndex(indexName);
+    }
+
+    @Override
+    public void addIndex(Index index) {
+        delegate.addIndex(index);
+    }
+
+    @Override
+    public TableSchema getSchema() {
+        return delegate.getSchema();
+    }
+
+    @Override
+    public RowLayout getRowLayout() {
+        return delegate.getRowLayout();
+    }
+
+    @Override
+    public Record getRecord(String key) {
+        return delegate.getRecord(key);
+    }
+
+    @Override
+    public List<Record> getAllRecords() {
+        return delegate.getAllRecords();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+}
@@ -2,12 +2,23 @@ package store;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import executor.common.Record;
+import executor.common.TableSchema;
+
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 public class Persist {
 
@@ -23,26 +34,191 @@ public class Persist {
         return mapper;
     }
     /**
-     * 将对象序列化为JSON并写入文件（已添加缓冲）
+     * 将对象序列化为JSON并写入文件（已添加缓冲）。先写到同目录的临时文件并 fsync，再原子地重命名为目标文件，
+     * 写到一半崩溃时原文件保持不变
      * @param filePath 文件路径
      * @param obj      要序列化的对象
      * @param <T>      对象类型
      * @throws IOException IO异常
      */
     public <T> void writeObjectToJsonStream(String filePath, T obj) throws IOException {
+        writeAtomically(filePath, bufferedStream -> {
+            // 不让 JsonGenerator 关闭底层流，由 writeAtomically 负责 fsync 和关闭
+            try (JsonGenerator generator = jsonFactory.createGenerator(bufferedStream, com.fasterxml.jackson.core.JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                mapper.writeValue(generator, obj);
+            }
+        });
+        logger.info("已成功序列化对象到: {}", filePath);
+    }
+
+    /**
+     * 以二进制行格式写出表快照（原子替换），格式见 RowCodec
+     * @param schema 决定列顺序和列编码
+     */
+    public void writeTableSnapshot(String filePath, TableSchema schema, TableSnapshot snapshot) throws IOException {
+        writeAtomically(filePath, bufferedStream -> RowCodec.write(bufferedStream, schema, snapshot));
+    }
+
+    /**
+     * 打开表数据文件逐行读取，支持二进制格式和旧的 JSON 格式（带 LSN 的对象或只有记录数组）
+     * @return 文件不存在或为空时返回 null
+     */
+    public TableSnapshotReader openTableSnapshot(String filePath) throws IOException {
+        File file = new File(filePath);
+        if (!file.exists() || file.length() == 0) {
+            return null;
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            in.mark(4);
+            byte[] head = in.readNBytes(4);
+            in.reset();
+            if (RowCodec.isBinary(head)) {
+                return RowCodec.open(in);
+            }
+            return new JsonSnapshotReader(jsonFactory.createParser(in));
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读出整个表快照
+     * @return 文件不存在或为空时返回 null
+     */
+    public TableSnapshot readTableSnapshot(String filePath) throws IOException {
+        try (TableSnapshotReader reader = openTableSnapshot(filePath)) {
+            if (reader == null) {
+                return null;
+            }
+            List<Record> records = new ArrayList<>();
+            reader.forEachRemaining(records::add);
+            return new TableSnapshot(reader.checkpointLsn(), records);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 用 Jackson 流式解析器逐个读出 JSON 格式表文件中的记录
+     */
+    private final class JsonSnapshotReader implements TableSnapshotReader {
+        private final JsonParser parser;
+        private long checkpointLsn;
+        private boolean inRecords;
+        private Record next;
+        private boolean done;
+
+        JsonSnapshotReader(JsonParser parser) throws IOException {
+            this.parser = parser;
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                inRecords = true; // 最早的格式：只有记录数组
+            } else if (token != JsonToken.START_OBJECT) {
+                done = true;
+            }
+        }
+
+        @Override
+        public long checkpointLsn() {
+            return checkpointLsn;
+        }
+
+        @Override
+        public boolean isLegacyFormat() {
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Record record = next;
+            next = null;
+            return record;
+        }
+
+        private Record advance() throws IOException {
+            while (true) {
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    return null;
+                }
+                if (inRecords) {
+                    if (token == JsonToken.END_ARRAY) {
+                        inRecords = false;
+                        continue;
+                    }
+                    return mapper.readValue(parser, Record.class);
+                }
+                if (token == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("checkpointLsn".equals(field)) {
+                        checkpointLsn = parser.getLongValue();
+                    } else if ("records".equals(field) && value == JsonToken.START_ARRAY) {
+                        inRecords = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close JSON table file", e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 先写到同目录的临时文件并 fsync，再原子地重命名为目标文件，写到一半崩溃时原文件保持不变
+     */
+    private void writeAtomically(String filePath, StreamWriter writer) throws IOException {
         File file = new File(filePath);
         // 确保父目录存在
         if (file.getParentFile() != null) {
             file.getParentFile().mkdirs();
         }
 
-        // ⭐ 关键改动 1: 使用 try-with-resources 同时管理文件流和缓冲流
-        try (OutputStream fileStream = new FileOutputStream(file);
-             OutputStream bufferedStream = new BufferedOutputStream(fileStream); // 使用 BufferedOutputStream 包装
-             JsonGenerator generator = jsonFactory.createGenerator(bufferedStream, com.fasterxml.jackson.core.JsonEncoding.UTF8)) {
-
-            mapper.writeValue(generator, obj);
-            logger.info("已成功序列化对象到: {}", filePath);
+        Path target = file.toPath().toAbsolutePath();
+        // 临时文件名带线程号，同一文件的并发写出互不覆盖
+        Path temp = target.resolveSibling(file.getName() + "." + Thread.currentThread().threadId() + ".tmp");
+        try {
+            try (FileOutputStream fileStream = new FileOutputStream(temp.toFile());
+                 OutputStream bufferedStream = new BufferedOutputStream(fileStream)) {
+                writer.write(bufferedStream);
+                bufferedStream.flush();
+                fileStream.getFD().sync();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
@@ -0,0 +1,583 @@
+package store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
+import executor.common.TableSchema;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 表数据文件的二进制行格式，取代逐行的 JSON 对象。
+ * <pre>
+ * 文件头: magic "OSQT" | 版本(1B) | checkpointLsn(8B) | 列数(varint) | 每列: 列名(varint 长度 + UTF-8) 编码(1B)
+ * 行数(varint)
+ * 每行: 空值位图((列数 + 7) / 8 字节) | 非空列的值，按列顺序
+ * </pre>
+ * 列顺序取自 TableSchema，列名只在文件头出现一次。按列的声明类型编码：INT 为 zigzag varint，FLOAT 为 8 字节
+ * 原始 double，VARCHAR 为 varint 长度 + UTF-8，BOOLEAN 为 1 字节，TIMESTAMP 为毫秒(zigzag varint) + 纳秒(varint)。
+ * 某列出现了与声明类型不符的值、或有的行缺少该列时，该列改为带类型标记的编码；不在表结构中的字段追加为带标记的列。
+ * 因此任何能写成 JSON 的记录都能原样读回。
+ * 读取是流式的：open 只读文件头，之后每次 next 解码一行，内存中只有一个 64KB 的缓冲区。
+ */
+public final class RowCodec {
+    static final int MAGIC = 0x4F535154; // "OSQT"
+    static final byte VERSION = 1;
+
+    // 列编码
+    private static final byte ENC_INT = 1;
+    private static final byte ENC_DOUBLE = 2;
+    private static final byte ENC_STRING = 3;
+    private static final byte ENC_BOOLEAN = 4;
+    private static final byte ENC_TIMESTAMP = 5;
+    private static final byte ENC_TAGGED = 6;
+
+    // 带标记编码中每个值的类型标记
+    private static final byte TAG_ABSENT = 0;
+    private static final byte TAG_INT = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_STRING = 4;
+    private static final byte TAG_BOOLEAN = 5;
+    private static final byte TAG_TIMESTAMP = 6;
+    private static final byte TAG_JSON = 7; // 其它类型退回 JSON 文本
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private RowCodec() {
+    }
+
+    /**
+     * @return 前 4 个字节是二进制文件头的 magic
+     */
+    public static boolean isBinary(byte[] head) {
+        return head.length >= 4 && readIntBigEndian(head, 0) == MAGIC;
+    }
+
+    /**
+     * 把表快照编码后写入 out
+     * @param schema 决定列顺序和列编码；为 null 时按第一次出现的顺序使用记录中的字段，全部带标记编码
+     */
+    public static void write(OutputStream out, TableSchema schema, TableSnapshot snapshot) throws IOException {
+        List<Record> records = snapshot.records() == null ? List.of() : snapshot.records();
+        List<String> names = new ArrayList<>();
+        List<Byte> encodings = new ArrayList<>();
+        if (schema != null) {
+            for (ColumnDefinition column : schema.columns()) {
+                names.add(column.name());
+                encodings.add(encodingOf(column.type()));
+            }
+        }
+        chooseEncodings(records, names, encodings);
+
+        Sink sink = new Sink(out);
+        sink.writeInt(MAGIC);
+        sink.writeByte(VERSION);
+        sink.writeLong(snapshot.checkpointLsn());
+        sink.writeVarLong(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            sink.writeString(names.get(i));
+            sink.writeByte(encodings.get(i));
+        }
+        sink.writeVarLong(records.size());
+
+        int columnCount = names.size();
+        String[] columnNames = names.toArray(new String[0]);
+        byte[] columnEncodings = new byte[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnEncodings[i] = encodings.get(i);
+        }
+        byte[] bitmap = new byte[(columnCount + 7) / 8];
+        Object[] values = new Object[columnCount];
+        for (Record record : records) {
+            Map<String, Object> fields = record.fields();
+            Arrays.fill(bitmap, (byte) 0);
+            for (int i = 0; i < columnCount; i++) {
+                Object value = fields.get(columnNames[i]);
+                if (value == null && (columnEncodings[i] != ENC_TAGGED || fields.containsKey(columnNames[i]))) {
+                    bitmap[i >>> 3] |= (byte) (1 << (i & 7));
+                }
+                values[i] = value;
+            }
+            sink.writeBytes(bitmap, 0, bitmap.length);
+            for (int i = 0; i < columnCount; i++) {
+                if ((bitmap[i >>> 3] & (1 << (i & 7))) == 0) {
+                    writeValue(sink, columnEncodings[i], values[i]);
+                }
+            }
+        }
+        sink.flush();
+    }
+
+    /**
+     * 读取文件头，返回逐行解码的读取器；读取器关闭时关闭 in
+     * @throws IOException 文件头不对、版本不支持或数据被截断
+     */
+    public static Reader open(InputStream in) throws IOException {
+        Source source = new Source(in);
+        try {
+            if (source.readInt() != MAGIC) {
+                throw new IOException("Not a binary table file");
+            }
+            byte version = source.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported table file version " + version);
+            }
+            long checkpointLsn = source.readLong();
+            int columnCount = (int) source.readVarLong();
+            String[] names = new String[columnCount];
+            byte[] encodings = new byte[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                names[i] = source.readString();
+                encodings[i] = source.readByte();
+            }
+            long rowCount = source.readVarLong();
+            try {
+                return new Reader(source, checkpointLsn, names, encodings, rowCount);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed table file header", e); // 列名重复
+            }
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 二进制表文件的逐行读取器
+     */
+    public static final class Reader implements TableSnapshotReader {
+        private final Source source;
+        private final long checkpointLsn;
+        private final String[] names;
+        private final byte[] encodings;
+        private final long rowCount;
+        private final byte[] bitmap;
+        private final RowLayout layout; // 列名与表结构相同时就是表的行布局，加载后不需要再转换
+        private long row;
+
+        private Reader(Source source, long checkpointLsn, String[] names, byte[] encodings, long rowCount) {
+            this.source = source;
+            this.checkpointLsn = checkpointLsn;
+            this.names = names;
+            this.encodings = encodings;
+            this.rowCount = rowCount;
+            this.bitmap = new byte[(names.length + 7) / 8];
+            this.layout = RowLayout.of(names);
+        }
+
+        @Override
+        public long checkpointLsn() {
+            return checkpointLsn;
+        }
+
+        @Override
+        public boolean isLegacyFormat() {
+            return false;
+        }
+
+        /**
+         * @return 文件头记录的行数
+         */
+        public long rowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return row < rowCount;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                source.readFully(bitmap);
+                RowMap fields = RowMap.empty(layout);
+                for (int i = 0; i < names.length; i++) {
+                    if ((bitmap[i >>> 3] & (1 << (i & 7))) != 0) {
+                        fields.set(i, null);
+                        continue;
+                    }
+                    if (encodings[i] == ENC_TAGGED) {
+                        byte tag = source.readByte();
+                        if (tag != TAG_ABSENT) {
+                            fields.set(i, readTagged(source, tag));
+                        }
+                    } else {
+                        fields.set(i, readTyped(source, encodings[i]));
+                    }
+                }
+                row++;
+                return new Record(fields);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read row " + row, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            source.close();
+        }
+    }
+
+    private static byte encodingOf(ColumnType type) {
+        return switch (type) {
+            case INT -> ENC_INT;
+            case FLOAT -> ENC_DOUBLE;
+            case VARCHAR -> ENC_STRING;
+            case BOOLEAN -> ENC_BOOLEAN;
+            case TIMESTAMP -> ENC_TIMESTAMP;
+        };
+    }
+
+    private static boolean matches(byte encoding, Object value) {
+        return switch (encoding) {
+            case ENC_INT -> value instanceof Integer;
+            case ENC_DOUBLE -> value instanceof Double;
+            case ENC_STRING -> value instanceof String;
+            case ENC_BOOLEAN -> value instanceof Boolean;
+            case ENC_TIMESTAMP -> value instanceof Timestamp;
+            default -> true;
+        };
+    }
+
+    /**
+     * 扫描一遍记录：值与声明类型不符或有行缺少的列改为带标记编码，表结构之外的字段追加为带标记的列
+     */
+    private static void chooseEncodings(List<Record> records, List<String> names, List<Byte> encodings) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            positions.put(names.get(i), i);
+        }
+        Set<String> extra = new LinkedHashSet<>();
+        for (Record record : records) {
+            Map<String, Object> fields = record.fields();
+            int present = 0;
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                Object value = fields.get(name);
+                boolean contained = value != null || fields.containsKey(name);
+                if (contained) {
+                    present++;
+                }
+                byte encoding = encodings.get(i);
+                if (encoding != ENC_TAGGED && (!contained || (value != null && !matches(encoding, value)))) {
+                    encodings.set(i, ENC_TAGGED);
+                }
+            }
+            if (present != fields.size()) {
+                for (String name : fields.keySet()) {
+                    if (!positions.containsKey(name)) {
+                        extra.add(name);
+                    }
+                }
+            }
+        }
+        for (String name : extra) {
+            names.add(name);
+            encodings.add(ENC_TAGGED);
+        }
+    }
+
+    private static void writeValue(Sink sink, byte encoding, Object value) throws IOException {
+        switch (encoding) {
+            case ENC_INT -> sink.writeVarLong(zigzag((Integer) value));
+            case ENC_DOUBLE -> sink.writeLong(Double.doubleToRawLongBits((Double) value));
+            case ENC_STRING -> sink.writeString((String) value);
+            case ENC_BOOLEAN -> sink.writeByte((Boolean) value ? 1 : 0);
+            case ENC_TIMESTAMP -> writeTimestamp(sink, (Timestamp) value);
+            default -> writeTagged(sink, value);
+        }
+    }
+
+    private static void writeTagged(Sink sink, Object value) throws IOException {
+        if (value == null) {
+            sink.writeByte(TAG_ABSENT); // 值为 null 的字段已经记在空值位图里
+        } else if (value instanceof Integer i) {
+            sink.writeByte(TAG_INT);
+            sink.writeVarLong(zigzag(i));
+        } else if (value instanceof Long l) {
+            sink.writeByte(TAG_LONG);
+            sink.writeVarLong(zigzag(l));
+        } else if (value instanceof Double d) {
+            sink.writeByte(TAG_DOUBLE);
+            sink.writeLong(Double.doubleToRawLongBits(d));
+        } else if (value instanceof String s) {
+            sink.writeByte(TAG_STRING);
+            sink.writeString(s);
+        } else if (value instanceof Boolean b) {
+            sink.writeByte(TAG_BOOLEAN);
+            sink.writeByte(b ? 1 : 0);
+        } else if (value instanceof Timestamp t) {
+            sink.writeByte(TAG_TIMESTAMP);
+            writeTimestamp(sink, t);
+        } else {
+            sink.writeByte(TAG_JSON);
+            try {
+                sink.writeString(mapper.writeValueAsString(value));
+            } catch (JsonProcessingException e) {
+                throw new IOException("Cannot encode value of type " + value.getClass().getName(), e);
+            }
+        }
+    }
+
+    private static void writeTimestamp(Sink sink, Timestamp timestamp) throws IOException {
+        sink.writeVarLong(zigzag(timestamp.getTime()));
+        sink.writeVarLong(timestamp.getNanos());
+    }
+
+    private static Object readTyped(Source source, byte encoding) throws IOException {
+        return switch (encoding) {
+            case ENC_INT -> (int) unzigzag(source.readVarLong());
+            case ENC_DOUBLE -> Double.longBitsToDouble(source.readLong());
+            case ENC_STRING -> source.readString();
+            case ENC_BOOLEAN -> source.readByte() != 0;
+            case ENC_TIMESTAMP -> readTimestamp(source);
+            default -> throw new IOException("Unknown column encoding " + encoding);
+        };
+    }
+
+    private static Object readTagged(Source source, byte tag) throws IOException {
+        return switch (tag) {
+            case TAG_INT -> (int) unzigzag(source.readVarLong());
+            case TAG_LONG -> unzigzag(source.readVarLong());
+            case TAG_DOUBLE -> Double.longBitsToDouble(source.readLong());
+            case TAG_STRING -> source.readString();
+            case TAG_BOOLEAN -> source.readByte() != 0;
+            case TAG_TIMESTAMP -> readTimestamp(source);
+            case TAG_JSON -> mapper.readValue(source.readString(), Object.class);
+            default -> throw new IOException("Unknown value tag " + tag);
+        };
+    }
+
+    private static Timestamp readTimestamp(Source source) throws IOException {
+        Timestamp timestamp = new Timestamp(unzigzag(source.readVarLong()));
+        timestamp.setNanos((int) source.readVarLong());
+        return timestamp;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readIntBigEndian(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * 带 64KB 缓冲的输出，省去 DataOutputStream 每次写入的同步和方法调用开销
+     */
+    private static final class Sink {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+
+        Sink(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeByte(int value) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) throws IOException {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.length - position) {
+                flushBuffer();
+                if (length > buffer.length) {
+                    out.write(bytes, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.length - position < bytes) {
+                flushBuffer();
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * 从输入流按需填充 64KB 缓冲区后解码；数据提前结束时抛出 EOFException
+     */
+    private static final class Source {
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+        private int limit;
+
+        Source(InputStream in) {
+            this.in = in;
+        }
+
+        byte readByte() throws IOException {
+            if (position == limit) {
+                fill(1);
+            }
+            return buffer[position++];
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            int value = readIntBigEndian(buffer, position);
+            position += 4;
+            return value;
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 63) {
+                    throw new IOException("Malformed varint");
+                }
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        String readString() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > Integer.MAX_VALUE - 8) {
+                throw new IOException("Malformed string length " + length);
+            }
+            int size = (int) length;
+            if (size <= buffer.length) {
+                ensure(size);
+                String value = new String(buffer, position, size, StandardCharsets.UTF_8);
+                position += size;
+                return value;
+            }
+            byte[] bytes = new byte[size];
+            readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void readFully(byte[] target) throws IOException {
+            int copied = 0;
+            while (copied < target.length) {
+                if (position == limit) {
+                    fill(1);
+                }
+                int n = Math.min(limit - position, target.length - copied);
+                System.arraycopy(buffer, position, target, copied, n);
+                position += n;
+                copied += n;
+            }
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // 只读文件，关闭失败不影响已读出的数据
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (limit - position < bytes) {
+                fill(bytes);
+            }
+        }
+
+        /**
+         * 把未读部分移到缓冲区开头，再读到至少有 bytes 个字节可用
+         */
+        private void fill(int bytes) throws IOException {
+            int remaining = limit - position;
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            position = 0;
+            limit = remaining;
+            while (limit < bytes) {
+                int n = in.read(buffer, limit, buffer.length - limit);
+                if (n < 0) {
+                    throw new EOFException("Truncated table file");
+                }
+                limit += n;
+            }
+        }
+    }
+}
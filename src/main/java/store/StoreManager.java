@@ -7,19 +7,40 @@ import common.StorageConfig;
 import executor.common.Record;
 import executor.common.Table;
 import executor.common.TableSchema;
-import executor.common.impl.InMemoryTable;
+import executor.common.impl.TableFactory;
 import executor.systemCatalog.CatalogRecord;
 import executor.systemCatalog.SystemCatalog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import store.wal.LogEntry;
+import store.wal.LogRecord;
+import store.wal.ParallelRedo;
+import store.wal.Transaction;
+import store.wal.WriteAheadLog;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class StoreManager {
 //    private ConcurrentHashMap<String, Table> tables;
@@ -146,122 +167,827 @@ public class StoreManager {
 //        }
 //    }
 
-    // ⭐ 1. 定义缓存容量
-        // 在运行测试的时候可以改为3
-    private static final int CACHE_CAPACITY = 10; // 例如，最多在内存中缓存10张表
-
-    // ⭐ 2. 使用我们自定义的、线程安全的 LRU 缓存
-    private Map<String, Table> tables; // 不再是 ConcurrentHashMap
-    private Map<String, TableSchema> schemas; // Schemas也一同改造
-
-    // ⭐ 3. 新增用于统计的原子计数器
-    private final AtomicLong cacheHitCount = new AtomicLong(0);
-    private final AtomicLong cacheMissCount = new AtomicLong(0);
+    // 表缓存按估算字节数限制容量（StorageConfig.TABLE_CACHE_MAX_BYTES），读取不加锁，自带命中/未命中/淘汰统计
+    private TableCache<String, Table> tables;
+    // 表结构很小，全部常驻内存
+    private Map<String, TableSchema> schemas;
 
     private String prePathData = StorageConfig.prePathData;
     private String prePathSchema = StorageConfig.prePathSchema;
     private Persist persist;
+
+    // 预写日志：已提交的修改先顺序追加到 WAL；模糊检查点在后台逐表写出快照，之后删除不再需要的日志段
+    private final WriteAheadLog wal;
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+    private final AtomicLong nextTransactionId = new AtomicLong(1);
+    private final Map<String, Long> checkpointLsns = new ConcurrentHashMap<>(); // 表 -> 表文件中快照的 LSN
+    private final Map<String, Long> uncheckpointedSince = new ConcurrentHashMap<>(); // 表 -> 日志中最早一条未进入快照的修改的起始 LSN
+    private final Map<String, ReentrantReadWriteLock> checkpointLatches = new ConcurrentHashMap<>();
+    private final Set<String> droppedTables = ConcurrentHashMap.newKeySet();
+
+    // 脏表跟踪：只有修改过的表和新建表的表结构才需要在检查点和 close() 时写回
+    private final Set<String> dirtyTables = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtySchemas = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> persistedVersions = new ConcurrentHashMap<>(); // 表 -> 磁盘上快照对应的修改版本号
+
+    // 被淘汰的脏表由后台线程写回，写回完成前再次打开时从这里取回
+    private final WriteBehindQueue writeBehind;
+    // 并行读写表文件（恢复后写回、关闭时写回、预热）使用的有界执行器
+    private final IoExecutor io;
+    private volatile boolean closing; // 通知后台预热停止
+
+    // 增量段：修改量不大的表写出时只把上次写出以来已提交的行修改追加到 表名.delta，增量段过大时由后台合并为新的基础文件。
+    // 锁顺序：文件锁 -> 检查点闩；pendingDeltas 由自身加锁，与追加日志同在一个锁内登记
+    private final Map<String, List<LogRecord>> pendingDeltas = new HashMap<>(); // 表 -> 已提交、尚未写出的行修改（提交顺序）
+    private final Set<String> fullRewrites = ConcurrentHashMap.newKeySet(); // 修改无法逐条追踪，下次写出必须重写基础文件的表
+    private final Map<String, ReentrantLock> fileLocks = new ConcurrentHashMap<>(); // 串行化同一张表的基础文件和增量段读写
+    private final Set<String> compacting = ConcurrentHashMap.newKeySet();
+    private final ExecutorService compactor;
+
+    /**
+     * 快照写出的结果
+     */
+    private enum SnapshotResult { WRITTEN, CLEAN, BUSY }
+    private final ScheduledExecutorService checkpointer;
+    private static final long CHECKPOINT_LATCH_WAIT_MS = 100; // 检查点等待一张表上的事务结束的最长时间
+
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final Logger logger = LoggerFactory.getLogger(StoreManager.class);
 
-    public StoreManager() { // 构造函数不再接收外部Map
-        // ⭐ 4. 初始化LRU缓存并使其线程安全
-        this.tables = Collections.synchronizedMap(new LruCache<>(CACHE_CAPACITY));
-        this.schemas = Collections.synchronizedMap(new LruCache<>(CACHE_CAPACITY));
+    private StoreManager() { // 构造函数不再接收外部Map；通过 open() 创建
+        // 表缓存：按估算的堆字节数加权的 W-TinyLFU 缓存，被淘汰的脏表交给写回队列
+        this.writeBehind = new WriteBehindQueue(
+                (tableName, table) -> writeSnapshot(tableName, table, false) != SnapshotResult.BUSY,
+                StorageConfig.WRITE_BEHIND_MAX_BYTES);
+        this.tables = new TableCache<>(StorageConfig.TABLE_CACHE_MAX_BYTES, TableWeigher::estimateBytes,
+                this::onTableEvicted);
+        this.schemas = new ConcurrentHashMap<>();
 
         this.persist = new Persist();
-        loadAllTables();
+        this.io = new IoExecutor(StorageConfig.IO_CONCURRENCY, StorageConfig.IO_VIRTUAL_THREADS);
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadCatalog();
+        try {
+            this.wal = WriteAheadLog.open(Path.of(StorageConfig.prePathWal), StorageConfig.WAL_DURABILITY);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open write-ahead log", e);
+        }
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "store-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
-    public Table openTable(String tableName){
-        // ⭐ 5. 在核心访问路径中加入统计和日志逻辑
-        if (tables.containsKey(tableName)) {
-            // --- 缓存命中 ---
-            cacheHitCount.incrementAndGet();
-            logger.info("[Cache Hit] Table '{}' found in cache.", tableName);
-            return tables.get(tableName);
-        } else {
-            // --- 缓存未命中 ---
-            cacheMissCount.incrementAndGet();
-            logger.info("[Cache Miss] Table '{}' not in cache. Loading from disk.", tableName);
-            Table table = loadTable(tableName);
-            if (table != null) {
-                // ⭐ 关键修正：加载后必须放入缓存！
-                tables.put(tableName, table);
-            }
-            return table;
+    /**
+     * 打开存储：加载系统目录并从日志恢复，构造完成后才启动后写队列和检查点线程，并按配置在后台预热表
+     */
+    public static StoreManager open() {
+        StoreManager storeManager = new StoreManager();
+        storeManager.start();
+        return storeManager;
+    }
+
+    private void start() {
+        // 恢复完成后才开始写回：恢复期间的快照不能声称包含整个日志
+        writeBehind.start();
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, StorageConfig.STORE_CHECKPOINT_INTERVAL_MS,
+                StorageConfig.STORE_CHECKPOINT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (!StorageConfig.PREWARM_TABLES.isEmpty()) {
+            prewarm(StorageConfig.PREWARM_TABLES);
         }
     }
 
+    /**
+     * 打开表；返回的表上的修改会写入当前事务的日志
+     */
+    public Table openTable(String tableName) {
+        Table table = openCachedTable(tableName);
+        return table == null ? null : new LoggedTable(tableName, table, this);
+    }
+
+    private Table openCachedTable(String tableName){
+        // 命中时只有一次无锁的哈希表查找；未命中时同一张表只加载一次，并发打开的会话等待同一个结果
+        Table table = tables.get(tableName, name -> {
+            Table reclaimed = writeBehind.reclaim(name);
+            if (reclaimed != null) {
+                // 表刚被淘汰、还没写回或正在写回，磁盘上的数据可能是旧的
+                logger.info("[Cache Miss] Table '{}' reclaimed from the write-behind buffer.", name);
+                return reclaimed;
+            }
+            logger.info("[Cache Miss] Table '{}' not in cache. Loading from disk.", name);
+            return loadTable(name);
+        });
+        awaitWriteBehind();
+        return table;
+    }
+
     // ... createTable, dropTable, saveTable 方法保持不变，它们会正确地与新的Map交互 ...
     public void createTable(TableSchema schema){
-        tables.put(schema.tableName(), new InMemoryTable(schema));
-        schemas.put(schema.tableName(), schema);
-
         Record row;
+        String schemaJson;
         try {
+            schemaJson = objectMapper.writeValueAsString(schema);
             row = new CatalogRecord(
                     schema.tableName(),
-                    objectMapper.writeValueAsString(schema),
+                    schemaJson,
                     System.currentTimeMillis()
             ).toRecord();
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
-        // 假设系统表总是在缓存中
-        openTable(SystemCatalog.CATALOG_TABLE_NAME).insert(row);
+        // 假设系统表总是在缓存中；新建的就是系统表时，目录行插入它自己
+        boolean isCatalog = schema.tableName().equals(SystemCatalog.CATALOG_TABLE_NAME);
+        Table existingCatalog = isCatalog ? null : openCachedTable(SystemCatalog.CATALOG_TABLE_NAME);
+        Transaction transaction = enlist(schema.tableName());
+        try {
+            writeBehind.reclaim(schema.tableName());
+            Table created = TableFactory.create(schema);
+            Table catalog = isCatalog ? created : existingCatalog;
+            tables.put(schema.tableName(), created);
+            schemas.put(schema.tableName(), schema);
+            persistedVersions.remove(schema.tableName());
+            discardPendingDeltas(schema.tableName());
+            deleteDelta(schema.tableName()); // 同名旧表留下的增量段
+            dirtyTables.add(schema.tableName());
+            dirtySchemas.add(schema.tableName());
+            boolean wasDropped = droppedTables.remove(schema.tableName());
+            transaction.add(LogRecord.createTable(schema.tableName(), schemaJson), () -> {
+                tables.remove(schema.tableName());
+                schemas.remove(schema.tableName());
+                if (wasDropped) {
+                    droppedTables.add(schema.tableName());
+                }
+            });
+            // 目录行与建表记录在同一个事务中提交，崩溃后不会留下没有目录行的表
+            enlist(SystemCatalog.CATALOG_TABLE_NAME);
+            catalog.insert(row);
+            transaction.add(LogRecord.insert(SystemCatalog.CATALOG_TABLE_NAME, row.fields()),
+                    () -> catalog.deleteRecord(row));
+        } finally {
+            endStatement(transaction);
+        }
+        awaitWriteBehind();
     }
 
     public void dropTable(String tableName){
-        tables.remove(tableName);
-        schemas.remove(tableName);
-        persist.deleteFile(prePathData + tableName + StorageConfig.DB_SUFFIX);
+        Transaction transaction = enlist(tableName);
+        try {
+            Table cached = tables.remove(tableName);
+            Table pendingTable = writeBehind.reclaim(tableName);
+            Table table = cached != null ? cached : pendingTable;
+            TableSchema schema = schemas.remove(tableName);
+            droppedTables.add(tableName);
+            dirtyTables.remove(tableName);
+            dirtySchemas.remove(tableName);
+            persist.deleteFile(prePathData + tableName + StorageConfig.DB_SUFFIX);
+            deleteDelta(tableName);
+            discardPendingDeltas(tableName);
+            // 回滚时恢复内存中的表，数据文件在下一次检查点或 close() 时重新写出
+            transaction.add(LogRecord.dropTable(tableName), () -> {
+                droppedTables.remove(tableName);
+                dirtyTables.add(tableName);
+                fullRewrites.add(tableName);
+                if (table != null) {
+                    tables.put(tableName, table);
+                }
+                if (schema != null) {
+                    schemas.put(tableName, schema);
+                }
+            });
+        } finally {
+            endStatement(transaction);
+        }
     }
 
     public void saveTable(String tableName, Table table){
-        tables.put(tableName, table);
+        Table unwrapped = unwrap(table);
+        if (tables.peek(tableName) != unwrapped) {
+            fullRewrites.add(tableName); // 换成了另一个表对象，之前记下的行修改不再对应磁盘上的文件
+        }
+        tables.put(tableName, unwrapped);
+        awaitWriteBehind();
+    }
+
+    private static Table unwrap(Table table) {
+        return table instanceof LoggedTable logged ? logged.getDelegate() : table;
+    }
+
+    // --- 事务 ---
+
+    /**
+     * 为当前线程开始一个事务；上一个事务没有结束时先回滚它
+     */
+    public void beginTransaction() {
+        Transaction active = currentTransaction.get();
+        if (active != null) {
+            logger.warn("Transaction {} was left open, rolling it back.", active.getId());
+            rollback(active);
+        }
+        currentTransaction.set(new Transaction(nextTransactionId.getAndIncrement(), false));
+    }
+
+    /**
+     * 提交当前线程的事务：重做记录和 COMMIT 标记一次追加到 WAL，按 WAL_DURABILITY 等待落盘
+     */
+    public void commitTransaction() {
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            return;
+        }
+        currentTransaction.remove();
+        commit(transaction);
+    }
+
+    public void rollbackTransaction() {
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            return;
+        }
+        currentTransaction.remove();
+        rollback(transaction);
+    }
+
+    /**
+     * 修改一张表之前调用：把表登记到当前事务，不在事务中时开始一个只包含这条语句的自动提交事务。
+     * 事务持有该表检查点闩的共享锁直到结束，检查点因此不会把未提交或正在提交的修改写进快照
+     * @return 修改应记录到的事务，语句结束后交给 endStatement
+     */
+    Transaction enlist(String tableName) {
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            transaction = new Transaction(nextTransactionId.getAndIncrement(), true);
+            currentTransaction.set(transaction);
+        }
+        if (transaction.enlist(tableName)) {
+            checkpointLatch(tableName).readLock().lock();
+        }
+        return transaction;
+    }
+
+    /**
+     * 语句结束：自动提交事务在这里提交
+     */
+    void endStatement(Transaction transaction) {
+        if (transaction.isAutoCommit()) {
+            currentTransaction.remove();
+            commit(transaction);
+        }
+    }
+
+    private void commit(Transaction transaction) {
+        try {
+            if (transaction.isEmpty()) {
+                return;
+            }
+            // 先登记再追加：检查点据此保留从这里开始的日志段，即使它在追加完成前读取登记表
+            long firstLsn = wal.getAppendedLsn();
+            for (String tableName : transaction.getTables()) {
+                uncheckpointedSince.putIfAbsent(tableName, firstLsn);
+            }
+            List<LogRecord> records = transaction.commitRecords();
+            long lsn;
+            synchronized (pendingDeltas) {
+                // 与追加日志在同一个锁内登记，每张表等待写出的行修改与日志中的提交顺序一致
+                lsn = wal.append(records);
+                addPendingDeltas(records);
+            }
+            dirtyTables.addAll(transaction.getTables());
+            wal.commit(lsn);
+        } catch (IOException e) {
+            // 日志没有落盘，撤销内存中的修改；已登记的行修改作废，这些表下次写出时重写基础文件
+            transaction.rollback();
+            transaction.getTables().forEach(this::discardPendingDeltas);
+            fullRewrites.addAll(transaction.getTables());
+            throw new UncheckedIOException("Failed to commit transaction " + transaction.getId(), e);
+        } finally {
+            releaseLatches(transaction);
+        }
+    }
+
+    private void rollback(Transaction transaction) {
+        try {
+            transaction.rollback();
+        } finally {
+            releaseLatches(transaction);
+        }
+    }
+
+    private void releaseLatches(Transaction transaction) {
+        for (String tableName : transaction.getTables()) {
+            checkpointLatch(tableName).readLock().unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock checkpointLatch(String tableName) {
+        return checkpointLatches.computeIfAbsent(tableName, name -> new ReentrantReadWriteLock());
+    }
+
+    // --- 模糊检查点 ---
+
+    /**
+     * 模糊检查点：逐表写出自上次快照以来有修改的表（脏表），不停止整个系统的写入。
+     * 每张表只在复制内存中的记录时短暂阻塞该表的写事务，快照记下复制时的日志末尾 LSN；
+     * 序列化和写文件在闩之外完成。最后删除所有表都不再需要的日志段。
+     * 被 LRU 缓存淘汰的表无法做快照，它们的日志保留到下一次能写出为止。
+     */
+    public void checkpoint() {
+        long start = System.nanoTime();
+        long appendedLsn = wal.getAppendedLsn();
+        int written = 0;
+        Set<String> candidates = new java.util.LinkedHashSet<>(uncheckpointedSince.keySet());
+        candidates.addAll(dirtyTables);
+        for (String tableName : candidates) {
+            if (checkpointTable(tableName)) {
+                written++;
+            }
+        }
+        // 之后才登记的表，其修改都在 appendedLsn 之后
+        long keepFrom = uncheckpointedSince.values().stream().mapToLong(Long::longValue).min().orElse(appendedLsn);
+        try {
+            wal.truncateBefore(Math.min(keepFrom, appendedLsn));
+        } catch (IOException e) {
+            logger.error("Failed to delete obsolete WAL segments", e);
+        }
+        if (written > 0) {
+            logger.info("Checkpointed {} table(s) in {} ms.", written, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            logger.error("Checkpoint failed", e);
+        }
+    }
+
+    /**
+     * @return 写出了该表的快照时返回 true
+     */
+    private boolean checkpointTable(String tableName) {
+        Table table = tables.peek(tableName);
+        if (table == null) {
+            table = writeBehind.peek(tableName);
+        }
+        if (table == null) {
+            if (droppedTables.contains(tableName)) {
+                uncheckpointedSince.remove(tableName);
+                dirtyTables.remove(tableName);
+            }
+            return false;
+        }
+        try {
+            return writeSnapshot(tableName, table, false) == SnapshotResult.WRITTEN;
+        } catch (RuntimeException e) {
+            logger.error("Failed to checkpoint table '{}'", tableName, e);
+            return false;
+        }
+    }
+
+    /**
+     * 写出一张表：持有检查点闩取出上次写出以来已提交的行修改。修改量不大时在闩内把它们追加到增量段，I/O 与修改量成正比；
+     * 新表、表结构有变化、修改没能逐条记下或修改量超过表的一定比例时，持有闩复制记录，在闩外重写整个基础文件。
+     * 检查点、后写队列、close() 和后台合并共用
+     * @param compact 重写基础文件并删除增量段，即使没有新的修改
+     */
+    private SnapshotResult writeSnapshot(String tableName, Table table, boolean compact) {
+        ReentrantLock fileLock = fileLock(tableName);
+        fileLock.lock();
+        try {
+            ReentrantReadWriteLock.WriteLock latch = checkpointLatch(tableName).writeLock();
+            try {
+                // 有事务长时间持有这张表时跳过，不让等待中的检查点挡住后续的写入
+                if (!latch.tryLock(CHECKPOINT_LATCH_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    return SnapshotResult.BUSY;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return SnapshotResult.BUSY;
+            }
+            List<Record> records;
+            TableSchema schema;
+            long version;
+            long lsn;
+            Long since;
+            try {
+                if (droppedTables.contains(tableName)) {
+                    uncheckpointedSince.remove(tableName);
+                    dirtyTables.remove(tableName);
+                    return SnapshotResult.CLEAN;
+                }
+                // 持有闩时该表没有进行中的事务，已追加的日志包含了它的全部已提交修改
+                lsn = wal.getAppendedLsn();
+                since = uncheckpointedSince.remove(tableName);
+                dirtyTables.remove(tableName);
+                List<LogRecord> changes = drainPendingDeltas(tableName);
+                boolean rewrite = fullRewrites.remove(tableName) || compact;
+                if (!rewrite && !isModified(tableName, table)) {
+                    return SnapshotResult.CLEAN; // 修改已被回滚或已经写出，磁盘上的快照仍然有效
+                }
+                version = table.getVersion();
+                schema = dirtySchemas.remove(tableName) ? table.getSchema() : null;
+                if (!rewrite && schema == null && canAppendDelta(tableName, table, changes)) {
+                    try {
+                        TableDelta.append(deltaPath(tableName), table.getSchema(), lsn, changes);
+                    } catch (IOException e) {
+                        synchronized (pendingDeltas) {
+                            pendingDeltas.put(tableName, changes); // 持有闩，期间没有新的修改
+                        }
+                        restoreDirty(tableName, since, null);
+                        throw new UncheckedIOException("Failed to append delta of table '" + tableName + "'", e);
+                    }
+                    checkpointLsns.put(tableName, lsn);
+                    persistedVersions.put(tableName, version);
+                    scheduleCompactionIfNeeded(tableName);
+                    return SnapshotResult.WRITTEN;
+                }
+                records = table.getAllRecords();
+            } finally {
+                latch.unlock();
+            }
+            try {
+                persistTable(tableName, table.getSchema(), records, version, lsn);
+                if (schema != null) {
+                    persistSchema(tableName, schema);
+                }
+                return SnapshotResult.WRITTEN;
+            } catch (RuntimeException e) {
+                fullRewrites.add(tableName); // 取出的行修改已经丢弃，下次只能重写
+                restoreDirty(tableName, since, schema);
+                throw e;
+            }
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private void restoreDirty(String tableName, Long since, TableSchema schema) {
+        if (since != null) {
+            uncheckpointedSince.merge(tableName, since, Math::min);
+        }
+        dirtyTables.add(tableName);
+        if (schema != null) {
+            dirtySchemas.add(tableName);
+        }
+    }
+
+    // --- 增量段 ---
+
+    /**
+     * 登记刚追加到日志的行修改（调用方持有 pendingDeltas 的锁）。建表、删表不登记，它们直接处理文件
+     */
+    private void addPendingDeltas(List<LogRecord> records) {
+        for (LogRecord record : records) {
+            switch (record.type()) {
+                case INSERT, UPDATE, DELETE -> {
+                    if (fullRewrites.contains(record.table())) {
+                        continue;
+                    }
+                    List<LogRecord> changes = pendingDeltas.computeIfAbsent(record.table(), name -> new ArrayList<>());
+                    if (changes.size() >= StorageConfig.DELTA_MAX_PENDING_CHANGES) {
+                        // 修改太多，逐条保留不划算，下次写出时重写基础文件
+                        pendingDeltas.remove(record.table());
+                        fullRewrites.add(record.table());
+                    } else {
+                        changes.add(record);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private List<LogRecord> drainPendingDeltas(String tableName) {
+        synchronized (pendingDeltas) {
+            return pendingDeltas.remove(tableName);
+        }
+    }
+
+    private void discardPendingDeltas(String tableName) {
+        synchronized (pendingDeltas) {
+            pendingDeltas.remove(tableName);
+        }
+    }
+
+    /**
+     * @return 磁盘上的文件对应上次写出时的版本，取出的行修改就是之后的全部修改，且数量不超过表的一定比例
+     */
+    private boolean canAppendDelta(String tableName, Table table, List<LogRecord> changes) {
+        return changes != null && !changes.isEmpty() && persistedVersions.containsKey(tableName)
+                && changes.size() <= table.size() * StorageConfig.DELTA_MAX_CHANGE_RATIO;
+    }
+
+    private ReentrantLock fileLock(String tableName) {
+        return fileLocks.computeIfAbsent(tableName, name -> new ReentrantLock());
+    }
+
+    private Path deltaPath(String tableName) {
+        return Path.of(prePathData + tableName + StorageConfig.DELTA_SUFFIX);
+    }
+
+    private void deleteDelta(String tableName) {
+        try {
+            Files.deleteIfExists(deltaPath(tableName));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete delta of table '" + tableName + "'", e);
+        }
+    }
+
+    /**
+     * 增量段超过基础文件的一定比例（且不小于下限）时交给后台合并
+     */
+    private void scheduleCompactionIfNeeded(String tableName) {
+        if (closing) {
+            return;
+        }
+        try {
+            long deltaBytes = Files.size(deltaPath(tableName));
+            Path basePath = Path.of(prePathData + tableName + StorageConfig.DB_SUFFIX);
+            long baseBytes = Files.exists(basePath) ? Files.size(basePath) : 0;
+            if (deltaBytes < Math.max(StorageConfig.DELTA_COMPACTION_MIN_BYTES,
+                    (long) (baseBytes * StorageConfig.DELTA_COMPACTION_RATIO))) {
+                return;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to check delta size of table '{}'", tableName, e);
+            return;
+        }
+        if (!compacting.add(tableName)) {
+            return;
+        }
+        try {
+            compactor.execute(() -> {
+                try {
+                    compactTable(tableName);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to compact table '{}'", tableName, e);
+                } finally {
+                    compacting.remove(tableName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compacting.remove(tableName); // 正在关闭
+        }
+    }
+
+    /**
+     * 把基础文件和增量段合并为新的基础文件。表在内存中时直接重写；否则从磁盘读出合并后写回，
+     * 期间持有文件锁，加载这张表的会话等待合并完成
+     */
+    private void compactTable(String tableName) {
+        long start = System.nanoTime();
+        Table table = tables.peek(tableName);
+        if (table == null) {
+            table = writeBehind.peek(tableName);
+        }
+        if (table != null) {
+            if (writeSnapshot(tableName, table, true) == SnapshotResult.WRITTEN) {
+                logger.info("Compacted delta of cached table '{}' in {} ms.", tableName,
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            return; // 表忙时放弃，下次追加增量段时再安排
+        }
+        ReentrantLock fileLock = fileLock(tableName);
+        fileLock.lock();
+        try {
+            TableSchema schema = schemas.get(tableName);
+            if (schema == null || droppedTables.contains(tableName) || tables.peek(tableName) != null
+                    || writeBehind.peek(tableName) != null) {
+                return; // 等待文件锁期间被删除或被加载
+            }
+            String dataFilePath = prePathData + tableName + StorageConfig.DB_SUFFIX;
+            LoadedTable loaded = readTableFiles(tableName, schema, dataFilePath);
+            persist.writeTableSnapshot(dataFilePath, schema,
+                    new TableSnapshot(loaded.checkpointLsn(), loaded.table().getAllRecords()));
+            deleteDelta(tableName);
+            checkpointLsns.put(tableName, loaded.checkpointLsn());
+            logger.info("Compacted delta of table '{}' ({} rows) in {} ms.", tableName, loaded.table().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * 表缓存淘汰表时调用（持有缓存的策略锁）：有未写出修改的表交给后写队列，干净的表直接丢弃
+     */
+    private void onTableEvicted(String tableName, Table table) {
+        if (table == null || droppedTables.contains(tableName)) {
+            return;
+        }
+        if (dirtyTables.contains(tableName) || dirtySchemas.contains(tableName)
+                || uncheckpointedSince.containsKey(tableName) || isModified(tableName, table)) {
+            logger.info("[Write-Behind] Dirty table '{}' evicted, queued for write-back.", tableName);
+            writeBehind.submit(tableName, table);
+        }
+    }
+
+    /**
+     * 后写缓冲区超过内存上限时等待写回。当前线程的事务持有检查点闩时不等待，
+     * 否则写回线程可能正在等待这个事务释放闩
+     */
+    private void awaitWriteBehind() {
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null || transaction.getTables().isEmpty()) {
+            writeBehind.awaitCapacity();
+        }
+    }
+
+    /**
+     * @return 表在上次写出快照之后被修改过，或者从未写出过
+     */
+    private boolean isModified(String tableName, Table table) {
+        Long persisted = persistedVersions.get(tableName);
+        return persisted == null || persisted != table.getVersion();
+    }
+
+    // --- 崩溃恢复 ---
+
+    /**
+     * 启动时重做 WAL 中已提交的事务（没有 COMMIT 标记的尾部记录丢弃）：记录按表拆分后并行重做，
+     * 每张表只重做提交 LSN 大于其快照 LSN 的记录。涉及的表写回文件后删除旧日志段
+     */
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        List<LogEntry> entries = wal.readAll();
+        if (entries.isEmpty()) {
+            return;
+        }
+        long logBytes = wal.getAppendedLsn() - wal.getStartLsn();
+        ParallelRedo.Plan plan = ParallelRedo.plan(entries);
+        if (plan.discarded() > 0) {
+            logger.warn("Discarded {} log record(s) of an uncommitted transaction.", plan.discarded());
+        }
+        nextTransactionId.set(plan.maxTransactionId() + 1);
+
+        // 重做期间持有涉及的表，避免被 LRU 缓存淘汰
+        Map<String, Optional<Table>> recovered = new ConcurrentHashMap<>();
+        ParallelRedo.apply(plan, (tableName, redos) ->
+                recovered.put(tableName, Optional.ofNullable(redoTable(tableName, redos))),
+                StorageConfig.RECOVERY_THREADS);
+
+        long lsn = wal.getAppendedLsn();
+        IoExecutor.Report report = io.runAll("Persist recovered tables", recovered.keySet(), tableName -> {
+            Table table = recovered.get(tableName).orElse(null);
+            if (table == null) {
+                return false;
+            }
+            persistTable(tableName, table.getSchema(), table.getAllRecords(), table.getVersion(), lsn);
+            TableSchema schema = table.getSchema();
+            if (schema != null) {
+                persistSchema(tableName, schema);
+            }
+            return true;
+        });
+        if (report.hasFailures()) {
+            // 写出失败的表仍然依赖日志：保留全部日志段，由之后的检查点或 close() 写出这些表
+            for (String tableName : report.failures().keySet()) {
+                uncheckpointedSince.merge(tableName, wal.getStartLsn(), Math::min);
+                dirtyTables.add(tableName);
+            }
+        } else {
+            wal.reset();
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        logger.info("Recovered {} transaction(s), {} record(s) across {} table(s) from {} KB of WAL in {} ms ({} MB/s).",
+                plan.transactions(), plan.records(), plan.tables().size(), logBytes / 1024, elapsedNanos / 1_000_000,
+                String.format("%.1f", logBytes / 1048576.0 / (elapsedNanos / 1e9)));
     }
 
-    // ⭐ 6. 新增一个方法用于打印缓存统计信息
-    public void printCacheStats() {
-        long hits = cacheHitCount.get();
-        long misses = cacheMissCount.get();
-        long totalAccesses = hits + misses;
-        double hitRate = (totalAccesses == 0) ? 0.0 : (double) hits / totalAccesses * 100.0;
+    /**
+     * 顺序重做一张表的记录
+     * @return 有记录被重做时返回表的最终状态，需要写回文件；表被删除或没有需要重做的记录时返回 null
+     */
+    private Table redoTable(String tableName, List<ParallelRedo.Redo> redos) {
+        Table table = openCachedTable(tableName);
+        long snapshotLsn = checkpointLsns.getOrDefault(tableName, 0L);
+        boolean changed = false;
+        for (ParallelRedo.Redo redo : redos) {
+            if (redo.commitLsn() <= snapshotLsn) {
+                continue; // 快照中已经包含
+            }
+            LogRecord record = redo.record();
+            switch (record.type()) {
+                case CREATE_TABLE -> {
+                    TableSchema schema = TableSchema.fromJson(record.schema());
+                    table = TableFactory.create(schema);
+                    tables.put(tableName, table);
+                    schemas.put(tableName, schema);
+                }
+                case DROP_TABLE -> {
+                    table = null;
+                    tables.remove(tableName);
+                    schemas.remove(tableName);
+                    persist.deleteFile(prePathData + tableName + StorageConfig.DB_SUFFIX);
+                    deleteDelta(tableName);
+                }
+                default -> {
+                    if (table == null) {
+                        logger.warn("Skipping {} for missing table '{}' during recovery.", record.type(), tableName);
+                        continue;
+                    }
+                    ParallelRedo.applyRow(table, record);
+                }
+            }
+            changed = true;
+        }
+        return changed ? table : null;
+    }
 
-        logger.info("--- Cache Statistics ---");
-        logger.info("Capacity: {}", CACHE_CAPACITY);
-        logger.info("Current Size: {}", tables.size());
-        logger.info("Hits: {}", hits);
-        logger.info("Misses: {}", misses);
-        logger.info("Total Accesses: {}", totalAccesses);
-        logger.info("Hit Rate: {}%", String.format("%.2f", hitRate));
-        logger.info("------------------------");
+    /**
+     * @return 表缓存的命中、未命中、加载和淘汰统计
+     */
+    public TableCache.CacheStats getCacheStats() {
+        return tables.stats();
     }
 
     public void close() {
-        // close 方法现在持久化的是当前在缓存中的表
-        // 注意：这可能导致不在缓存中的已修改数据丢失，这是一个更复杂的状态管理问题。
-        // 一个简单的解决方法是在这里持久化所有已知的表，而不仅仅是缓存中的。
-        // 但为了演示缓存，我们暂时只持久化缓存中的内容。
-        logger.info("Closing StoreManager and persisting cached tables...");
+        closing = true;
+        checkpointer.shutdownNow();
+        compactor.shutdownNow();
+        try {
+            checkpointer.awaitTermination(10, TimeUnit.SECONDS);
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long start = System.nanoTime();
+        // 先把被淘汰的脏表写回；超时没有写回的表保留日志，下次启动时重做
+        Set<String> unwritten = writeBehind.close(StorageConfig.WRITE_BEHIND_CLOSE_TIMEOUT_MS);
+        for (String tableName : unwritten) {
+            uncheckpointedSince.merge(tableName, wal.getStartLsn(), Math::min);
+        }
+        long lsn = wal.getAppendedLsn();
+        // close 方法只持久化缓存中修改过的表和新建表的表结构，只读的表不再重写
         // 创建一个副本以避免在迭代时发生修改
-        Map<String, Table> tablesToPersist = new java.util.HashMap<>(tables);
+        Map<String, Table> cachedTables = tables.asMap();
+        Map<String, Table> tablesToPersist = new java.util.HashMap<>();
+        cachedTables.forEach((tableName, table) -> {
+            if (table != null && (dirtyTables.contains(tableName) || fullRewrites.contains(tableName)
+                    || isModified(tableName, table))) {
+                tablesToPersist.put(tableName, table);
+            }
+        });
+        logger.info("Closing StoreManager, persisting {} of {} cached table(s)...", tablesToPersist.size(),
+                cachedTables.size());
 
-        tablesToPersist.entrySet().parallelStream().forEach(entry -> {
-            persistTable(entry.getKey(), entry.getValue());
+        // 与检查点相同：修改不多的表只追加增量段
+        io.runAll("Persist tables on close", tablesToPersist.keySet(), tableName -> {
+            if (writeSnapshot(tableName, tablesToPersist.get(tableName), false) == SnapshotResult.BUSY) {
+                throw new IllegalStateException("Table '" + tableName + "' is still in use by a transaction");
+            }
+            return true;
         });
+        // 没有修改的缓存表，磁盘上的快照已经包含日志中的全部修改
+        cachedTables.keySet().forEach(tableName -> {
+            if (!tablesToPersist.containsKey(tableName)) {
+                uncheckpointedSince.remove(tableName);
+            }
+        });
+        droppedTables.forEach(uncheckpointedSince::remove);
 
-        Map<String, TableSchema> schemasToPersist = new java.util.HashMap<>(schemas);
-        schemasToPersist.entrySet().parallelStream().forEach(entry -> {
-            persistSchema(entry.getKey(), entry.getValue());
+        io.runAll("Persist schemas on close", List.copyOf(dirtySchemas), tableName -> {
+            TableSchema schema = schemas.get(tableName);
+            if (schema == null) {
+                return false;
+            }
+            persistSchema(tableName, schema);
+            dirtySchemas.remove(tableName);
+            return true;
         });
+
+        // 缓存中和后写队列中的表都已写出；只有写出失败或没有写回的表还需要日志
+        try {
+            if (uncheckpointedSince.isEmpty()) {
+                wal.reset();
+            } else {
+                logger.warn("Keeping WAL for {} table(s) with unpersisted changes: {}",
+                        uncheckpointedSince.size(), uncheckpointedSince.keySet());
+                wal.truncateBefore(Math.min(lsn, Collections.min(uncheckpointedSince.values())));
+            }
+            wal.close();
+        } catch (IOException e) {
+            logger.error("Failed to close write-ahead log", e);
+        }
+        io.close();
+        logger.info("StoreManager closed in {} ms.", (System.nanoTime() - start) / 1_000_000);
     }
 
     private Table loadTable(String tableName) {
         // ... loadTable 逻辑不变 ...
         String dataFilePath = prePathData + tableName + StorageConfig.DB_SUFFIX;
         String schemaFilePath = prePathSchema + tableName + StorageConfig.SCHEMA_SUFFIX;
+        ReentrantLock fileLock = fileLock(tableName);
+        fileLock.lock();
         try {
             // ⭐ 修正：加载 schema 也应放入 schema 缓存
             TableSchema schema = schemas.computeIfAbsent(tableName, tn -> {
@@ -274,26 +1000,85 @@ public class StoreManager {
 
             if (schema == null) return null;
 
-            InMemoryTable table = new InMemoryTable(schema);
-            List<Record> records = persist.readObjectFromJsonStream(dataFilePath, new TypeReference<>() {});
-            if (records != null) {
-                for (Record record : records) {
-                    table.insert(record);
+            LoadedTable loaded = readTableFiles(tableName, schema, dataFilePath);
+            Table table = loaded.table();
+            checkpointLsns.put(tableName, loaded.checkpointLsn());
+            persistedVersions.put(tableName, table.getVersion());
+            if (loaded.legacyFormat()) {
+                // 旧的 JSON 文件加载后立即改写为二进制格式；失败时下次加载再试
+                try {
+                    persistTable(tableName, schema, table.getAllRecords(), table.getVersion(), loaded.checkpointLsn());
+                    logger.info("Migrated table '{}' from JSON to the binary format.", tableName);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to migrate table '{}' to the binary format", tableName, e);
                 }
             }
             return table;
         } catch (Exception e) { // 捕获更广泛的异常
             logger.error("Failed to load table '{}'", tableName, e);
             return null;
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * 从磁盘读出的表
+     * @param checkpointLsn 基础文件和已应用的增量帧中最大的 LSN
+     * @param legacyFormat  基础文件是旧的 JSON 格式
+     */
+    private record LoadedTable(Table table, long checkpointLsn, boolean legacyFormat) {
+    }
+
+    /**
+     * 读出基础文件并合并增量段（调用方持有文件锁）。基础文件逐行读入表中，有增量段时边读边应用增量，
+     * 加载时的内存峰值约等于表本身加上增量段的大小
+     */
+    private LoadedTable readTableFiles(String tableName, TableSchema schema, String dataFilePath) throws IOException {
+        Table table = TableFactory.create(schema);
+        List<TableDelta.Frame> frames = TableDelta.read(deltaPath(tableName));
+        try (TableSnapshotReader reader = persist.openTableSnapshot(dataFilePath)) {
+            if (frames.isEmpty()) {
+                if (reader == null) {
+                    return new LoadedTable(table, 0, false);
+                }
+                table.bulkInsert(reader);
+                return new LoadedTable(table, reader.checkpointLsn(), reader.isLegacyFormat());
+            }
+            Iterator<Record> rows = reader == null ? Collections.emptyIterator() : reader;
+            if (reader != null && reader.isLegacyFormat()) {
+                // 旧的 JSON 文件中 checkpointLsn 可能在记录之后，读完记录才知道哪些帧需要应用；这种文件加载后立即改写
+                List<Record> buffered = new ArrayList<>();
+                reader.forEachRemaining(buffered::add);
+                rows = buffered.iterator();
+            }
+            long baseLsn = reader == null ? 0 : reader.checkpointLsn();
+            table.bulkInsert(TableDelta.merge(rows, frames, baseLsn));
+            long checkpointLsn = Math.max(baseLsn, frames.get(frames.size() - 1).lsn());
+            return new LoadedTable(table, checkpointLsn, reader != null && reader.isLegacyFormat());
         }
     }
 
-    private void persistTable(String tableName, Table table) {
+    /**
+     * 写出表快照（二进制行格式，先写临时文件再原子重命名），之后删除已经并入的增量段
+     * @param version       复制记录之前读取的表修改版本号
+     * @param checkpointLsn 快照包含了这个 LSN 之前的全部已提交修改
+     */
+    private void persistTable(String tableName, TableSchema schema, List<Record> records, long version,
+                              long checkpointLsn) {
         String filePath = prePathData + tableName + StorageConfig.DB_SUFFIX;
+        ReentrantLock fileLock = fileLock(tableName);
+        fileLock.lock();
         try {
-            persist.writeObjectToJsonStream(filePath, table.getAllRecords());
+            // 新的基础文件先落盘再删增量段：中间崩溃时旧帧的 LSN 不大于基础文件，加载时被跳过
+            persist.writeTableSnapshot(filePath, schema, new TableSnapshot(checkpointLsn, records));
+            deleteDelta(tableName);
+            checkpointLsns.put(tableName, checkpointLsn);
+            persistedVersions.put(tableName, version);
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            fileLock.unlock();
         }
     }
 
@@ -306,35 +1091,64 @@ public class StoreManager {
         }
     }
 
-    public void loadAllTables() {
-        Table table = loadTable(SystemCatalog.CATALOG_TABLE_NAME);
-        if (table != null) {
-            tables.put(SystemCatalog.CATALOG_TABLE_NAME, table);
+    /**
+     * 启动时只加载系统目录，并从目录行中解析各表的表结构；表数据在第一次打开时才加载
+     */
+    private void loadCatalog() {
+        long start = System.nanoTime();
+        Table catalog = tables.get(SystemCatalog.CATALOG_TABLE_NAME, this::loadTable);
+        if (catalog == null) {
+            return;
         }
-
-//        if (table != null) {
-//            List<Record> records = table.getAllRecords();
-//            for (Record record : records) {
-//                logger.info("find: {} in disk", record.getValue("id")); // 这里目前可以获取到表名
-//                if (record.getValue("id") != null &&  !record.getJsonString("id").equals(SystemCatalog.CATALOG_TABLE_NAME)){
-//                    TableSchema schema = TableSchema.fromJson(record.getJsonString("schema_json"));
-//                    tables.put(record.getJsonString("id"), new InMemoryTable(schema));
-//                    schemas.put(record.getJsonString("id"), schema);
-//                }
-//            }
-//        }
-        // 多线程并行(parallelStream)读取表
-        if (table != null) {
-            List<Record> records = table.getAllRecords();
-            records.parallelStream().forEach(record -> {
-                if (record.getValue("id") != null &&  !record.getJsonString("id").equals(SystemCatalog.CATALOG_TABLE_NAME)){
-                    TableSchema schema = TableSchema.fromJson(record.getJsonString("schema_json"));
-
-                    tables.put(record.getJsonString("id"), loadTable(record.getJsonString("id")));
-                    schemas.put(record.getJsonString("id"), schema);
-                }
-            });
+        int loaded = 0;
+        for (Record record : catalog.getAllRecords()) {
+            Object tableName = record.getValue(CatalogRecord.TABLE_NAME);
+            Object schemaJson = record.getValue(CatalogRecord.SCHEMA_JSON);
+            if (!(tableName instanceof String name) || name.equals(SystemCatalog.CATALOG_TABLE_NAME)
+                    || !(schemaJson instanceof String json)) {
+                continue;
+            }
+            try {
+                schemas.put(name, TableSchema.fromJson(json));
+                loaded++;
+            } catch (RuntimeException e) {
+                // 表结构仍可在打开表时从 .schema 文件读取
+                logger.warn("Invalid schema for table '{}' in the catalog", name, e);
+            }
         }
-//        tables.put(SystemCatalog.CATALOG_TABLE_NAME, table);
+        logger.info("Loaded catalog with {} table schema(s) in {} ms; table data is loaded on first access.",
+                loaded, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 在后台用 I/O 执行器并行加载指定的表，让第一次查询不必等待读盘。表缓存装满后其余的表跳过，
+     * 不挤出已经在用的表；不存在的表也跳过
+     * @return 全部加载完或跳过时完成
+     */
+    public CompletableFuture<Void> prewarm(Collection<String> tableNames) {
+        List<String> names = List.copyOf(tableNames);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                io.runAll("Prewarm", names, tableName -> {
+                    TableCache.CacheStats stats = tables.stats();
+                    if (closing || stats.weightBytes() >= stats.maximumBytes()) {
+                        return false;
+                    }
+                    if (!schemas.containsKey(tableName)) {
+                        logger.warn("Skipping prewarm of unknown table '{}'.", tableName);
+                        return false;
+                    }
+                    return openCachedTable(tableName) != null;
+                });
+                done.complete(null);
+            } catch (RuntimeException e) {
+                logger.error("Prewarm failed", e);
+                done.completeExceptionally(e);
+            }
+        }, "store-prewarm");
+        thread.setDaemon(true);
+        thread.start();
+        return done;
     }
 }
@@ -0,0 +1,478 @@
+package store;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按估算字节数限制容量的并发缓存，淘汰策略参照 W-TinyLFU：
+ * <ul>
+ *     <li>新条目先进入占总容量 1% 的窗口区 (LRU)，被挤出窗口后成为准入候选；</li>
+ *     <li>主区分为试用段和保护段 (SLRU)，试用段中再次被访问的条目晋升到保护段；</li>
+ *     <li>需要淘汰时，用 Count-Min 频率草图比较候选与试用段最久未用的条目，访问频率低的一方被淘汰，
+ *     一次性扫描的大量表不会把经常访问的表挤出缓存。</li>
+ * </ul>
+ * 读路径只查 ConcurrentHashMap 并把访问记录写入按线程分条的有损环形缓冲区，不加锁；
+ * 缓冲区写满时由某个读线程尝试获取策略锁批量回放。同一个键的并发加载只执行一次。
+ */
+public final class TableCache<K, V> {
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int READ_BUFFER_SIZE = 16; // 每条缓冲区的槽数，2 的幂
+    private static final int READ_BUFFER_STRIPES =
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+
+    /**
+     * 缓存统计快照
+     */
+    public record CacheStats(long hits, long misses, long loads, long evictions, long evictedBytes, int entries,
+                             long weightBytes, long maximumBytes) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        public String format() {
+            return String.format("entries=%d, weight=%d KB / %d KB, hits=%d, misses=%d, hitRate=%.2f%%, loads=%d, "
+                            + "evictions=%d (%d KB)", entries, weightBytes / 1024, maximumBytes / 1024, hits, misses,
+                    hitRate() * 100, loads, evictions, evictedBytes / 1024);
+        }
+    }
+
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        long weight; // 以下字段由策略锁保护
+        Region region;
+        Node<K, V> prev;
+        Node<K, V> next;
+        boolean alive; // 已链接到某个区的链表中，移除或淘汰后为 false
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表，头部最久未用
+     */
+    private static final class AccessOrder<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        long weight;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    private final long maximumBytes;
+    private final ToLongFunction<V> weigher;
+    private final BiConsumer<K, V> evictionListener;
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    // 淘汰策略的状态，全部由 policyLock 保护
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    private final AtomicReferenceArray<Node<K, V>>[] readBuffers;
+    private final AtomicInteger[] readCounters;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedBytes = new LongAdder();
+
+    /**
+     * @param maximumBytes     所有条目估算字节数之和的上限
+     * @param weigher          估算一个值占用的字节数
+     * @param evictionListener 条目被淘汰时调用（持有策略锁），不应阻塞
+     */
+    public TableCache(long maximumBytes, ToLongFunction<V> weigher, BiConsumer<K, V> evictionListener) {
+        this.maximumBytes = maximumBytes;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+        this.readBuffers = newReadBuffers(READ_BUFFER_STRIPES);
+        this.readCounters = new AtomicInteger[READ_BUFFER_STRIPES];
+        for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+            readBuffers[i] = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+            readCounters[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Java 不能直接创建泛型数组：先创建通配符数组再转换，数组只在本类内部使用，不会混入其他类型
+     */
+    private static <K, V> AtomicReferenceArray<Node<K, V>>[] newReadBuffers(int stripes) {
+        @SuppressWarnings("unchecked")
+        AtomicReferenceArray<Node<K, V>>[] buffers = (AtomicReferenceArray<Node<K, V>>[]) new AtomicReferenceArray<?>[stripes];
+        return buffers;
+    }
+
+    /**
+     * 无锁读取，记录一次命中或未命中
+     * @return 不在缓存中时返回 null
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        recordRead(node);
+        return node.value;
+    }
+
+    /**
+     * 读取，不在缓存中时调用 loader 加载并放入缓存；同一个键的并发调用只加载一次，其他调用等待结果
+     * @return loader 返回 null 时返回 null，不缓存
+     */
+    public V get(K key, Function<K, V> loader) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
+        try {
+            // 获得加载权之前可能有另一个线程刚加载完成
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                value = node.value;
+            } else {
+                loads.increment();
+                value = loader.apply(key);
+                if (value != null) {
+                    put(key, value);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 读取但不计入统计、不影响淘汰顺序，供检查点等后台任务使用
+     */
+    public V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean containsKey(K key) {
+        return data.containsKey(key);
+    }
+
+    /**
+     * 放入或替换一个值，并重新估算它的大小；null 值被忽略
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        long weight = weigher.applyAsLong(value);
+        Node<K, V> created = new Node<>(key, value);
+        while (true) {
+            Node<K, V> existing = data.putIfAbsent(key, created);
+            if (existing != null) {
+                existing.value = value;
+                if (data.get(key) != existing) {
+                    continue; // 旧条目刚被移除，重新放入
+                }
+            }
+            policyLock.lock();
+            try {
+                if (existing == null) {
+                    // 放入映射之后、获得锁之前可能已被移除
+                    if (data.get(key) == created) {
+                        created.weight = weight;
+                        created.region = Region.WINDOW;
+                        created.alive = true;
+                        window.addLast(created);
+                        sketch.increment(key.hashCode());
+                    }
+                } else if (existing.alive) {
+                    setWeight(existing, weight);
+                    touch(existing);
+                }
+                evict();
+            } finally {
+                policyLock.unlock();
+            }
+            return;
+        }
+    }
+
+    /**
+     * 移除一个条目，不通知淘汰监听器
+     * @return 被移除的值
+     */
+    public V remove(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        policyLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            policyLock.unlock();
+        }
+        return node.value;
+    }
+
+    /**
+     * @return 当前所有条目的副本
+     */
+    public Map<K, V> asMap() {
+        Map<K, V> copy = new java.util.HashMap<>();
+        data.forEach((key, node) -> copy.put(key, node.value));
+        return copy;
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public CacheStats stats() {
+        long weight;
+        policyLock.lock();
+        try {
+            weight = window.weight + probation.weight + protectedSegment.weight;
+        } finally {
+            policyLock.unlock();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), evictedBytes.sum(),
+                data.size(), weight, maximumBytes);
+    }
+
+    /**
+     * 把一次访问写入当前线程所在分条的环形缓冲区，写满一圈时尝试回放。缓冲区是有损的：
+     * 回放跟不上时较早的访问记录会被覆盖，只影响淘汰顺序的精度
+     */
+    private void recordRead(Node<K, V> node) {
+        int stripe = (int) Thread.currentThread().threadId() & (READ_BUFFER_STRIPES - 1);
+        int index = readCounters[stripe].getAndIncrement() & (READ_BUFFER_SIZE - 1);
+        readBuffers[stripe].lazySet(index, node);
+        if (index == READ_BUFFER_SIZE - 1 && policyLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffers() {
+        for (AtomicReferenceArray<Node<K, V>> buffer : readBuffers) {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                Node<K, V> node = buffer.getAndSet(i, null);
+                if (node != null && node.alive) {
+                    sketch.increment(node.key.hashCode());
+                    // 值会在缓存中被修改（例如表插入了记录），回放访问时顺便重新估算大小
+                    setWeight(node, weigher.applyAsLong(node.value));
+                    touch(node);
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * 一次访问对淘汰顺序的影响：窗口区和保护段内移到最近使用端，试用段中的条目晋升到保护段
+     */
+    private void touch(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW -> window.moveToLast(node);
+            case PROTECTED -> protectedSegment.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.region = Region.PROTECTED;
+                protectedSegment.addLast(node);
+                long protectedMax = (long) (maximumBytes * (1 - WINDOW_RATIO) * PROTECTED_RATIO);
+                while (protectedSegment.weight > protectedMax && protectedSegment.head != node) {
+                    Node<K, V> demoted = protectedSegment.head;
+                    protectedSegment.remove(demoted);
+                    demoted.region = Region.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+        }
+    }
+
+    /**
+     * 窗口区超额的条目进入试用段成为候选；总量超额时候选与试用段最久未用的条目比较访问频率，淘汰较低者
+     */
+    private void evict() {
+        long windowMax = Math.max(1, (long) (maximumBytes * WINDOW_RATIO));
+        Node<K, V> candidate = null;
+        while (window.weight > windowMax && window.head != null) {
+            Node<K, V> node = window.head;
+            window.remove(node);
+            node.region = Region.PROBATION;
+            probation.addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+        while (weight() > maximumBytes) {
+            Node<K, V> victim = probation.head != null ? probation.head
+                    : protectedSegment.head != null ? protectedSegment.head : window.head;
+            if (victim == null) {
+                return;
+            }
+            Node<K, V> evicted = victim;
+            if (candidate != null && candidate != victim && candidate.alive) {
+                if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                    evicted = victim;
+                } else {
+                    evicted = candidate;
+                    candidate = candidate.next; // 同一批进入试用段的下一个候选
+                }
+            } else if (victim == candidate) {
+                candidate = candidate.next;
+            }
+            evictNode(evicted);
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        if (!data.remove(node.key, node)) {
+            unlink(node);
+            return;
+        }
+        unlink(node);
+        evictions.increment();
+        evictedBytes.add(node.weight);
+        evictionListener.accept(node.key, node.value);
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (!node.alive) {
+            return;
+        }
+        node.alive = false;
+        switch (node.region) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> protectedSegment.remove(node);
+        }
+    }
+
+    private void setWeight(Node<K, V> node, long weight) {
+        long delta = weight - node.weight;
+        node.weight = weight;
+        switch (node.region) {
+            case WINDOW -> window.weight += delta;
+            case PROBATION -> probation.weight += delta;
+            case PROTECTED -> protectedSegment.weight += delta;
+        }
+    }
+
+    private long weight() {
+        return window.weight + probation.weight + protectedSegment.weight;
+    }
+
+    /**
+     * 4 行 Count-Min 草图，每个计数器 4 位（上限 15）；累计增加次数达到阈值时所有计数减半，让频率随时间衰减
+     */
+    private static final class FrequencySketch {
+        private static final int WIDTH = 1 << 10; // 每行计数器数
+        private static final int RESET_THRESHOLD = WIDTH * 10;
+        private static final int[] SEEDS = {0x97cb3127, 0x9e3779b9, 0xc2b2ae35, 0x27d4eb2f};
+
+        private final byte[][] rows = new byte[SEEDS.length][WIDTH];
+        private int additions;
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                if (rows[i][index] < 15) {
+                    rows[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= RESET_THRESHOLD) {
+                for (byte[] row : rows) {
+                    for (int j = 0; j < WIDTH; j++) {
+                        row[j] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                min = Math.min(min, rows[i][index(hash, i)]);
+            }
+            return min;
+        }
+
+        private static int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (WIDTH - 1);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package store;
+
+import executor.common.Record;
+import executor.common.TableSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import store.wal.LogRecord;
+import store.wal.LogRecordType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * 表的增量段文件（表名.delta）：写出一张修改过的表时，只把上次写出以来已提交的行修改追加为一帧，
+ * I/O 与修改量成正比，而不是与表大小成正比。加载时把基础文件（表名.db）和增量段合并；
+ * 增量段超过基础文件一定比例后由后台合并为新的基础文件。
+ * <pre>
+ * 帧: 负载长度(4B) | CRC32C(4B) | 负载
+ * 负载: LSN(8B) | 修改数(varint) | 每个修改的类型(1B) | 行镜像（RowCodec 格式，按修改顺序）
+ * </pre>
+ * INSERT 带修改后的行，DELETE 带修改前的行，UPDATE 依次带修改前、后的行。帧的 LSN 与基础文件头中的
+ * checkpointLsn 含义相同：加载时只应用 LSN 大于基础文件的帧，所以写出新的基础文件之后、删除增量段之前崩溃，
+ * 旧的帧也不会被重复应用。
+ */
+public final class TableDelta {
+    private static final Logger logger = LoggerFactory.getLogger(TableDelta.class);
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_UPDATE = 2;
+    private static final byte OP_DELETE = 3;
+
+    /**
+     * 增量段中的一帧
+     * @param lsn     写出这一帧时的日志末尾 LSN
+     * @param changes 行修改（只用到 type、before、after）
+     */
+    public record Frame(long lsn, List<LogRecord> changes) {
+    }
+
+    private TableDelta() {
+    }
+
+    /**
+     * 追加一帧并 fsync
+     * @param changes 只包含 INSERT、UPDATE、DELETE，按提交顺序排列
+     */
+    public static void append(Path path, TableSchema schema, long lsn, List<LogRecord> changes) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(256 + changes.size() * 32);
+        ByteBuffer head = ByteBuffer.allocate(8 + 10);
+        head.putLong(lsn);
+        putVarInt(head, changes.size());
+        payload.write(head.array(), 0, head.position());
+        List<Record> images = new ArrayList<>(changes.size());
+        for (LogRecord change : changes) {
+            switch (change.type()) {
+                case INSERT -> {
+                    payload.write(OP_INSERT);
+                    images.add(new Record(change.after()));
+                }
+                case UPDATE -> {
+                    payload.write(OP_UPDATE);
+                    images.add(new Record(change.before()));
+                    images.add(new Record(change.after()));
+                }
+                case DELETE -> {
+                    payload.write(OP_DELETE);
+                    images.add(new Record(change.before()));
+                }
+                default -> throw new IllegalArgumentException("Not a row change: " + change.type());
+            }
+        }
+        RowCodec.write(payload, schema, new TableSnapshot(lsn, images));
+
+        byte[] body = payload.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + body.length);
+        frame.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 读出全部完整的帧；末尾写到一半的帧（崩溃造成）被截掉，之后的追加从完整的帧之后开始
+     * @return 文件不存在时返回空列表
+     */
+    public static List<Frame> read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+        byte[] data = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<Frame> frames = new ArrayList<>();
+        while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(data, buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            frames.add(decode(ByteBuffer.wrap(data, buffer.position(), length).slice()));
+            buffer.position(buffer.position() + length);
+        }
+        if (buffer.position() < data.length) {
+            logger.warn("Truncating torn tail of delta segment {} at offset {} ({} bytes).", path, buffer.position(),
+                    data.length - buffer.position());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(buffer.position());
+                channel.force(false);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * 把 LSN 大于 baseLsn 的帧应用到基础文件的记录上，基础文件的记录边读边过滤，不整体读入内存。
+     * 先只遍历增量帧：UPDATE 和 DELETE 按字段完全相等找到原记录，优先匹配增量中先前插入的行，
+     * 否则记为要从基础文件中删除的行；基础文件的记录流过时按这个多重集合丢弃。
+     * 字段相同的重复行彼此不可区分，删除其中任意一条结果都一样
+     * @param rows 基础文件的记录
+     * @return 合并后的记录：基础文件中保留的记录，之后是增量中插入且没有被删除的行
+     */
+    public static Iterator<Record> merge(Iterator<Record> rows, List<Frame> frames, long baseLsn) {
+        Map<Map<String, Object>, Integer> removed = new HashMap<>(); // 基础文件中要删除的行 -> 条数
+        List<Record> inserted = new ArrayList<>();
+        Map<Map<String, Object>, ArrayDeque<Integer>> positions = new HashMap<>(); // 增量中插入的行 -> 在 inserted 中的位置
+        for (Frame frame : frames) {
+            if (frame.lsn() <= baseLsn) {
+                continue;
+            }
+            for (LogRecord change : frame.changes()) {
+                if (change.type() != LogRecordType.INSERT) {
+                    ArrayDeque<Integer> candidates = positions.get(change.before());
+                    Integer position = candidates == null ? null : candidates.poll();
+                    if (position != null) {
+                        inserted.set(position, null);
+                    } else {
+                        removed.merge(change.before(), 1, Integer::sum);
+                    }
+                }
+                if (change.type() != LogRecordType.DELETE) {
+                    Record row = new Record(change.after());
+                    inserted.add(row);
+                    positions.computeIfAbsent(row.fields(), key -> new ArrayDeque<>()).add(inserted.size() - 1);
+                }
+            }
+        }
+        return new Iterator<>() {
+            private Record next;
+            private Iterator<Record> tail;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (tail == null) {
+                        if (rows.hasNext()) {
+                            Record row = rows.next();
+                            Integer count = removed.get(row.fields());
+                            if (count == null) {
+                                next = row;
+                            } else if (count == 1) {
+                                removed.remove(row.fields());
+                            } else {
+                                removed.put(row.fields(), count - 1);
+                            }
+                            continue;
+                        }
+                        int missing = removed.values().stream().mapToInt(Integer::intValue).sum();
+                        if (missing > 0) {
+                            logger.warn("{} delta change(s) did not match any row and were skipped.", missing);
+                        }
+                        tail = inserted.stream().filter(Objects::nonNull).iterator();
+                    }
+                    if (!tail.hasNext()) {
+                        return false;
+                    }
+                    next = tail.next();
+                }
+                return true;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Record row = next;
+                next = null;
+                return row;
+            }
+        };
+    }
+
+    private static Frame decode(ByteBuffer payload) throws IOException {
+        long lsn = payload.getLong();
+        int count = getVarInt(payload);
+        byte[] ops = new byte[count];
+        payload.get(ops);
+        List<LogRecord> changes = new ArrayList<>(count);
+        try (RowCodec.Reader images = RowCodec.open(new ByteArrayInputStream(payload.array(),
+                payload.arrayOffset() + payload.position(), payload.remaining()))) {
+            for (byte op : ops) {
+                switch (op) {
+                    case OP_INSERT -> changes.add(LogRecord.insert(null, images.next().fields()));
+                    case OP_UPDATE -> {
+                        Map<String, Object> before = images.next().fields();
+                        changes.add(LogRecord.update(null, before, images.next().fields()));
+                    }
+                    case OP_DELETE -> changes.add(LogRecord.delete(null, images.next().fields()));
+                    default -> throw new IOException("Unknown delta operation " + op);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (NoSuchElementException e) {
+            throw new IOException("Delta frame has fewer row images than changes", e);
+        }
+        return new Frame(lsn, changes);
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in delta segment");
+    }
+}
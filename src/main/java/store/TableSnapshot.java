@@ -0,0 +1,14 @@
+package store;
+
+import executor.common.Record;
+
+import java.util.List;
+
+/**
+ * 表数据文件的内容：某一时刻表中的全部记录，以及这份快照包含了哪个 LSN 之前的所有已提交修改。
+ * 恢复时只重做提交 LSN 大于 checkpointLsn 的日志记录。
+ * @param checkpointLsn 快照对应的 WAL 位置；旧格式（只有记录数组）的文件视为 0
+ * @param records       表中的记录
+ */
+public record TableSnapshot(long checkpointLsn, List<Record> records) {
+}
@@ -0,0 +1,19 @@
+package store;
+
+import executor.common.CloseableIterator;
+import executor.common.Record;
+
+/**
+ * 逐行读取表数据文件，不在内存中构造整个记录列表。读取出错时 hasNext/next 抛出 UncheckedIOException
+ */
+public interface TableSnapshotReader extends CloseableIterator<Record> {
+    /**
+     * 快照包含了这个 LSN 之前的全部已提交修改；JSON 格式的文件中该字段可能在记录之后，读完全部记录后才确定
+     */
+    long checkpointLsn();
+
+    /**
+     * @return 文件是旧的 JSON 格式，需要改写为二进制格式
+     */
+    boolean isLegacyFormat();
+}
@@ -0,0 +1,61 @@
+package store;
+
+import executor.common.CloseableIterator;
+import executor.common.Record;
+import executor.common.RowMap;
+import executor.common.Table;
+import executor.common.impl.ColumnarTable;
+
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+
+/**
+ * 估算一张内存表占用的堆字节数：按前若干条记录的平均大小乘以记录数，开销与表大小无关；列式表直接按列数组的容量计算
+ */
+final class TableWeigher {
+    private static final int SAMPLE_RECORDS = 32;
+    private static final long TABLE_OVERHEAD = 256; // 表对象、记录列表和索引映射本身
+
+    private TableWeigher() {
+    }
+
+    static long estimateBytes(Table table) {
+        if (table instanceof ColumnarTable columnar) {
+            return TABLE_OVERHEAD + columnar.estimateBytes(); // 列数组的大小是已知的，不需要采样
+        }
+        int size = table.size();
+        if (size == 0) {
+            return TABLE_OVERHEAD;
+        }
+        int sampled = 0;
+        long sampleBytes = 0;
+        try (CloseableIterator<Record> iterator = table.scan()) {
+            while (sampled < SAMPLE_RECORDS && iterator.hasNext()) {
+                sampleBytes += estimateBytes(iterator.next());
+                sampled++;
+            }
+        } catch (ConcurrentModificationException e) {
+            // 采样期间表被修改，用已经采到的记录估算
+        }
+        long perRecord = sampled == 0 ? 128 : sampleBytes / sampled;
+        return TABLE_OVERHEAD + perRecord * size;
+    }
+
+    private static long estimateBytes(Record record) {
+        long bytes;
+        long perField;
+        if (record.fields() instanceof RowMap row) {
+            bytes = 16 + 32 + 16 + 4L * row.layout().size() + 8; // Record、RowMap、值数组和列表中的引用
+            perField = 0; // 字段名由布局共用
+        } else {
+            bytes = 64 + 8; // Record、HashMap 本身和列表中的引用
+            perField = 48; // 哈希表节点和键的引用
+        }
+        for (Map.Entry<String, Object> field : record.fields().entrySet()) {
+            bytes += perField;
+            Object value = field.getValue();
+            bytes += value instanceof String text ? 40 + 2L * text.length() : 16;
+        }
+        return bytes;
+    }
+}
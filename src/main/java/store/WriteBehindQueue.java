@@ -0,0 +1,214 @@
+package store;
+
+import executor.common.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 表缓存的后写队列：被淘汰的脏表交给后台线程写回磁盘，而不是直接丢弃。
+ * 写回完成之前表对象保留在缓冲区中，再次打开该表时直接从这里取回，不会读到磁盘上的旧数据。
+ * 缓冲区中表的估算内存总量有上限，超过上限时淘汰表的线程在 awaitCapacity 中等待写回（背压）。
+ */
+final class WriteBehindQueue {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+    private static final long RETRY_DELAY_MS = 100;
+
+    /**
+     * 把一张表写回磁盘
+     */
+    @FunctionalInterface
+    interface Writer {
+        /**
+         * @return 已写出或无需写出时返回 true；暂时无法写出（例如表上有进行中的事务）时返回 false，稍后重试
+         */
+        boolean write(String tableName, Table table);
+    }
+
+    private record Pending(Table table, long bytes) {
+    }
+
+    private final Writer writer;
+    private final long maxBytes;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private volatile long pendingBytes; // 在 lock 内修改，awaitCapacity 先无锁检查
+    private final Thread thread;
+    private volatile boolean started;
+    private volatile boolean running = true;
+
+    WriteBehindQueue(Writer writer, long maxBytes) {
+        this.writer = writer;
+        this.maxBytes = maxBytes;
+        this.thread = new Thread(this::run, "store-write-behind");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 启动后台写回线程；启动前提交的表只进入缓冲区
+     */
+    void start() {
+        started = true;
+        thread.start();
+    }
+
+    /**
+     * 提交一张被淘汰的表，不阻塞（在缓存的锁内调用）
+     */
+    void submit(String tableName, Table table) {
+        long bytes = TableWeigher.estimateBytes(table);
+        Pending previous = pending.put(tableName, new Pending(table, bytes));
+        lock.lock();
+        try {
+            pendingBytes += bytes - (previous == null ? 0 : previous.bytes());
+        } finally {
+            lock.unlock();
+        }
+        queue.add(tableName);
+    }
+
+    /**
+     * 取回仍在缓冲区中的表，调用方把它重新放回缓存
+     * @return 表不在缓冲区中时返回 null
+     */
+    Table reclaim(String tableName) {
+        Pending reclaimed = pending.remove(tableName);
+        if (reclaimed == null) {
+            return null;
+        }
+        release(reclaimed.bytes());
+        return reclaimed.table();
+    }
+
+    /**
+     * @return 缓冲区中的表，不移除
+     */
+    Table peek(String tableName) {
+        Pending entry = pending.get(tableName);
+        return entry == null ? null : entry.table();
+    }
+
+    /**
+     * 缓冲区超过内存上限时等待后台线程写回；写回线程未启动时不等待
+     */
+    void awaitCapacity() {
+        if (!started || pendingBytes <= maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (pendingBytes > maxBytes && running) {
+                released.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    long pendingBytes() {
+        lock.lock();
+        try {
+            return pendingBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待缓冲区中的表写回后停止后台线程，最多等待 timeoutMs 毫秒。
+     * 超时后不再等待，剩下的表留给日志恢复
+     * @return 没有写回的表名，全部写回时为空
+     */
+    Set<String> close(long timeoutMs) {
+        if (started) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            lock.lock();
+            try {
+                long remaining;
+                while (!pending.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                    released.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MS)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        Set<String> unwritten = Set.copyOf(pending.keySet());
+        if (!unwritten.isEmpty()) {
+            logger.warn("Write-behind stopped with {} table(s) not written back, leaving them to WAL recovery: {}",
+                    unwritten.size(), unwritten);
+        }
+        return unwritten;
+    }
+
+    private void run() {
+        while (running) {
+            String tableName;
+            try {
+                tableName = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            Pending entry = pending.get(tableName);
+            if (entry == null) {
+                continue; // 已被取回或已写出
+            }
+            boolean written;
+            try {
+                written = writer.write(tableName, entry.table());
+            } catch (RuntimeException e) {
+                logger.error("Write-behind of table '{}' failed, will retry", tableName, e);
+                written = false;
+            }
+            if (written) {
+                if (pending.remove(tableName, entry)) {
+                    release(entry.bytes());
+                }
+                continue;
+            }
+            queue.add(tableName);
+            try {
+                Thread.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                // close() 在停止线程
+            }
+        }
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            pendingBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package store.wal;
+
+/**
+ * 提交的持久化级别
+ */
+public enum Durability {
+    /** 提交返回前日志已经 fsync，多个并发提交共用一次 fsync（组提交） */
+    SYNC,
+    /** 提交返回前日志已写入操作系统，进程崩溃不丢数据；后台线程按 WAL_SYNC_INTERVAL_MS 周期 fsync */
+    BATCHED,
+    /** 提交只写入内存缓冲区，由后台线程周期写盘并 fsync，崩溃时可能丢失最近一个周期内的提交 */
+    ASYNC
+}
@@ -0,0 +1,9 @@
+package store.wal;
+
+/**
+ * 从 WAL 读出的一条记录及其位置
+ * @param lsn    这条记录末尾的 LSN；COMMIT 记录的 lsn 即事务的提交 LSN
+ * @param record 日志记录
+ */
+public record LogEntry(long lsn, LogRecord record) {
+}
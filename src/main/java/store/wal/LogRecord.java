@@ -0,0 +1,43 @@
+package store.wal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * 一条重做日志记录，以 JSON 形式写入 WAL
+ * @param type   记录类型
+ * @param table  表名，COMMIT 记录为 null
+ * @param before 修改前的行（UPDATE、DELETE）
+ * @param after  修改后的行（INSERT、UPDATE）
+ * @param schema 表结构 JSON（CREATE_TABLE）
+ * @param txnId  事务号，只在 COMMIT 记录中填写
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LogRecord(LogRecordType type, String table, Map<String, Object> before, Map<String, Object> after,
+                        String schema, long txnId) {
+
+    public static LogRecord insert(String table, Map<String, Object> after) {
+        return new LogRecord(LogRecordType.INSERT, table, null, after, null, 0);
+    }
+
+    public static LogRecord update(String table, Map<String, Object> before, Map<String, Object> after) {
+        return new LogRecord(LogRecordType.UPDATE, table, before, after, null, 0);
+    }
+
+    public static LogRecord delete(String table, Map<String, Object> before) {
+        return new LogRecord(LogRecordType.DELETE, table, before, null, null, 0);
+    }
+
+    public static LogRecord createTable(String table, String schemaJson) {
+        return new LogRecord(LogRecordType.CREATE_TABLE, table, null, null, schemaJson, 0);
+    }
+
+    public static LogRecord dropTable(String table) {
+        return new LogRecord(LogRecordType.DROP_TABLE, table, null, null, null, 0);
+    }
+
+    public static LogRecord commit(long txnId) {
+        return new LogRecord(LogRecordType.COMMIT, null, null, null, null, txnId);
+    }
+}
@@ -0,0 +1,14 @@
+package store.wal;
+
+/**
+ * 日志记录类型
+ */
+public enum LogRecordType {
+    INSERT,
+    UPDATE,
+    DELETE,
+    CREATE_TABLE,
+    DROP_TABLE,
+    /** 事务提交标记，之前属于同一事务的记录在恢复时才会被重做 */
+    COMMIT
+}
@@ -0,0 +1,233 @@
+package store.wal;
+
+import executor.common.CloseableIterator;
+import executor.common.ColumnDefinition;
+import executor.common.Index;
+import executor.common.Record;
+import executor.common.Table;
+import executor.common.TableSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按表并行的崩溃恢复重做：先把日志中已提交事务的记录按表拆分（每张表内保持日志顺序），
+ * 再由多个线程各自重做不同的表。不同表之间的记录互不依赖，同一张表的记录始终由一个线程顺序应用。
+ */
+public final class ParallelRedo {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelRedo.class);
+
+    /**
+     * 一条待重做的记录
+     * @param commitLsn 所属事务的提交 LSN，与表快照的 LSN 比较决定是否需要重做
+     * @param record    日志记录
+     */
+    public record Redo(long commitLsn, LogRecord record) {
+    }
+
+    /**
+     * 拆分结果
+     * @param tables           表名 -> 该表的重做记录（日志顺序），表按第一次出现的顺序排列
+     * @param transactions     已提交的事务数
+     * @param records          待重做的记录数
+     * @param discarded        没有 COMMIT 标记而丢弃的尾部记录数
+     * @param maxTransactionId 日志中最大的事务号
+     */
+    public record Plan(Map<String, List<Redo>> tables, long transactions, long records, int discarded,
+                       long maxTransactionId) {
+    }
+
+    /**
+     * 对一张表顺序应用它的重做记录
+     */
+    @FunctionalInterface
+    public interface TableRedo {
+        void redo(String tableName, List<Redo> redos);
+    }
+
+    private ParallelRedo() {
+    }
+
+    /**
+     * 丢弃未提交事务的记录，把已提交事务的记录按表拆分
+     */
+    public static Plan plan(List<LogEntry> entries) {
+        Map<String, List<Redo>> tables = new LinkedHashMap<>();
+        List<LogRecord> pending = new ArrayList<>();
+        long transactions = 0;
+        long records = 0;
+        long maxTransactionId = 0;
+        for (LogEntry entry : entries) {
+            LogRecord record = entry.record();
+            if (record.type() != LogRecordType.COMMIT) {
+                pending.add(record);
+                continue;
+            }
+            for (LogRecord committed : pending) {
+                tables.computeIfAbsent(committed.table(), name -> new ArrayList<>())
+                        .add(new Redo(entry.lsn(), committed));
+            }
+            records += pending.size();
+            pending.clear();
+            transactions++;
+            maxTransactionId = Math.max(maxTransactionId, record.txnId());
+        }
+        return new Plan(tables, transactions, records, pending.size(), maxTransactionId);
+    }
+
+    /**
+     * 用最多 threads 个线程并行重做各表，记录最多的表先开始；任一张表失败时抛出异常
+     */
+    public static void apply(Plan plan, TableRedo tableRedo, int threads) {
+        List<Map.Entry<String, List<Redo>>> work = new ArrayList<>(plan.tables().entrySet());
+        if (work.isEmpty()) {
+            return;
+        }
+        int poolSize = Math.max(1, Math.min(threads, work.size()));
+        if (poolSize == 1) {
+            work.forEach(entry -> tableRedo.redo(entry.getKey(), entry.getValue()));
+            return;
+        }
+        work.sort(Comparator.comparingInt((Map.Entry<String, List<Redo>> entry) -> entry.getValue().size()).reversed());
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "wal-redo-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(work.size());
+            for (Map.Entry<String, List<Redo>> entry : work) {
+                futures.add(executor.submit(() -> tableRedo.redo(entry.getKey(), entry.getValue())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during WAL redo", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("WAL redo failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 在表上重做一条行级记录；UPDATE 和 DELETE 按修改前的行找到原记录，找不到时抛出异常使恢复失败，
+     * 不能跳过这条记录而丢失已提交的修改。
+     * 日志中的值经过 JSON 往返，先按表结构转换回列的类型（如 TIMESTAMP 读回的是毫秒数）
+     * @throws IllegalStateException 表中没有与修改前的行相同的记录
+     */
+    public static void applyRow(Table table, LogRecord record) {
+        switch (record.type()) {
+            case INSERT -> table.insert(new Record(coerce(table.getSchema(), record.after())));
+            case UPDATE -> table.update(findRecord(table, record), new Record(coerce(table.getSchema(), record.after())));
+            case DELETE -> table.deleteRecord(findRecord(table, record));
+            default -> { }
+        }
+    }
+
+    /**
+     * @return 按列类型转换后的字段：数值转换为 INT、FLOAT 列的类型，毫秒数转换为 Timestamp；其它值不变
+     */
+    private static Map<String, Object> coerce(TableSchema schema, Map<String, Object> fields) {
+        if (schema == null) {
+            return fields;
+        }
+        Map<String, Object> coerced = new HashMap<>(fields);
+        for (ColumnDefinition column : schema.columns()) {
+            if (coerced.get(column.name()) instanceof Number number) {
+                switch (column.type()) {
+                    case INT -> coerced.put(column.name(), number.intValue());
+                    case FLOAT -> coerced.put(column.name(), number.doubleValue());
+                    case TIMESTAMP -> coerced.put(column.name(), new Timestamp(number.longValue()));
+                    default -> { }
+                }
+            }
+        }
+        return coerced;
+    }
+
+    /**
+     * 有主键索引时按主键查找，只比较主键相同的几行；没有主键的表才扫描全表。
+     * 表结构之外的字段无法转换类型，字段值按 sameValue 比较
+     */
+    private static Record findRecord(Table table, LogRecord record) {
+        Map<String, Object> before = coerce(table.getSchema(), record.before());
+        Index primaryKey = table.getPrimaryKeyIndex();
+        Object key = primaryKey == null ? null : keyOf(primaryKey.getColumns(), before);
+        try (CloseableIterator<Record> candidates = key != null ? primaryKey.search(key) : table.scan()) {
+            while (candidates.hasNext()) {
+                Record candidate = candidates.next();
+                if (sameFields(candidate.fields(), before)) {
+                    return candidate;
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to look up the row for " + record.type() + " on table '"
+                    + record.table() + "'", e);
+        }
+        logger.error("Cannot redo {} on table '{}': no row matches the logged before-image {}.",
+                record.type(), record.table(), before);
+        throw new IllegalStateException("No row in table '" + record.table() + "' matches the before-image of a "
+                + record.type() + " record");
+    }
+
+    /**
+     * @return 主键列的值，多列主键为各列值的列表；有主键列缺失或为 null 时返回 null
+     */
+    private static Object keyOf(List<String> columns, Map<String, Object> fields) {
+        List<Object> values = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            Object value = fields.get(column);
+            if (value == null) {
+                return null;
+            }
+            values.add(value);
+        }
+        return values.size() == 1 ? values.get(0) : values;
+    }
+
+    private static boolean sameFields(Map<String, Object> fields, Map<String, Object> expected) {
+        if (fields.size() != expected.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : expected.entrySet()) {
+            if (!fields.containsKey(entry.getKey()) || !sameValue(fields.get(entry.getKey()), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 数值按数值比较（5 与 5L、1.1f 与 1.1 相等），其它值按字符串形式比较，与 WHERE 中 = 的比较方式一致
+     */
+    private static boolean sameValue(Object actual, Object expected) {
+        if (actual == null || expected == null) {
+            return actual == expected;
+        }
+        if (actual instanceof Number && expected instanceof Number) {
+            try {
+                return new BigDecimal(actual.toString()).compareTo(new BigDecimal(expected.toString())) == 0;
+            } catch (NumberFormatException e) {
+                // NaN、Infinity
+            }
+        }
+        return actual.toString().equals(expected.toString());
+    }
+}
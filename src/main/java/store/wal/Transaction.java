@@ -0,0 +1,86 @@
+package store.wal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一个事务在提交前收集的重做记录和撤销动作。修改直接作用于内存中的表，
+ * 提交时重做记录连同 COMMIT 标记一次性追加到 WAL；回滚时按相反顺序执行撤销动作，不写日志。
+ * 事务还记录它修改过的表，StoreManager 据此在事务结束前阻止这些表的检查点快照。
+ */
+public final class Transaction {
+    private final long id;
+    private final boolean autoCommit;
+    private final List<LogRecord> redo = new ArrayList<>();
+    private final Deque<Runnable> undo = new ArrayDeque<>();
+    private final Set<String> tables = new LinkedHashSet<>();
+
+    /**
+     * @param autoCommit 是否是单条语句的自动提交事务
+     */
+    public Transaction(long id, boolean autoCommit) {
+        this.id = id;
+        this.autoCommit = autoCommit;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean isAutoCommit() {
+        return autoCommit;
+    }
+
+    /**
+     * 登记本事务将要修改的表
+     * @return 第一次登记该表时返回 true
+     */
+    public boolean enlist(String tableName) {
+        return tables.add(tableName);
+    }
+
+    /**
+     * @return 本事务修改过的表，按第一次修改的顺序排列
+     */
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * 记录一次已经作用于内存的修改
+     * @param record 重做记录
+     * @param undoAction 撤销这次修改的动作
+     */
+    public void add(LogRecord record, Runnable undoAction) {
+        redo.add(record);
+        undo.push(undoAction);
+    }
+
+    public boolean isEmpty() {
+        return redo.isEmpty();
+    }
+
+    /**
+     * @return 重做记录加上 COMMIT 标记，按写入 WAL 的顺序排列
+     */
+    public List<LogRecord> commitRecords() {
+        List<LogRecord> records = new ArrayList<>(redo.size() + 1);
+        records.addAll(redo);
+        records.add(LogRecord.commit(id));
+        return records;
+    }
+
+    /**
+     * 按相反顺序撤销本事务的所有修改
+     */
+    public void rollback() {
+        while (!undo.isEmpty()) {
+            undo.pop().run();
+        }
+        redo.clear();
+    }
+}
@@ -0,0 +1,492 @@
+package store.wal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import common.StorageConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * 只追加的预写日志 (WAL)，由目录中的多个段文件组成，段文件名是该段第一条记录的 LSN。
+ * <pre>
+ * 段文件 = | magic(4) | startLsn(8) | frame | frame | ...
+ * frame  = | length(4) | crc32c(4) | JSON payload(length) |
+ * </pre>
+ * LSN 是日志的逻辑字节偏移，在整个日志中单调递增；段写满 WAL_SEGMENT_SIZE 后在两批记录之间切换到新段，
+ * 一批记录（一个事务）不会跨段。检查点之后，不再被任何表需要的旧段整段删除。
+ * 追加只写入内存缓冲区；写盘由“领导者”线程完成：第一个需要落盘的提交者把缓冲区中所有已追加的记录
+ * 一次写出并 fsync，期间到达的提交者等待并由下一次写盘一并带走，即组提交。
+ */
+public class WriteAheadLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final int MAGIC = 0x4F57414C; // "OWAL"
+    private static final int SEGMENT_HEADER_SIZE = 12;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final Durability durability;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final TreeMap<Long, Path> segments = new TreeMap<>(); // startLsn -> 段文件
+    private FileChannel active; // 最后一个段，只有领导者线程写它
+    private long activeStartLsn;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedLsn; // 已追加（可能仍在内存中）的日志末尾
+    private long writtenLsn; // 已写入操作系统的日志末尾
+    private long durableLsn; // 已 fsync 的日志末尾
+    private boolean flushing; // 有领导者线程正在写盘
+    private IOException failure; // 写盘失败后日志不再可用
+
+    private volatile Thread syncer; // SYNC 级别下为 null
+    private volatile boolean running = true;
+
+    private WriteAheadLog(Path directory, Durability durability) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.put(segmentStartLsn(file), file);
+            }
+        }
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            for (Map.Entry<Long, Path> segment : segments.headMap(segments.lastKey()).entrySet()) {
+                checkHeader(segment.getValue(), segment.getKey(), false);
+            }
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            if (checkHeader(last.getValue(), last.getKey(), true)) {
+                active = FileChannel.open(last.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                activeStartLsn = last.getKey();
+            } else {
+                // 创建段时写段头之前崩溃，段中还没有任何记录，重新写段头
+                logger.warn("Rewriting the incomplete header of WAL segment {}.", last.getValue());
+                openSegment(last.getKey());
+            }
+        }
+        long end = activeStartLsn + Math.max(0, active.size() - SEGMENT_HEADER_SIZE);
+        appendedLsn = writtenLsn = durableLsn = end;
+        logger.info("Opened WAL '{}' ({}), {} segment(s), end LSN {}.", directory, durability, segments.size(), end);
+    }
+
+    /**
+     * 打开目录中的日志（没有段时创建第一个段）；BATCHED 和 ASYNC 级别下在打开后启动后台 fsync 线程
+     * @throws IOException 段文件名、段头的 magic 或起始 LSN 不对，即目录中有损坏的或不属于本日志的段
+     */
+    public static WriteAheadLog open(Path directory, Durability durability) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory, durability);
+        if (durability != Durability.SYNC) {
+            Thread thread = new Thread(wal::syncLoop, "wal-syncer");
+            thread.setDaemon(true);
+            wal.syncer = thread;
+            thread.start();
+        }
+        return wal;
+    }
+
+    private static long segmentStartLsn(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file " + file + " in the WAL directory: not a segment name", e);
+        }
+    }
+
+    /**
+     * 校验段头与写入时一致：magic 正确，起始 LSN 与文件名相同
+     * @param last 是否为最后一个段；只有最后一个段允许段头不完整（创建时崩溃）
+     * @return 段头完整且正确时返回 true，最后一个段的段头不完整时返回 false
+     */
+    private static boolean checkHeader(Path file, long startLsn, boolean last) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        if (header.hasRemaining()) {
+            if (last) {
+                return false;
+            }
+            throw new IOException("Corrupt WAL segment " + file + ": header is only " + header.position()
+                    + " of " + SEGMENT_HEADER_SIZE + " bytes");
+        }
+        int magic = header.getInt(0);
+        if (magic != MAGIC) {
+            throw new IOException(String.format("WAL segment %s has magic 0x%08X instead of 0x%08X: "
+                    + "corrupt or not a WAL segment", file, magic, MAGIC));
+        }
+        long headerLsn = header.getLong(4);
+        if (headerLsn != startLsn) {
+            throw new IOException("WAL segment " + file + " starts at LSN " + headerLsn
+                    + " but its file name says " + startLsn + ": corrupt or copied from another log");
+        }
+        return true;
+    }
+
+    /**
+     * 恢复时按 LSN 顺序读出所有段中的完整记录；最后一段中遇到长度或校验和不对的帧即认为是崩溃时
+     * 写了一半的尾部，从该处截断。必须在追加任何记录之前调用
+     */
+    public List<LogEntry> readAll() throws IOException {
+        List<LogEntry> entries = new ArrayList<>();
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            boolean last = segment.getKey() == activeStartLsn;
+            try (FileChannel channel = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                long end = readSegment(channel, segment.getKey(), entries);
+                long size = channel.size();
+                if (end >= size) {
+                    continue;
+                }
+                if (!last) {
+                    throw new IOException("Corrupt WAL segment " + segment.getValue() + " at offset " + end);
+                }
+                logger.warn("Truncating torn WAL tail: {} byte(s) after LSN {}.", size - end,
+                        segment.getKey() + end - SEGMENT_HEADER_SIZE);
+                active.truncate(end);
+                lock.lock();
+                try {
+                    appendedLsn = writtenLsn = durableLsn = segment.getKey() + end - SEGMENT_HEADER_SIZE;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 顺序读一个段中的帧，用一个大缓冲区批量读取
+     * @return 最后一个完整帧之后的文件偏移
+     */
+    private long readSegment(FileChannel channel, long startLsn, List<LogEntry> entries) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        long bufferStart = SEGMENT_HEADER_SIZE; // buffer[0] 对应的文件偏移
+        buffer.limit(0);
+        CRC32C crc = new CRC32C();
+        long position = SEGMENT_HEADER_SIZE;
+        while (true) {
+            int offset = (int) (position - bufferStart);
+            if (buffer.limit() - offset < FRAME_HEADER_SIZE
+                    || buffer.limit() - offset < (long) FRAME_HEADER_SIZE + buffer.getInt(offset)) {
+                // 缓冲区中剩余的不是完整帧，从 position 处重新装满缓冲区
+                if (position + FRAME_HEADER_SIZE > size) {
+                    return position;
+                }
+                int length = readInt(channel, position);
+                if (length <= 0 || position + FRAME_HEADER_SIZE + length > size) {
+                    return position;
+                }
+                int needed = FRAME_HEADER_SIZE + length;
+                if (buffer.capacity() < needed) {
+                    buffer = ByteBuffer.allocate(needed);
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                bufferStart = position;
+                offset = 0;
+            }
+            int length = buffer.getInt(offset);
+            int checksum = buffer.getInt(offset + 4);
+            if (length <= 0) {
+                return position;
+            }
+            crc.reset();
+            crc.update(buffer.array(), offset + FRAME_HEADER_SIZE, length);
+            if ((int) crc.getValue() != checksum) {
+                return position;
+            }
+            LogRecord record = mapper.readValue(buffer.array(), offset + FRAME_HEADER_SIZE, length, LogRecord.class);
+            position += FRAME_HEADER_SIZE + length;
+            entries.add(new LogEntry(startLsn + position - SEGMENT_HEADER_SIZE, record));
+        }
+    }
+
+    /**
+     * 把一组记录作为连续的帧追加到日志缓冲区，组内记录在日志中不会与其他线程的记录交错，也不会跨段
+     * @return 这组记录末尾的 LSN，交给 commit 等待落盘
+     */
+    public long append(List<LogRecord> records) throws IOException {
+        // 序列化和校验和在锁外完成
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        CRC32C crc = new CRC32C();
+        for (LogRecord record : records) {
+            byte[] payload = mapper.writeValueAsBytes(record);
+            crc.reset();
+            crc.update(payload);
+            ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+            frameHeader.putInt(payload.length).putInt((int) crc.getValue());
+            frames.write(frameHeader.array());
+            frames.write(payload);
+        }
+        lock.lock();
+        try {
+            checkUsable();
+            frames.writeTo(pending);
+            appendedLsn += frames.size();
+            return appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按持久化级别等待 lsn 之前的日志写出
+     */
+    public void commit(long lsn) throws IOException {
+        switch (durability) {
+            case SYNC -> flush(lsn, true);
+            case BATCHED -> flush(lsn, false);
+            case ASYNC -> { }
+        }
+    }
+
+    /**
+     * 把已追加的全部日志写盘并 fsync
+     */
+    public void sync() throws IOException {
+        flush(getAppendedLsn(), true);
+    }
+
+    /**
+     * 删除所有记录都在 lsn 之前的段；检查点确认这些记录已经包含在各表的快照中之后调用。当前段不删除
+     */
+    public void truncateBefore(long lsn) throws IOException {
+        List<Path> obsolete = new ArrayList<>();
+        lock.lock();
+        try {
+            Long next;
+            // 一个段的末尾就是下一个段的起点
+            while ((next = segments.higherKey(segments.firstKey())) != null && next <= lsn) {
+                obsolete.add(segments.pollFirstEntry().getValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Path segment : obsolete) {
+            Files.deleteIfExists(segment);
+        }
+        if (!obsolete.isEmpty()) {
+            logger.info("Deleted {} WAL segment(s) before LSN {}.", obsolete.size(), lsn);
+        }
+    }
+
+    /**
+     * 数据已经完整地持久化到表文件后调用：切换到新段并删除之前的全部段
+     */
+    public void reset() throws IOException {
+        sync();
+        long lsn;
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            checkUsable();
+            lsn = writtenLsn;
+            if (lsn > activeStartLsn) {
+                active.close();
+                openSegment(lsn);
+            }
+        } finally {
+            lock.unlock();
+        }
+        truncateBefore(lsn);
+    }
+
+    /**
+     * @return 最早一个段的起始 LSN，与 getAppendedLsn 之差即日志的字节数
+     */
+    public long getStartLsn() {
+        lock.lock();
+        try {
+            return segments.firstKey();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAppendedLsn() {
+        lock.lock();
+        try {
+            return appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDurableLsn() {
+        lock.lock();
+        try {
+            return durableLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Thread syncer = this.syncer;
+        if (syncer != null) {
+            LockSupport.unpark(syncer);
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            sync();
+        } finally {
+            active.close();
+        }
+    }
+
+    /**
+     * 组提交：没有领导者时由当前线程成为领导者，带走缓冲区中所有已追加的记录写盘；
+     * 否则等待当前领导者完成后再检查自己的记录是否已经落盘
+     * @param force 是否需要 fsync
+     */
+    private void flush(long lsn, boolean force) throws IOException {
+        lock.lock();
+        try {
+            while ((force ? durableLsn : writtenLsn) < lsn) {
+                checkUsable();
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                ByteArrayOutputStream batch = pending;
+                pending = new ByteArrayOutputStream();
+                long target = appendedLsn;
+                long from = writtenLsn;
+                boolean rotate = from - activeStartLsn >= StorageConfig.WAL_SEGMENT_SIZE;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    if (rotate) {
+                        // 缓冲区中只有完整的批次，在这里换段不会把一个事务拆到两个段中
+                        active.force(false);
+                        active.close();
+                        lock.lock();
+                        try {
+                            openSegment(from);
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                    long position = SEGMENT_HEADER_SIZE + from - activeStartLsn;
+                    while (buffer.hasRemaining()) {
+                        active.write(buffer, position + buffer.position());
+                    }
+                    if (force) {
+                        active.force(false);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                flushing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    writtenLsn = target;
+                    if (force) {
+                        durableLsn = target;
+                    }
+                }
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * BATCHED 和 ASYNC 级别下周期性地写盘并 fsync
+     */
+    private void syncLoop() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(StorageConfig.WAL_SYNC_INTERVAL_MS));
+            try {
+                sync();
+            } catch (IOException e) {
+                logger.error("Background WAL sync failed", e);
+            }
+        }
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("WAL " + directory + " is unusable after a write failure", failure);
+        }
+    }
+
+    /**
+     * 创建从 startLsn 开始的新段并设为当前段，调用方持有锁
+     */
+    private void openSegment(long startLsn) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, startLsn, SEGMENT_SUFFIX));
+        active = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC).putLong(startLsn).flip();
+        while (header.hasRemaining()) {
+            active.write(header, header.position());
+        }
+        active.force(true);
+        activeStartLsn = startLsn;
+        segments.put(startLsn, file);
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return -1;
+            }
+        }
+        return buffer.getInt(0);
+    }
+}
@@ -0,0 +1,20 @@
+package common;
+
+import executor.common.impl.TableLayout;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 配置解析：错误的系统属性值不能让配置类初始化失败
+ */
+class StorageConfigTest {
+
+    @Test
+    void tableLayoutFallsBackToRowOnAnUnknownValue() {
+        assertEquals(TableLayout.ROW, StorageConfig.parseTableLayout(null));
+        assertEquals(TableLayout.ROW, StorageConfig.parseTableLayout(" "));
+        assertEquals(TableLayout.COLUMNAR, StorageConfig.parseTableLayout(" columnar "));
+        assertEquals(TableLayout.ROW, StorageConfig.parseTableLayout("column-store"));
+    }
+}
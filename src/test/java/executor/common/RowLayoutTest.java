@@ -0,0 +1,38 @@
+package executor.common;
+
+import common.StorageConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行布局：按字段名共用的实例有数量上限，一次性的布局不进入缓存
+ */
+class RowLayoutTest {
+
+    @Test
+    void sharedLayoutsAreReusedUntilEvicted() {
+        RowLayout first = RowLayout.of("evict-me", "b");
+        assertSame(first, RowLayout.of(List.of("evict-me", "b")));
+
+        for (int i = 0; i <= StorageConfig.ROW_LAYOUT_CACHE_SIZE; i++) {
+            RowLayout.of("c" + i);
+        }
+        RowLayout again = RowLayout.of("evict-me", "b");
+        assertNotSame(first, again, "the cache keeps at most ROW_LAYOUT_CACHE_SIZE layouts");
+        assertEquals(first.names(), again.names());
+    }
+
+    @Test
+    void createdLayoutsAreNotShared() {
+        List<String> names = List.of("x", "y");
+        RowLayout created = RowLayout.create(names);
+        assertNotSame(created, RowLayout.create(names));
+        assertNotSame(created, RowLayout.of(names));
+        assertEquals(1, created.ordinal("y"));
+        assertEquals(-1, created.ordinal("z"));
+        assertThrows(IllegalArgumentException.class, () -> RowLayout.create(List.of("x", "x")));
+    }
+}
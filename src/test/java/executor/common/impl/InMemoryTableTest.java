@@ -0,0 +1,223 @@
+package executor.common.impl;
+
+import executor.common.CloseableIterator;
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行存表：删除只置删除位、修改在原位置替换，死行足够多时压缩；scan 读取开始时刻的快照
+ */
+class InMemoryTableTest {
+    private static final TableSchema KEYED = new TableSchema("keyed", List.of(
+            new ColumnDefinition("id", ColumnType.INT, 4, true),
+            new ColumnDefinition("v", ColumnType.INT, 4)));
+    private static final TableSchema KEYLESS = new TableSchema("keyless", List.of(
+            new ColumnDefinition("k", ColumnType.INT, 4),
+            new ColumnDefinition("v", ColumnType.INT, 4)));
+
+    @Test
+    void updateReplacesTheRowInPlace() {
+        InMemoryTable table = new InMemoryTable(KEYED);
+        for (int id = 0; id < 5; id++) {
+            table.insert(keyed(id, id));
+        }
+        long version = table.getVersion();
+        table.update(table.getRecord("2"), keyed(2, 200));
+        assertEquals(List.of(0, 1, 200, 3, 4), values(table));
+        assertEquals(version + 1, table.getVersion());
+        assertThrows(IllegalArgumentException.class, () -> table.update(keyed(9, 9), keyed(9, 10)));
+    }
+
+    @Test
+    void deletesLeaveTheOtherRowsAndKeysIntact() {
+        InMemoryTable table = new InMemoryTable(KEYED);
+        for (int id = 0; id < 100; id++) {
+            table.insert(keyed(id, id));
+        }
+        table.delete(record -> (Integer) record.getField("id") % 2 == 0);
+        table.deleteRecord(keyed(1, 1));
+        assertEquals(49, table.size());
+        assertEquals(49, table.getAllRecords().size());
+        assertNull(table.getRecord("1"));
+        assertNull(table.getRecord("50"));
+        assertEquals(51, table.getRecord("51").getField("v"));
+
+        // 删除的行保留到压缩，之后插入的行排在末尾
+        table.insert(keyed(1, -1));
+        List<Integer> scanned = values(table);
+        assertEquals(-1, scanned.get(scanned.size() - 1));
+        assertEquals(3, scanned.get(0));
+    }
+
+    @Test
+    void compactionKeepsOrderKeysAndLaterInserts() {
+        InMemoryTable table = new InMemoryTable(KEYED);
+        for (int id = 0; id < 5_000; id++) {
+            table.insert(keyed(id, id));
+        }
+        table.delete(record -> (Integer) record.getField("id") < 4_000); // 死行超过阈值和一半，压缩
+        assertEquals(1_000, table.size());
+        for (int id = 5_000; id < 5_100; id++) {
+            table.insert(keyed(id, id));
+        }
+        table.update(table.getRecord("4500"), keyed(4_500, -4_500));
+
+        List<Integer> scanned = values(table);
+        assertEquals(1_100, scanned.size());
+        assertEquals(4_000, scanned.get(0));
+        assertEquals(-4_500, scanned.get(500));
+        assertEquals(5_099, scanned.get(1_099));
+        assertNull(table.getRecord("3999"));
+        assertEquals(5_050, table.getRecord("5050").getField("v"));
+    }
+
+    @Test
+    void failedConditionKeepsRowsDeletedSoFar() {
+        InMemoryTable table = new InMemoryTable(KEYED);
+        for (int id = 0; id < 10; id++) {
+            table.insert(keyed(id, id));
+        }
+        assertThrows(IllegalStateException.class, () -> table.delete(record -> {
+            int id = (Integer) record.getField("id");
+            if (id == 5) {
+                throw new IllegalStateException("condition failed");
+            }
+            return id < 3;
+        }));
+        assertEquals(List.of(3, 4, 5, 6, 7, 8, 9), values(table));
+    }
+
+    @Test
+    void tablesWithoutAKeyMatchWholeRecordsAndRemoveOneDuplicate() {
+        InMemoryTable table = new InMemoryTable(KEYLESS);
+        for (int i = 0; i < 3; i++) {
+            table.insert(keyless(7, 1));
+        }
+        table.insert(keyless(8, 2));
+        table.deleteRecord(keyless(7, 1));
+        assertEquals(3, table.size());
+        table.update(keyless(8, 2), keyless(8, 3));
+        assertEquals(List.of(1, 1, 3), values(table));
+        assertNull(table.getRecord("8"));
+    }
+
+    @Test
+    void scanSeesTheTableAsOfItsStart() {
+        InMemoryTable table = new InMemoryTable(KEYED);
+        for (int id = 0; id < 3_000; id++) {
+            table.insert(keyed(id, id));
+        }
+        List<Integer> seen = new ArrayList<>();
+        try (CloseableIterator<Record> scan = table.scan()) {
+            seen.add((Integer) scan.next().getField("v"));
+            table.update(table.getRecord("1"), keyed(1, -1));
+            table.update(table.getRecord("2999"), keyed(2_999, -2_999));
+            table.delete(record -> (Integer) record.getField("id") < 2_000); // 同时触发压缩
+            table.insert(keyed(9_999, 9_999));
+            scan.forEachRemaining(record -> seen.add((Integer) record.getField("v")));
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int id = 0; id < 3_000; id++) {
+            expected.add(id);
+        }
+        assertEquals(expected, seen, "the scan ignores changes made after it started");
+
+        List<Integer> after = values(table);
+        assertEquals(1_001, after.size());
+        assertEquals(2_000, after.get(0));
+        assertEquals(-2_999, after.get(999));
+        assertEquals(9_999, after.get(1_000));
+    }
+
+    @Test
+    void abandonedScansDoNotBlockWriters() {
+        InMemoryTable table = new InMemoryTable(KEYED);
+        for (int id = 0; id < 2_000; id++) {
+            table.insert(keyed(id, id));
+        }
+        CloseableIterator<Record> open = table.scan();
+        CloseableIterator<Record> closed = table.scan();
+        closed.close();
+        for (int round = 0; round < 5; round++) {
+            for (int id = 0; id < 2_000; id++) {
+                table.update(table.getRecord(String.valueOf(id)), keyed(id, round));
+            }
+        }
+        assertEquals(0, open.next().getField("v"));
+        open.close();
+        assertTrue(values(table).stream().allMatch(v -> v == 4));
+    }
+
+    @Test
+    void concurrentScansSeeConsistentStates() throws Exception {
+        InMemoryTable table = new InMemoryTable(KEYED);
+        int rows = 2_000;
+        for (int id = 0; id < rows; id++) {
+            table.insert(keyed(id, id));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // 写入方每次删除最旧的一行、再追加一行：任一时刻的行都是一段连续的 id
+        Thread writer = new Thread(() -> {
+            try {
+                for (int next = rows; running.get(); next++) {
+                    table.deleteRecord(table.getRecord(String.valueOf(next - rows)));
+                    table.insert(keyed(next, next));
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                Set<Integer> ids = new HashSet<>();
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                try (CloseableIterator<Record> scan = table.scan()) {
+                    while (scan.hasNext()) {
+                        int id = (Integer) scan.next().getField("id");
+                        assertTrue(ids.add(id), "id " + id + " returned twice");
+                        min = Math.min(min, id);
+                        max = Math.max(max, id);
+                    }
+                }
+                assertTrue(ids.size() == rows || ids.size() == rows - 1, "size " + ids.size());
+                assertEquals(ids.size(), max - min + 1, "ids form one contiguous range");
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        assertNull(failure.get());
+    }
+
+    private static Record keyed(int id, int v) {
+        return new Record(Map.of("id", id, "v", v));
+    }
+
+    private static Record keyless(int k, int v) {
+        return new Record(Map.of("k", k, "v", v));
+    }
+
+    private static List<Integer> values(InMemoryTable table) {
+        List<Integer> values = new ArrayList<>();
+        try (CloseableIterator<Record> scan = table.scan()) {
+            scan.forEachRemaining(record -> values.add((Integer) record.getField("v")));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,162 @@
+package executor.common.impl;
+
+import executor.common.CloseableIterator;
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Index;
+import executor.common.Record;
+import executor.common.Table;
+import executor.common.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 主键索引：删除后探测链仍然完整，多列主键和重复键都能查到，不出现在 getIndexes 中。两种表布局都要满足
+ */
+class PrimaryKeyIndexTest {
+    private static final TableSchema SINGLE = new TableSchema("single", List.of(
+            new ColumnDefinition("id", ColumnType.INT, 4, true),
+            new ColumnDefinition("name", ColumnType.VARCHAR, 32)));
+    private static final TableSchema COMPOSITE = new TableSchema("composite", List.of(
+            new ColumnDefinition("a", ColumnType.INT, 4, true),
+            new ColumnDefinition("b", ColumnType.VARCHAR, 32, true),
+            new ColumnDefinition("v", ColumnType.INT, 4)));
+
+    @Test
+    void lookupsStayCorrectAfterDeletesUpdatesAndGrowth() {
+        for (TableLayout layout : TableLayout.values()) {
+            Table table = TableFactory.create(SINGLE, layout);
+            for (int id = 0; id < 5_000; id++) {
+                table.insert(row(id, "n" + id));
+            }
+            for (int id = 0; id < 5_000; id += 3) {
+                table.deleteRecord(row(id, "n" + id));
+            }
+            table.update(table.getRecord("1"), row(10_001, "moved"));
+            for (int id = 5_000; id < 6_000; id++) {
+                table.insert(row(id, "n" + id));
+            }
+
+            for (int id = 0; id < 6_000; id++) {
+                Record found = table.getRecord(String.valueOf(id));
+                boolean expected = id >= 5_000 || id % 3 != 0 && id != 1;
+                assertEquals(expected, found != null, layout + " id " + id);
+                if (found != null) {
+                    assertEquals("n" + id, found.getField("name"));
+                }
+            }
+            assertEquals("moved", table.getRecord("10001").getField("name"));
+            assertEquals(6_000 - 1_667, table.size(), layout.toString());
+        }
+    }
+
+    @Test
+    void compositeKeysDuplicatesAndMissingKeyColumns() {
+        for (TableLayout layout : TableLayout.values()) {
+            Table table = TableFactory.create(COMPOSITE, layout);
+            table.insert(composite(1, "x", 10));
+            table.insert(composite(1, "y", 20));
+            table.insert(composite(1, "x", 30)); // 不要求唯一
+            Map<String, Object> noKey = new HashMap<>();
+            noKey.put("a", 2);
+            noKey.put("b", null);
+            table.insert(new Record(noKey));
+
+            Index primaryKey = table.getPrimaryKeyIndex();
+            assertEquals(List.of("a", "b"), primaryKey.getColumns());
+            assertEquals(List.of(10, 30), values(primaryKey.search(List.of(1, "x"))), layout.toString());
+            assertEquals(List.of(20), values(primaryKey.search(List.of("1", "y"))), "keys compare as strings");
+            assertTrue(values(primaryKey.search(1)).isEmpty(), "a single value cannot match a two-column key");
+            assertTrue(values(primaryKey.search(List.of(2, "null"))).isEmpty(), "rows with a null key column are not indexed");
+            assertNull(table.getRecord("1"));
+
+            table.delete(record -> Integer.valueOf(10).equals(record.getField("v")));
+            assertEquals(List.of(30), values(primaryKey.search(List.of(1, "x"))));
+        }
+    }
+
+    @Test
+    void primaryKeyIndexIsExposedSeparatelyFromAddedIndexes() {
+        for (TableLayout layout : TableLayout.values()) {
+            Table table = TableFactory.create(SINGLE, layout);
+            Index primaryKey = table.getPrimaryKeyIndex();
+            assertNotNull(primaryKey);
+            assertSame(primaryKey, table.getIndex(PrimaryKeyIndex.NAME));
+            assertTrue(table.getIndexes().isEmpty());
+            assertThrows(UnsupportedOperationException.class, () -> primaryKey.onInsert(row(1, "a")));
+
+            CountingIndex byName = new CountingIndex("by_name");
+            table.addIndex(byName);
+            table.insert(row(1, "a"));
+            table.update(table.getRecord("1"), row(1, "b"));
+            table.deleteRecord(row(1, "b"));
+            assertEquals(List.of(byName), table.getIndexes());
+            assertEquals(2, byName.inserts);
+            assertEquals(2, byName.deletes);
+            assertThrows(IllegalArgumentException.class, () -> table.addIndex(new CountingIndex(PrimaryKeyIndex.NAME)));
+
+            TableSchema keyless = new TableSchema("keyless", List.of(new ColumnDefinition("v", ColumnType.INT, 4)));
+            assertNull(TableFactory.create(keyless, layout).getPrimaryKeyIndex());
+        }
+    }
+
+    /**
+     * 只记录维护次数的二级索引
+     */
+    private static final class CountingIndex implements Index {
+        private final String name;
+        int inserts;
+        int deletes;
+
+        CountingIndex(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public List<String> getColumns() {
+            return List.of("name");
+        }
+
+        @Override
+        public CloseableIterator<Record> search(Object key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void onInsert(Record record) {
+            inserts++;
+        }
+
+        @Override
+        public void onDelete(Record record) {
+            deletes++;
+        }
+    }
+
+    private static Record row(int id, String name) {
+        return new Record(Map.of("id", id, "name", name));
+    }
+
+    private static Record composite(int a, String b, int v) {
+        return new Record(Map.of("a", a, "b", b, "v", v));
+    }
+
+    private static List<Object> values(CloseableIterator<Record> records) {
+        List<Object> values = new ArrayList<>();
+        try (records) {
+            records.forEachRemaining(record -> values.add(record.getField("v")));
+        }
+        return values;
+    }
+}
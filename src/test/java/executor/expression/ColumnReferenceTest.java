@@ -0,0 +1,34 @@
+package executor.expression;
+
+import executor.common.Record;
+import executor.common.RowLayout;
+import executor.common.RowMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 列引用：绑定返回新的引用，计划中的节点不变；任何布局的行都按字段名得到正确的值
+ */
+class ColumnReferenceTest {
+
+    @Test
+    void bindingDoesNotChangeTheSharedReference() {
+        RowLayout table = RowLayout.create(List.of("id", "name"));
+        RowLayout projection = RowLayout.create(List.of("name"));
+        Record row = new Record(RowMap.of(table, new Object[]{1, "a"}));
+        Record projected = new Record(RowMap.of(projection, new Object[]{"b"}));
+
+        ColumnReference shared = new ColumnReference("name");
+        ColumnReference bound = shared.bind(table);
+        assertNotSame(shared, bound);
+        assertEquals("a", bound.evaluate(row));
+        assertEquals("b", bound.evaluate(projected), "a row of another layout is read by name");
+        assertEquals("c", bound.evaluate(new Record(Map.of("name", "c"))));
+        assertEquals("a", shared.evaluate(row));
+        assertNull(new ColumnReference("missing").bind(table).evaluate(row));
+    }
+}
@@ -45,7 +45,7 @@ public class SQLTest {
 //        ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
 //        ConcurrentHashMap<String, TableSchema> schemas = new ConcurrentHashMap<>();
 
-        StoreManager storeManager = new StoreManager();
+        StoreManager storeManager = StoreManager.open();
         StorageEngine storageEngine = new StorageEngineImpl(storeManager);
 
         ExecutionEngine executionEngine = new ExecutionEngine(storageEngine);
@@ -0,0 +1,164 @@
+package storage.buffer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import storage.page.Page;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓冲池：分区之间的淘汰和写回不丢数据，页全部被固定时报告缓冲池已满，关闭时被固定的脏页不会被悄悄丢弃
+ */
+class BufferPoolManagerTest {
+    private final String fileName = "test/bpm-" + System.nanoTime() + ".db";
+
+    @AfterEach
+    void deleteFile() {
+        new File(System.getProperty("user.home") + File.separator + ".oursql" + File.separator + fileName).delete();
+    }
+
+    @Test
+    void evictedDirtyPagesAreWrittenBackAcrossPartitions() throws IOException {
+        try (DiskManager disk = new DiskManager(fileName);
+             BufferPoolManager pool = new BufferPoolManager(64, disk, ReplacerPolicy.LRU, 4)) {
+            for (int i = 0; i < 500; i++) {
+                Page page = pool.newPage();
+                page.getBuffer().putInt(0, page.getPageId() * 31);
+                pool.unpinPage(page.getPageId(), true);
+            }
+            for (int pageId = 499; pageId >= 0; pageId--) {
+                Page page = pool.fetchPage(pageId);
+                assertEquals(pageId * 31, page.getBuffer().getInt(0), "page " + pageId);
+                pool.unpinPage(pageId, false);
+            }
+            BufferPoolMetrics metrics = pool.getMetrics();
+            assertTrue(metrics.getEvictions() >= 500 - 64, "evictions " + metrics.getEvictions());
+            assertTrue(metrics.getDirtyWriteBacks() + metrics.getFlushedPages() >= 500 - 64);
+        }
+    }
+
+    @Test
+    void fetchReturnsNullWhenEveryFrameIsPinned() throws IOException {
+        try (DiskManager disk = new DiskManager(fileName);
+             BufferPoolManager pool = new BufferPoolManager(16, disk)) {
+            Page[] pinned = new Page[16];
+            for (int i = 0; i < pinned.length; i++) {
+                pinned[i] = pool.newPage();
+            }
+            assertNull(pool.newPage(), "no frame can be evicted");
+            pool.unpinPage(pinned[3].getPageId(), true);
+            Page page = pool.newPage();
+            assertNotNull(page, "the unpinned frame is reused");
+            pool.unpinPage(page.getPageId(), false);
+            for (Page each : pinned) {
+                pool.unpinPage(each.getPageId(), false);
+            }
+            Page reloaded = pool.fetchPage(pinned[3].getPageId());
+            assertNotNull(reloaded);
+            pool.unpinPage(reloaded.getPageId(), false);
+        }
+    }
+
+    @Test
+    void concurrentWritersOnDifferentPagesDoNotLoseUpdates() throws Exception {
+        int threads = 8;
+        int pagesPerThread = 40;
+        try (DiskManager disk = new DiskManager(fileName);
+             BufferPoolManager pool = new BufferPoolManager(64, disk, ReplacerPolicy.CLOCK, 4).start()) {
+            for (int i = 0; i < threads * pagesPerThread; i++) {
+                Page page = pool.newPage();
+                pool.unpinPage(page.getPageId(), true);
+            }
+            Thread[] workers = new Thread[threads];
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * pagesPerThread;
+                workers[t] = new Thread(() -> {
+                    try {
+                        for (int round = 1; round <= 20; round++) {
+                            for (int pageId = first; pageId < first + pagesPerThread; pageId++) {
+                                Page page = pool.fetchPage(pageId);
+                                page.getBuffer().putInt(0, page.getBuffer().getInt(0) + 1);
+                                pool.unpinPage(pageId, true);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertNull(failure.get());
+            for (int pageId = 0; pageId < threads * pagesPerThread; pageId++) {
+                Page page = pool.fetchPage(pageId);
+                assertEquals(20, page.getBuffer().getInt(0), "page " + pageId);
+                pool.unpinPage(pageId, false);
+            }
+        }
+    }
+
+    @Test
+    void dirtyWriteBackIsCountedOnlyWhenTheWriteSucceeds() throws IOException {
+        DiskManager disk = new DiskManager(fileName);
+        BufferPoolManager pool = new BufferPoolManager(16, disk);
+        for (int i = 0; i < 16; i++) {
+            Page page = pool.newPage();
+            pool.unpinPage(page.getPageId(), true);
+        }
+        Page page = pool.newPage(); // 淘汰一个脏页并写回
+        pool.unpinPage(page.getPageId(), false);
+        assertEquals(1, pool.getMetrics().getDirtyWriteBacks());
+
+        disk.close();
+        assertThrows(IOException.class, pool::newPage);
+        assertEquals(1, pool.getMetrics().getDirtyWriteBacks(), "a failed write-back is not counted");
+    }
+
+    @Test
+    void closeWaitsForPinnedPagesAndWritesThem() throws Exception {
+        try (DiskManager disk = new DiskManager(fileName)) {
+            BufferPoolManager pool = new BufferPoolManager(16, disk);
+            Page page = pool.newPage();
+            int pageId = page.getPageId();
+            Thread writer = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                page.getBuffer().putInt(0, 42);
+                pool.unpinPage(pageId, true);
+            });
+            writer.start();
+            pool.close(5_000);
+            writer.join();
+
+            byte[] data = new byte[Page.PAGE_SIZE];
+            disk.readPage(pageId, data);
+            assertEquals(42, ByteBuffer.wrap(data).getInt(0), "the page unpinned during close was written");
+        }
+    }
+
+    @Test
+    void closeFailsWhenAPageStaysPinned() throws Exception {
+        try (DiskManager disk = new DiskManager(fileName)) {
+            BufferPoolManager pool = new BufferPoolManager(16, disk);
+            Page clean = pool.newPage();
+            pool.unpinPage(clean.getPageId(), true);
+            Page pinned = pool.newPage();
+            pinned.getBuffer().putInt(0, 7);
+            pinned.setDirty(true);
+
+            IOException failure = assertThrows(IOException.class, () -> pool.close(100));
+            assertTrue(failure.getMessage().contains("[" + pinned.getPageId() + "]"), failure.getMessage());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package storage.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 各替换策略：固定的帧不被淘汰，淘汰顺序符合策略，不满足条件的帧保持原位
+ */
+class ReplacerTest {
+    private static final int CAPACITY = 8;
+
+    private static void access(Replacer replacer, int... frameIds) {
+        for (int frameId : frameIds) {
+            replacer.pin(frameId);
+            replacer.unpin(frameId);
+        }
+    }
+
+    @Test
+    void everyPolicyEvictsOnlyUnpinnedFrames() {
+        for (ReplacerPolicy policy : ReplacerPolicy.values()) {
+            Replacer replacer = policy.create(CAPACITY);
+            assertEquals(-1, replacer.victim(), policy + " empty");
+            access(replacer, 0, 1, 2, 3);
+            replacer.pin(1);
+            replacer.pin(3);
+            assertEquals(2, replacer.size(), policy.toString());
+
+            int first = replacer.victim();
+            int second = replacer.victim();
+            assertEquals(Set.of(0, 2), Set.of(first, second), policy.toString());
+            assertEquals(-1, replacer.victim(), policy + " only pinned frames left");
+            assertEquals(0, replacer.size(), policy.toString());
+
+            replacer.unpin(3);
+            replacer.unpin(3); // 重复 unpin 不重复计数
+            assertEquals(1, replacer.size(), policy.toString());
+            assertEquals(3, replacer.victim(), policy.toString());
+        }
+    }
+
+    @Test
+    void everyPolicyKeepsIneligibleFramesInPlace() {
+        for (ReplacerPolicy policy : ReplacerPolicy.values()) {
+            Replacer replacer = policy.create(CAPACITY);
+            access(replacer, 0, 1, 2);
+            int preferred = 0;
+            assertEquals(-1, replacer.victim(frameId -> false), policy.toString());
+            assertEquals(3, replacer.size(), policy + " a refused victim removes nothing");
+
+            int skipped = replacer.victim(frameId -> frameId != preferred);
+            assertNotEquals(preferred, skipped, policy.toString());
+            assertEquals(2, replacer.size(), policy.toString());
+            if (policy != ReplacerPolicy.CLOCK) {
+                assertEquals(preferred, replacer.victim(), policy + " the skipped frame is still first in line");
+            } else {
+                // 时钟指针越过了被拒绝的帧，它仍然可淘汰，只是要等指针转回来
+                assertNotEquals(-1, replacer.victim());
+                assertEquals(preferred, replacer.victim(), policy.toString());
+            }
+        }
+    }
+
+    @Test
+    void lruEvictsLeastRecentlyUnpinned() {
+        Replacer replacer = new LRUReplacer(CAPACITY);
+        access(replacer, 0, 1, 2, 0);
+        assertEquals(1, replacer.victim());
+        assertEquals(2, replacer.victim());
+        assertEquals(0, replacer.victim());
+    }
+
+    @Test
+    void clockGivesReferencedFramesASecondChance() {
+        Replacer replacer = new ClockReplacer(CAPACITY);
+        access(replacer, 0, 1, 2);
+        // 第一圈清除全部引用位，第二圈淘汰指针遇到的第一个帧
+        assertEquals(0, replacer.victim());
+        access(replacer, 1);
+        assertEquals(2, replacer.victim(), "frame 1 was referenced again and is skipped once");
+        assertEquals(1, replacer.victim());
+    }
+
+    @Test
+    void lruKPrefersFramesWithFewerThanKAccesses() {
+        Replacer replacer = new LRUKReplacer(CAPACITY, 2);
+        access(replacer, 0, 1, 0, 1, 2);
+        assertEquals(2, replacer.victim(), "a frame seen once has infinite backward K-distance");
+        access(replacer, 0);
+        // 帧 0 的倒数第二次访问晚于帧 1
+        assertEquals(1, replacer.victim());
+        assertEquals(0, replacer.victim());
+
+        access(replacer, 1);
+        access(replacer, 3);
+        assertEquals(1, replacer.victim(), "victim clears the history of the evicted frame");
+    }
+
+    @Test
+    void twoQueueKeepsHotFramesAwayFromAScan() {
+        Replacer replacer = new TwoQueueReplacer(CAPACITY); // A1 门限为 2
+        access(replacer, 0, 0, 1, 1);
+        access(replacer, 2, 3, 4, 5);
+        assertEquals(2, replacer.victim());
+        assertEquals(3, replacer.victim());
+        assertEquals(4, replacer.victim());
+        // A1 只剩一帧，低于门限后从 Am 淘汰
+        assertEquals(0, replacer.victim());
+        assertEquals(1, replacer.victim());
+        assertEquals(5, replacer.victim(), "A1 is used once Am is empty");
+    }
+}
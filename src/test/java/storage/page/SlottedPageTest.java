@@ -0,0 +1,61 @@
+package storage.page;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 槽页：删除留下的槽和空间被之后的插入复用，槽号在整理前后保持不变
+ */
+class SlottedPageTest {
+
+    private static byte[] tuple(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    @Test
+    void insertReusesDeletedSlotAndCompactsHoles() {
+        SlottedPage page = new SlottedPage(new Page());
+        int count = 0;
+        while (page.insert(tuple(100, count)) != -1) {
+            count++;
+        }
+        assertTrue(count > 30, "a 4 KB page holds many 100-byte tuples");
+
+        assertTrue(page.delete(3));
+        assertTrue(page.delete(7));
+        assertFalse(page.delete(3), "deleting twice");
+        assertNull(page.get(3));
+
+        // 连续空闲空间不够，插入时整理页面回收空洞，并复用第一个空槽
+        assertEquals(3, page.insert(tuple(150, 99)));
+        assertEquals(count, page.getSlotCount());
+        assertArrayEquals(tuple(150, 99), page.get(3));
+        for (int slot = 0; slot < count; slot++) {
+            if (slot != 3 && slot != 7) {
+                assertArrayEquals(tuple(100, slot), page.get(slot), "slot " + slot + " after compaction");
+            }
+        }
+    }
+
+    @Test
+    void updateKeepsSlotAndFailsWithoutSpace() {
+        SlottedPage page = new SlottedPage(new Page());
+        int first = page.insert(tuple(10, 1));
+        int second = page.insert(tuple(10, 2));
+
+        assertTrue(page.update(first, tuple(5, 3)));
+        assertArrayEquals(tuple(5, 3), page.get(first));
+        assertTrue(page.update(first, tuple(1000, 4)));
+        assertArrayEquals(tuple(1000, 4), page.get(first));
+        assertArrayEquals(tuple(10, 2), page.get(second));
+
+        assertFalse(page.update(second, tuple(SlottedPage.MAX_TUPLE_SIZE, 5)));
+        assertArrayEquals(tuple(10, 2), page.get(second), "failed update leaves the tuple unchanged");
+        assertFalse(page.update(99, tuple(1, 1)));
+    }
+}
@@ -0,0 +1,78 @@
+package storage.service;
+
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.Table;
+import executor.common.TableSchema;
+import executor.common.impl.InMemoryTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import storage.buffer.BufferPoolMetrics;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 保存整张表：只有编码后的字节变化了的元组被重写
+ */
+class MyStorageServiceTest {
+    private static final String HOME = System.getProperty("user.home") + File.separator + ".oursql" + File.separator;
+
+    private final String tableName = "mss_test_" + System.nanoTime();
+
+    @AfterEach
+    void deleteFiles() {
+        new File(HOME + "data" + File.separator + tableName + ".db").delete();
+        new File(HOME + "schema" + File.separator + tableName + ".schema").delete();
+    }
+
+    private static Map<String, Object> row(int id, String name) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", id);
+        fields.put("name", name);
+        return fields;
+    }
+
+    private long flushedPages() {
+        return BufferPoolMetrics.all().stream()
+                .filter(metrics -> metrics.getName().equals("/data/" + tableName + ".db"))
+                .mapToLong(BufferPoolMetrics::getFlushedPages)
+                .sum();
+    }
+
+    @Test
+    void savingAnUnchangedTableWritesNoPages() throws Exception {
+        TableSchema schema = new TableSchema(tableName, List.of(
+                new ColumnDefinition("id", ColumnType.INT, 4, true),
+                new ColumnDefinition("name", ColumnType.VARCHAR, 32, false)));
+        MyStorageService service = new MyStorageService();
+        try {
+            service.createTable(schema);
+            Table table = new InMemoryTable(schema);
+            for (int id = 0; id < 500; id++) {
+                table.insert(new Record(row(id, "name-" + id)));
+            }
+            service.saveTable(tableName, table);
+            long afterFirstSave = flushedPages();
+            assertTrue(afterFirstSave > 1);
+
+            service.saveTable(tableName, table);
+            assertEquals(afterFirstSave, flushedPages(), "an unchanged save dirties no page");
+
+            table.update(table.getRecord("42"), new Record(row(42, "renamed")));
+            service.saveTable(tableName, table);
+            assertEquals(afterFirstSave + 1, flushedPages(), "one changed row rewrites one page");
+
+            Table reopened = service.openTable(tableName);
+            assertEquals(500, reopened.size());
+            assertEquals("renamed", reopened.getRecord("42").getValue("name"));
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package storage.table;
+
+import executor.common.CloseableIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import storage.buffer.BufferPoolManager;
+import storage.buffer.DiskManager;
+import storage.page.RecordId;
+import storage.page.SlottedPage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 堆文件：多条元组共享一页，删除后的空间被复用，更新放不下时移到其它页
+ */
+class TableHeapTest {
+    private final String fileName = "test/heap-" + System.nanoTime() + ".db";
+
+    @AfterEach
+    void deleteFile() {
+        new File(System.getProperty("user.home") + File.separator + ".oursql" + File.separator + fileName).delete();
+    }
+
+    private static byte[] tuple(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> scan(TableHeap heap) {
+        List<String> values = new ArrayList<>();
+        try (CloseableIterator<byte[]> tuples = heap.scan()) {
+            tuples.forEachRemaining(bytes -> values.add(new String(bytes, StandardCharsets.UTF_8)));
+        }
+        return values;
+    }
+
+    @Test
+    void packsManyTuplesPerPageAndReusesDeletedSpace() throws IOException {
+        try (DiskManager disk = new DiskManager(fileName);
+             BufferPoolManager pool = new BufferPoolManager(16, disk)) {
+            TableHeap heap = new TableHeap(pool);
+            List<RecordId> ids = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                ids.add(heap.insert(tuple(String.format("row-%03d", i))));
+            }
+            assertEquals(1, pool.getPageCount(), "100 short tuples fit in one page");
+            assertEquals(ids, heap.recordIds());
+
+            for (int i = 0; i < 100; i += 2) {
+                assertTrue(heap.delete(ids.get(i)));
+            }
+            assertFalse(heap.delete(ids.get(0)));
+            assertNull(heap.get(ids.get(0)));
+            assertEquals("row-001", new String(heap.get(ids.get(1)), StandardCharsets.UTF_8));
+
+            for (int i = 0; i < 50; i++) {
+                RecordId id = heap.insert(tuple(String.format("new-%03d", i)));
+                assertEquals(0, id.pageId());
+            }
+            assertEquals(1, pool.getPageCount(), "inserts reuse deleted slots instead of growing the file");
+            assertEquals(100, scan(heap).size());
+        }
+    }
+
+    @Test
+    void updateMovesTupleThatNoLongerFitsItsPage() throws IOException {
+        try (DiskManager disk = new DiskManager(fileName);
+             BufferPoolManager pool = new BufferPoolManager(16, disk)) {
+            TableHeap heap = new TableHeap(pool);
+            RecordId small = heap.insert(tuple("small"));
+            RecordId filler = heap.insert(new byte[SlottedPage.MAX_TUPLE_SIZE - 100]);
+
+            assertEquals(small, heap.update(small, tuple("tiny")), "a shorter tuple is updated in place");
+            RecordId moved = heap.update(small, new byte[500]);
+            assertNotEquals(small.pageId(), moved.pageId());
+            assertNull(heap.get(small));
+            assertEquals(500, heap.get(moved).length);
+            assertNotNull(heap.get(filler));
+            assertNull(heap.update(small, tuple("gone")), "updating a deleted tuple");
+        }
+    }
+
+    @Test
+    void readersNeverSeeAHalfWrittenSlotDirectory() throws Exception {
+        try (DiskManager disk = new DiskManager(fileName);
+             BufferPoolManager pool = new BufferPoolManager(16, disk)) {
+            TableHeap heap = new TableHeap(pool);
+            RecordId id = heap.insert(tuple("v-0000"));
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 1; running.get(); i++) {
+                        heap.update(id, tuple(String.format(i % 2 == 0 ? "v-%04d" : "value-%08d", i % 10_000)));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            writer.start();
+            try {
+                for (int i = 0; i < 20_000; i++) {
+                    String value = new String(heap.get(id), StandardCharsets.UTF_8);
+                    assertTrue(value.matches("v-\\d{4}|value-\\d{8}"), value);
+                }
+            } finally {
+                running.set(false);
+                writer.join();
+            }
+            assertNull(failure.get());
+        }
+    }
+}
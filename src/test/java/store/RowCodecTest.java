@@ -0,0 +1,124 @@
+package store;
+
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二进制行格式：写出后按原样读回，包括空值、缺失字段和与声明类型不符的值
+ */
+class RowCodecTest {
+    private static final TableSchema SCHEMA = new TableSchema("t", List.of(
+            new ColumnDefinition("id", ColumnType.INT, 4, true),
+            new ColumnDefinition("name", ColumnType.VARCHAR, 32),
+            new ColumnDefinition("score", ColumnType.FLOAT, 8),
+            new ColumnDefinition("active", ColumnType.BOOLEAN, 1),
+            new ColumnDefinition("created", ColumnType.TIMESTAMP, 8)));
+
+    @Test
+    void typedColumnsRoundTrip() throws IOException {
+        Timestamp created = new Timestamp(-86_400_000L);
+        created.setNanos(123_456_789);
+        List<Record> records = List.of(
+                record("id", 1, "name", "alice", "score", 1.5, "active", true, "created", created),
+                record("id", -7, "name", "数据库", "score", -0.0, "active", false, "created", new Timestamp(0)),
+                record("id", Integer.MAX_VALUE, "name", null, "score", Double.NaN, "active", null, "created", null));
+
+        List<Record> read = roundTrip(SCHEMA, new TableSnapshot(42, records), 42);
+        assertEquals(records.size(), read.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).fields(), new HashMap<>(read.get(i).fields()), "row " + i);
+        }
+        assertTrue(read.get(2).hasField("name"), "null values are kept as present fields");
+        assertEquals(123_456_789, ((Timestamp) read.get(0).getField("created")).getNanos());
+    }
+
+    @Test
+    void mismatchedMissingAndExtraFieldsRoundTrip() throws IOException {
+        List<Record> records = List.of(
+                record("id", 1, "name", "a", "score", 2.0, "active", true, "created", new Timestamp(5)),
+                record("id", 5_000_000_000L, "name", 17, "active", true, "created", new Timestamp(5)),
+                record("id", 3, "name", "c", "score", 1.0, "active", false, "created", new Timestamp(5),
+                        "tags", new ArrayList<>(List.of("x", "y")), "note", "extra"));
+
+        List<Record> read = roundTrip(SCHEMA, new TableSnapshot(0, records), 0);
+        assertEquals(5_000_000_000L, read.get(1).getField("id"));
+        assertEquals(17, read.get(1).getField("name"));
+        assertFalse(read.get(1).hasField("score"), "a missing field stays missing");
+        assertFalse(read.get(0).hasField("tags"));
+        assertEquals(List.of("x", "y"), read.get(2).getField("tags"));
+        assertEquals("extra", read.get(2).getField("note"));
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).fields(), new HashMap<>(read.get(i).fields()), "row " + i);
+        }
+    }
+
+    @Test
+    void writesWithoutSchemaAndEmptySnapshots() throws IOException {
+        List<Record> records = List.of(record("k", "v", "n", 1), record("n", 2));
+        List<Record> read = roundTrip(null, new TableSnapshot(7, records), 7);
+        assertEquals(records.get(0).fields(), new HashMap<>(read.get(0).fields()));
+        assertEquals(records.get(1).fields(), new HashMap<>(read.get(1).fields()));
+
+        assertTrue(roundTrip(SCHEMA, new TableSnapshot(9, null), 9).isEmpty());
+    }
+
+    @Test
+    void rejectsForeignAndTruncatedFiles() throws IOException {
+        byte[] json = "{\"records\":[]}".getBytes();
+        assertFalse(RowCodec.isBinary(json));
+        assertThrows(IOException.class, () -> RowCodec.open(new ByteArrayInputStream(json)));
+
+        byte[] data = encode(SCHEMA, new TableSnapshot(1, List.of(
+                record("id", 1, "name", "a long enough name", "score", 1.0, "active", true, "created", new Timestamp(1)))));
+        assertTrue(RowCodec.isBinary(data));
+        byte[] truncated = Arrays.copyOf(data, data.length - 4);
+        try (RowCodec.Reader reader = RowCodec.open(new ByteArrayInputStream(truncated))) {
+            assertTrue(reader.hasNext());
+            assertThrows(UncheckedIOException.class, reader::next);
+        }
+    }
+
+    private static List<Record> roundTrip(TableSchema schema, TableSnapshot snapshot, long checkpointLsn) throws IOException {
+        List<Record> read = new ArrayList<>();
+        try (RowCodec.Reader reader = RowCodec.open(new ByteArrayInputStream(encode(schema, snapshot)))) {
+            assertEquals(checkpointLsn, reader.checkpointLsn());
+            assertFalse(reader.isLegacyFormat());
+            assertEquals(snapshot.records() == null ? 0 : snapshot.records().size(), reader.rowCount());
+            while (reader.hasNext()) {
+                read.add(reader.next());
+            }
+        }
+        return read;
+    }
+
+    private static byte[] encode(TableSchema schema, TableSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowCodec.write(out, schema, snapshot);
+        return out.toByteArray();
+    }
+
+    private static Record record(Object... keysAndValues) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            fields.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return new Record(fields);
+    }
+}
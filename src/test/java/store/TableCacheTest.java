@@ -0,0 +1,115 @@
+package store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表缓存：按字节数限制容量，频繁访问的条目不会被一次性扫描挤出，同一个键只加载一次
+ */
+class TableCacheTest {
+
+    @Test
+    void staysWithinItsByteBudgetAndReportsEvictions() {
+        Map<String, Long> evicted = new ConcurrentHashMap<>();
+        TableCache<String, Long> cache = new TableCache<>(1_000, value -> value, evicted::put);
+        for (int i = 0; i < 200; i++) {
+            cache.put("t" + i, 10L + i % 7);
+        }
+        TableCache.CacheStats stats = cache.stats();
+        assertTrue(stats.weightBytes() <= 1_000, "weight " + stats.weightBytes());
+        assertEquals(200, stats.entries() + evicted.size());
+        assertEquals(evicted.size(), stats.evictions());
+        for (String key : evicted.keySet()) {
+            assertNull(cache.peek(key), key + " was evicted but is still cached");
+        }
+
+        // 值变大后重新放入，按新的大小继续满足容量上限
+        cache.put("big", 900L);
+        assertTrue(cache.stats().weightBytes() <= 1_000);
+    }
+
+    @Test
+    void frequentlyReadEntriesSurviveAOneTimeScan() {
+        TableCache<String, Integer> cache = new TableCache<>(100, value -> 1, (key, value) -> { });
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, i);
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.getIfPresent("hot" + i));
+            }
+        }
+        for (int i = 0; i < 2_000; i++) {
+            cache.put("scan" + i, i);
+        }
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.peek("hot" + i) != null) {
+                survivors++;
+            }
+        }
+        assertEquals(50, survivors, "the scan is not admitted over frequently read entries");
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    void concurrentGetsLoadAKeyOnce() throws Exception {
+        TableCache<String, String> cache = new TableCache<>(1_000, value -> 1, (key, value) -> { });
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> readers = new ArrayList<>();
+        List<String> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                String value = cache.get("t", key -> {
+                    loads.incrementAndGet();
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "loaded";
+                });
+                synchronized (results) {
+                    results.add(value);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        start.countDown();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(8, results.size());
+        assertTrue(results.stream().allMatch("loaded"::equals));
+        assertEquals(1, cache.stats().loads());
+    }
+
+    @Test
+    void missingValuesAreNotCachedAndRemoveDoesNotNotify() {
+        List<String> evicted = new ArrayList<>();
+        TableCache<String, Integer> cache = new TableCache<>(10, value -> 1, (key, value) -> evicted.add(key));
+        assertNull(cache.get("missing", key -> null));
+        assertFalse(cache.containsKey("missing"));
+
+        cache.put("t", 1);
+        assertEquals(1, cache.remove("t"));
+        assertNull(cache.getIfPresent("t"));
+        assertTrue(evicted.isEmpty());
+    }
+}
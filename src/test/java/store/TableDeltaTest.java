@@ -0,0 +1,59 @@
+package store;
+
+import executor.common.Record;
+import org.junit.jupiter.api.Test;
+import store.wal.LogRecord;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 合并基础文件和增量段：基础文件的记录边读边过滤
+ */
+class TableDeltaTest {
+
+    private static Map<String, Object> row(int id, String name) {
+        return Map.of("id", id, "name", name);
+    }
+
+    private static List<Map<String, Object>> drain(Iterator<Record> merged) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        merged.forEachRemaining(record -> rows.add(record.fields()));
+        return rows;
+    }
+
+    @Test
+    void appliesFramesNewerThanTheBaseFile() {
+        List<Record> base = List.of(new Record(row(1, "a")), new Record(row(2, "b")),
+                new Record(row(3, "dup")), new Record(row(3, "dup")));
+        List<TableDelta.Frame> frames = List.of(
+                new TableDelta.Frame(10, List.of(LogRecord.delete("t", row(1, "a")))), // 已包含在基础文件中
+                new TableDelta.Frame(20, List.of(
+                        LogRecord.update("t", row(2, "b"), row(2, "b2")),
+                        LogRecord.delete("t", row(3, "dup")),
+                        LogRecord.insert("t", row(4, "d")),
+                        LogRecord.update("t", row(4, "d"), row(4, "d2")))),
+                new TableDelta.Frame(30, List.of(
+                        LogRecord.insert("t", row(5, "e")),
+                        LogRecord.delete("t", row(5, "e")),
+                        LogRecord.delete("t", row(9, "missing")))));
+
+        List<Map<String, Object>> merged = drain(TableDelta.merge(base.iterator(), frames, 10));
+
+        assertEquals(List.of(row(1, "a"), row(3, "dup"), row(2, "b2"), row(4, "d2")), merged);
+    }
+
+    @Test
+    void rowDeletedBeforeItIsReinsertedComesFromTheBaseFile() {
+        List<Record> base = List.of(new Record(row(1, "a")));
+        List<TableDelta.Frame> frames = List.of(new TableDelta.Frame(5, List.of(
+                LogRecord.delete("t", row(1, "a")),
+                LogRecord.insert("t", row(1, "a")))));
+
+        assertEquals(List.of(row(1, "a")), drain(TableDelta.merge(base.iterator(), frames, 0)));
+    }
+}
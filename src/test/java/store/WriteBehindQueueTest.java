@@ -0,0 +1,48 @@
+package store;
+
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.TableSchema;
+import executor.common.impl.TableFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 关闭后写队列：写不出的表不能让 close() 无限等待
+ */
+class WriteBehindQueueTest {
+
+    private static TableSchema schema(String name) {
+        return new TableSchema(name, List.of(new ColumnDefinition("id", ColumnType.INT, 4, true)));
+    }
+
+    @Test
+    void closeReturnsTablesNotWrittenBackBeforeTheDeadline() {
+        WriteBehindQueue queue = new WriteBehindQueue((tableName, table) -> !tableName.equals("busy"), Long.MAX_VALUE);
+        queue.start();
+        queue.submit("busy", TableFactory.create(schema("busy")));
+        queue.submit("idle", TableFactory.create(schema("idle")));
+
+        long start = System.nanoTime();
+        Set<String> unwritten = queue.close(300);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(Set.of("busy"), unwritten);
+        assertTrue(elapsedMs < 5_000, "close() waited " + elapsedMs + " ms");
+    }
+
+    @Test
+    void closeReturnsNothingWhenEverythingIsWritten() {
+        WriteBehindQueue queue = new WriteBehindQueue((tableName, table) -> true, Long.MAX_VALUE);
+        queue.start();
+        queue.submit("t", TableFactory.create(schema("t")));
+
+        assertEquals(Set.of(), queue.close(5_000));
+        assertEquals(0, queue.size());
+    }
+}
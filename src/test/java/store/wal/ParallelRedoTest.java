@@ -0,0 +1,142 @@
+package store.wal;
+
+import executor.common.ColumnDefinition;
+import executor.common.ColumnType;
+import executor.common.Record;
+import executor.common.Table;
+import executor.common.TableSchema;
+import executor.common.impl.TableFactory;
+import executor.common.impl.TableLayout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 重做 UPDATE：日志经过 WAL 的 JSON 往返后，修改后的行必须出现在表中
+ */
+class ParallelRedoTest {
+    private static final int ROWS = 5_000;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @TempDir
+    Path walDir;
+
+    private static TableSchema accounts(String name) {
+        return new TableSchema(name, List.of(
+                new ColumnDefinition("id", ColumnType.INT, 4, true),
+                new ColumnDefinition("owner", ColumnType.VARCHAR, 32, false),
+                new ColumnDefinition("balance", ColumnType.INT, 4, false),
+                new ColumnDefinition("updated_at", ColumnType.TIMESTAMP, 8, false)));
+    }
+
+    private static Map<String, Object> row(int id, int balance, long updatedAt) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", id);
+        fields.put("owner", "user-" + id);
+        fields.put("balance", balance);
+        fields.put("updated_at", new Timestamp(updatedAt));
+        return fields;
+    }
+
+    /**
+     * 日志中的 Timestamp 经过 JSON 往返后读回的是毫秒数（Long），与表中的值类型不同；每行按日志顺序被连续修改三次
+     */
+    @Test
+    void replaysUpdatesOnPrimaryKeyTables() throws IOException {
+        for (TableLayout layout : TableLayout.values()) {
+            Map<String, Table> tables = new HashMap<>();
+            List<LogRecord> records = new ArrayList<>();
+            for (String name : List.of("a", "b")) {
+                Table table = TableFactory.create(accounts(name), layout);
+                for (int id = 0; id < ROWS; id++) {
+                    table.insert(new Record(row(id, id, T0)));
+                }
+                tables.put(name, table);
+                for (int round = 0; round < 3; round++) {
+                    for (int id = 0; id < ROWS; id++) {
+                        records.add(LogRecord.update(name, row(id, id + round * 1000, T0 + round),
+                                row(id, id + (round + 1) * 1000, T0 + round + 1)));
+                    }
+                }
+            }
+            ParallelRedo.Plan plan = ParallelRedo.plan(writeAndRead(records));
+            ParallelRedo.apply(plan, (tableName, redos) -> {
+                Table table = tables.get(tableName);
+                redos.forEach(redo -> ParallelRedo.applyRow(table, redo.record()));
+            }, 2);
+
+            for (Table table : tables.values()) {
+                assertEquals(ROWS, table.size(), layout + " row count");
+                for (int id = 0; id < ROWS; id++) {
+                    Record record = table.getRecord(String.valueOf(id));
+                    assertNotNull(record, layout + " row " + id);
+                    assertEquals(row(id, id + 3000, T0 + 3), record.fields(), layout + " row " + id);
+                }
+            }
+        }
+    }
+
+    @Test
+    void replaysUpdatesOnTableWithoutPrimaryKey() throws IOException {
+        TableSchema schema = new TableSchema("log", List.of(
+                new ColumnDefinition("k", ColumnType.VARCHAR, 16, false),
+                new ColumnDefinition("v", ColumnType.INT, 4, false)));
+        Table table = TableFactory.create(schema, TableLayout.ROW);
+        List<LogRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> fields = Map.of("k", "k" + i, "v", i);
+            table.insert(new Record(new HashMap<>(fields)));
+            records.add(LogRecord.update("log", fields, Map.of("k", "k" + i, "v", -i)));
+        }
+        for (LogEntry entry : writeAndRead(records)) {
+            if (entry.record().type() == LogRecordType.UPDATE) {
+                ParallelRedo.applyRow(table, entry.record());
+            }
+        }
+        long sum = 0;
+        for (Record record : table.getAllRecords()) {
+            sum += ((Number) record.getValue("v")).longValue();
+        }
+        assertEquals(200, table.size());
+        assertEquals(-199 * 200 / 2, sum);
+    }
+
+    @Test
+    void failsWhenNoRowMatchesTheBeforeImage() {
+        Table table = TableFactory.create(accounts("c"), TableLayout.ROW);
+        table.insert(new Record(row(1, 10, T0)));
+        LogRecord wrongBalance = LogRecord.update("c", row(1, 11, T0), row(1, 12, T0));
+        LogRecord missingRow = LogRecord.update("c", row(2, 10, T0), row(2, 12, T0));
+        assertThrows(IllegalStateException.class, () -> ParallelRedo.applyRow(table, wrongBalance));
+        assertThrows(IllegalStateException.class, () -> ParallelRedo.applyRow(table, missingRow));
+        assertEquals("10", String.valueOf(table.getRecord("1").getValue("balance")));
+    }
+
+    /**
+     * 每条记录单独作为一个事务写入 WAL 后读回
+     */
+    private List<LogEntry> writeAndRead(List<LogRecord> records) throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.ASYNC)) {
+            long txnId = 1;
+            for (LogRecord record : records) {
+                wal.append(List.of(record, LogRecord.commit(txnId++)));
+            }
+            wal.sync();
+        }
+        List<LogEntry> entries;
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.ASYNC)) {
+            entries = wal.readAll();
+            wal.reset();
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,174 @@
+package store.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 预写日志：各持久化级别的提交语义、组提交、尾部截断和段头校验
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path walDir;
+
+    private static LogRecord insert(int id) {
+        return LogRecord.insert("t", Map.of("id", id));
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(walDir)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    @Test
+    void committedRecordsSurviveReopenUnderEveryDurability() throws IOException {
+        for (Durability durability : Durability.values()) {
+            Path dir = walDir.resolve(durability.name());
+            long lsn;
+            try (WriteAheadLog wal = WriteAheadLog.open(dir, durability)) {
+                for (int id = 0; id < 100; id++) {
+                    lsn = wal.append(List.of(insert(id), insert(-id)));
+                    wal.commit(lsn);
+                    if (durability == Durability.SYNC) {
+                        assertEquals(lsn, wal.getDurableLsn(), "SYNC commit returns after fsync");
+                    }
+                }
+                lsn = wal.getAppendedLsn();
+            }
+            try (WriteAheadLog wal = WriteAheadLog.open(dir, durability)) {
+                List<LogEntry> entries = wal.readAll();
+                assertEquals(200, entries.size(), durability.toString());
+                for (int i = 0; i < entries.size(); i++) {
+                    int id = i / 2;
+                    assertEquals(i % 2 == 0 ? id : -id, ((Number) entries.get(i).record().after().get("id")).intValue());
+                    assertTrue(i == 0 || entries.get(i).lsn() > entries.get(i - 1).lsn());
+                }
+                assertEquals(lsn, entries.get(entries.size() - 1).lsn());
+                assertEquals(lsn, wal.getAppendedLsn());
+            }
+        }
+    }
+
+    @Test
+    void concurrentSyncCommitsAreAllDurable() throws Exception {
+        int threads = 16;
+        int commitsPerThread = 50;
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> committers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * commitsPerThread;
+                Thread committer = new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < commitsPerThread; i++) {
+                            long lsn = wal.append(List.of(insert(base + i)));
+                            wal.commit(lsn);
+                            assertTrue(wal.getDurableLsn() >= lsn);
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                });
+                committers.add(committer);
+                committer.start();
+            }
+            start.countDown();
+            for (Thread committer : committers) {
+                committer.join();
+            }
+            assertNull(failure.get());
+            assertEquals(wal.getAppendedLsn(), wal.getDurableLsn());
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            assertEquals(threads * commitsPerThread, wal.readAll().size());
+        }
+    }
+
+    @Test
+    void tornTailIsTruncatedAndAppendsContinueAfterIt() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            wal.commit(wal.append(List.of(insert(1), insert(2))));
+        }
+        // 崩溃时写了一半的帧：长度说有 100 字节，后面只有 3 字节
+        try (FileChannel channel = FileChannel.open(onlySegment(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(11).putInt(100).putInt(0).put(new byte[3]).flip());
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            assertEquals(2, wal.readAll().size());
+            wal.commit(wal.append(List.of(insert(3))));
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            assertEquals(3, wal.readAll().size());
+        }
+    }
+
+    @Test
+    void resetStartsAnEmptySegment() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.BATCHED)) {
+            wal.commit(wal.append(List.of(insert(1))));
+            long lsn = wal.getAppendedLsn();
+            wal.reset();
+            assertEquals(lsn, wal.getStartLsn());
+            wal.commit(wal.append(List.of(insert(2))));
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            List<LogEntry> entries = wal.readAll();
+            assertEquals(1, entries.size());
+            assertEquals(2, ((Number) entries.get(0).record().after().get("id")).intValue());
+        }
+    }
+
+    @Test
+    void rejectsSegmentsWithAForeignHeader() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            wal.commit(wal.append(List.of(insert(1))));
+        }
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0xCAFEBABE).flip(), 0);
+        }
+        IOException badMagic = assertThrows(IOException.class, () -> WriteAheadLog.open(walDir, Durability.SYNC));
+        assertTrue(badMagic.getMessage().contains("magic"), badMagic.getMessage());
+
+        // 段头正确但起始 LSN 与文件名不符，例如从另一个日志目录复制过来的段
+        Files.move(segment, walDir.resolve("wal-00000000000000000012.log"));
+        try (FileChannel channel = FileChannel.open(walDir.resolve("wal-00000000000000000012.log"),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0x4F57414C).flip(), 0);
+        }
+        IOException badLsn = assertThrows(IOException.class, () -> WriteAheadLog.open(walDir, Durability.SYNC));
+        assertTrue(badLsn.getMessage().contains("starts at LSN 0"), badLsn.getMessage());
+    }
+
+    @Test
+    void rewritesTheHeaderOfASegmentCreatedJustBeforeACrash() throws IOException {
+        Files.write(walDir.resolve("wal-00000000000000000000.log"), new byte[5]);
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            assertTrue(wal.readAll().isEmpty());
+            wal.commit(wal.append(List.of(insert(1))));
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(walDir, Durability.SYNC)) {
+            assertEquals(1, wal.readAll().size());
+        }
+    }
+}